@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.connector.idp.constants.AIConstants;
+import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+import org.wso2.carbon.connector.idp.model.scan.PageImage;
+import org.wso2.carbon.connector.idp.model.scan.RenderProfile;
+import org.wso2.carbon.connector.idp.util.AIUtils;
+import org.wso2.carbon.connector.idp.util.ImageNormalizer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding of rendered pages, and normalization of uploaded images, for images of several sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class EncodeBenchmark {
+
+    /** A thumbnail, an A4 page fitted within 2048 pixels, and an A4 page at 300 DPI. */
+    @Param({"512x512", "1448x2048", "2480x3508"})
+    public String dimensions;
+
+    @Param({"PNG", "JPEG"})
+    public RenderProfile.ImageFormat format;
+
+    private BufferedImage image;
+    private byte[] encodedImage;
+    private ImageNormalizer normalizer;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] size = dimensions.split("x");
+        image = Fixtures.pageImage(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        encodedImage = AIUtils.encodeImage(image, format, AIConstants.IMAGE_QUALITY_DEFAULT);
+        normalizer = new ImageNormalizer(AIConstants.MAX_IMAGE_DIMENSION_DEFAULT, true, false,
+                AIConstants.IMAGE_QUALITY_DEFAULT);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return AIUtils.encodeImage(image, format, AIConstants.IMAGE_QUALITY_DEFAULT);
+    }
+
+    @Benchmark
+    public PageImage normalize() throws AIConnectorException {
+        return normalizer.normalize(encodedImage, format.getMimeType());
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.benchmarks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Generates the documents, images and LLM responses the benchmarks run on. The fixtures are generated rather than
+ * checked in so that they are the same on every machine and need no licensing review; each generator is seeded, so
+ * repeated runs measure the same bytes.
+ */
+public final class Fixtures {
+
+    /** Pages of the small PDF fixtures. */
+    static final int SMALL_PDF_PAGES = 1;
+    /** Pages of the large PDF fixtures. */
+    static final int LARGE_PDF_PAGES = 12;
+
+    private static final long SEED = 20260101L;
+    private static final float FONT_SIZE = 10f;
+    private static final float LEADING = 13f;
+    private static final float MARGIN = 56f;
+    private static final int SCAN_DPI = 200;
+    private static final String[] WORDS = {
+            "invoice", "total", "amount", "due", "date", "customer", "account", "quantity", "unit", "price",
+            "description", "tax", "shipping", "reference", "order", "payment", "terms", "net", "balance", "item"
+    };
+
+    private Fixtures() {
+    }
+
+    /**
+     * Kinds of PDF the connector receives: born-digital documents with a text layer, and scans that contain one
+     * image per page. Public, since the code JMH generates for a benchmark parameter of this type refers to it.
+     */
+    public enum PdfKind {
+        TEXT,
+        SCANNED
+    }
+
+    static byte[] pdf(PdfKind kind, int pages) throws IOException {
+        return kind == PdfKind.TEXT ? textPdf(pages) : scannedPdf(pages);
+    }
+
+    /**
+     * Creates a PDF whose pages are filled with lines of text in a standard font.
+     */
+    static byte[] textPdf(int pages) throws IOException {
+        Random random = new Random(SEED);
+        PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < pages; i++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                float height = page.getMediaBox().getHeight();
+                int lines = (int) ((height - 2 * MARGIN) / LEADING);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, FONT_SIZE);
+                    content.setLeading(LEADING);
+                    content.newLineAtOffset(MARGIN, height - MARGIN);
+                    for (int line = 0; line < lines; line++) {
+                        content.showText(sentence(random, 12));
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            return save(document);
+        }
+    }
+
+    /**
+     * Creates a PDF whose pages are JPEG scans of text pages, with the speckle noise of a real scanner.
+     */
+    static byte[] scannedPdf(int pages) throws IOException {
+        Random random = new Random(SEED);
+        int width = Math.round(PDRectangle.A4.getWidth() / 72f * SCAN_DPI);
+        int height = Math.round(PDRectangle.A4.getHeight() / 72f * SCAN_DPI);
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < pages; i++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                BufferedImage scan = pageImage(width, height, random, true);
+                PDImageXObject image = JPEGFactory.createFromImage(document, scan, 0.75f);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.drawImage(image, 0, 0, PDRectangle.A4.getWidth(), PDRectangle.A4.getHeight());
+                }
+            }
+            return save(document);
+        }
+    }
+
+    /**
+     * Creates an RGB image of a text page, like the ones rendered from PDFs or uploaded by users.
+     */
+    static BufferedImage pageImage(int width, int height) {
+        return pageImage(width, height, new Random(SEED), false);
+    }
+
+    private static BufferedImage pageImage(int width, int height, Random random, boolean noise) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.setColor(Color.BLACK);
+            int fontSize = Math.max(8, width / 70);
+            graphics.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, fontSize));
+            int margin = width / 12;
+            int leading = fontSize * 4 / 3;
+            for (int y = margin + fontSize; y < height - margin; y += leading) {
+                graphics.drawString(sentence(random, 12), margin, y);
+            }
+        } finally {
+            graphics.dispose();
+        }
+        if (noise) {
+            for (int i = width * height / 200; i > 0; i--) {
+                int gray = 128 + random.nextInt(112);
+                image.setRGB(random.nextInt(width), random.nextInt(height), gray << 16 | gray << 8 | gray);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Creates the content of an LLM response for an invoice with the given number of line items, optionally
+     * wrapped in a markdown code fence with some prose around it, as some open source models return it.
+     */
+    static String llmResponse(int lineItems, boolean fenced) {
+        Random random = new Random(SEED);
+        StringBuilder json = new StringBuilder(128 + lineItems * 96);
+        json.append("{\"invoiceNumber\":\"INV-").append(100000 + random.nextInt(900000)).append('"')
+                .append(",\"invoiceDate\":\"2026-01-15\",\"customer\":{\"name\":\"")
+                .append(sentence(random, 3)).append("\",\"address\":\"").append(sentence(random, 6))
+                .append("\"},\"lineItems\":[");
+        for (int i = 0; i < lineItems; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"description\":\"").append(sentence(random, 5))
+                    .append("\",\"quantity\":").append(1 + random.nextInt(20))
+                    .append(",\"unitPrice\":").append(random.nextInt(100000) / 100.0)
+                    .append(",\"taxable\":").append(random.nextBoolean()).append('}');
+        }
+        json.append("],\"total\":").append(random.nextInt(10000000) / 100.0).append(",\"notes\":null}");
+        if (!fenced) {
+            return json.toString();
+        }
+        return "Here is the data extracted from the document:\n\n```json\n" + json
+                + "\n```\n\nLet me know if you need anything else.";
+    }
+
+    /**
+     * Returns the JSON schema of the invoices of {@link #llmResponse(int, boolean)}.
+     */
+    static String invoiceSchemaJson() {
+        return "{\"type\":\"object\",\"properties\":{"
+                + "\"invoiceNumber\":{\"type\":\"string\"},\"invoiceDate\":{\"type\":\"string\"},"
+                + "\"customer\":{\"type\":\"object\",\"properties\":{\"name\":{\"type\":\"string\"},"
+                + "\"address\":{\"type\":\"string\"}},\"required\":[\"name\",\"address\"],"
+                + "\"additionalProperties\":false},"
+                + "\"lineItems\":{\"type\":\"array\",\"items\":{\"type\":\"object\",\"properties\":{"
+                + "\"description\":{\"type\":\"string\"},\"quantity\":{\"type\":\"integer\"},"
+                + "\"unitPrice\":{\"type\":\"number\"},\"taxable\":{\"type\":\"boolean\"}},"
+                + "\"required\":[\"description\",\"quantity\",\"unitPrice\",\"taxable\"],"
+                + "\"additionalProperties\":false}},"
+                + "\"total\":{\"type\":\"number\"},\"notes\":{\"type\":[\"string\",\"null\"]}},"
+                + "\"required\":[\"invoiceNumber\",\"invoiceDate\",\"customer\",\"lineItems\",\"total\","
+                + "\"notes\"],\"additionalProperties\":false}";
+    }
+
+    /**
+     * Returns the response format the connector sends for {@link #invoiceSchemaJson()}.
+     */
+    static String responseFormatJson() {
+        return "{\"type\":\"json_schema\",\"json_schema\":{\"name\":\"document_extraction_schema\","
+                + "\"schema\":" + invoiceSchemaJson() + ",\"strict\":true}}";
+    }
+
+    /**
+     * Wraps content in a chat completions response.
+     */
+    static byte[] completion(String content) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "assistant");
+        message.addProperty("content", content);
+        JsonObject choice = new JsonObject();
+        choice.addProperty("index", 0);
+        choice.add("message", message);
+        choice.addProperty("finish_reason", "stop");
+        JsonArray choices = new JsonArray();
+        choices.add(choice);
+        JsonObject response = new JsonObject();
+        response.addProperty("id", "chatcmpl-stub");
+        response.addProperty("object", "chat.completion");
+        response.add("choices", choices);
+        return response.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Wraps content in a streamed (server-sent events) chat completions response, split into deltas of the given
+     * number of characters.
+     */
+    static byte[] eventStream(String content, int deltaLength) {
+        StringBuilder stream = new StringBuilder(content.length() * 3);
+        for (int start = 0; start < content.length(); start += deltaLength) {
+            String delta = content.substring(start, Math.min(content.length(), start + deltaLength));
+            stream.append("data: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\"")
+                    .append(delta.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append("\"}}]}\n\n");
+        }
+        stream.append("data: [DONE]\n\n");
+        return stream.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.toString();
+    }
+
+    private static byte[] save(PDDocument document) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        document.save(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Counts the bytes written to it and discards them, so that serialization is measured without the cost of
+     * growing a buffer.
+     */
+    static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
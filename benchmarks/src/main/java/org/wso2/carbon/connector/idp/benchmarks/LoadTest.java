@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.benchmarks;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.wso2.carbon.connector.idp.connection.AIConnection;
+import org.wso2.carbon.connector.idp.connection.AIConnectionConfiguration;
+import org.wso2.carbon.connector.idp.constants.AIConstants;
+import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+import org.wso2.carbon.connector.idp.model.scan.AIScannerAgentModel;
+import org.wso2.carbon.connector.idp.model.scan.RenderProfile;
+import org.wso2.carbon.connector.idp.util.AIUtils;
+import org.wso2.carbon.connector.idp.util.RetryPolicy;
+import org.wso2.carbon.connector.idp.util.SchemaCache;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives {@link AIScannerAgentModel#processRequest(AIConnection)}, the work behind the processDocuments operation,
+ * against a {@link StubLlmServer} at increasing concurrency, and reports the throughput, latency percentiles, heap
+ * high-water mark and thread counts at each level. Nothing leaves the machine, so scaling regressions can be found
+ * without an MI server or an API key.
+ * <p>
+ * Options are given as {@code --name=value}; run with {@code --help} to list them.
+ */
+public final class LoadTest {
+
+    private static final String SCHEMA_PATH = "loadTestInvoice";
+    private static final long HEAP_SAMPLE_INTERVAL_MILLIS = 5;
+
+    private static final String[][] OPTIONS = {
+            {"concurrency", "1,2,4,8,16,32", "Comma separated concurrency levels, run in order"},
+            {"requests", "64", "Documents processed at each level; at least four per client"},
+            {"warmup", "16", "Documents processed on one client before the first level"},
+            {"document", "text-small", "text-small, text-large, scanned-small, scanned-large or image"},
+            {"profile", "auto", "Render profile of PDFs: auto (2048 px JPEG) or default (300 DPI PNG)"},
+            {"chunkSize", "0", "Pages per request of PDFs, 0 to send the whole document in one request"},
+            {"stream", "false", "Request streamed responses"},
+            {"latency", "200", "Latency of the stub LLM in milliseconds"},
+            {"jitter", "50", "Maximum random latency added to each response in milliseconds"},
+            {"failureRate", "0", "Fraction of requests the stub LLM answers with 500"},
+            {"rateLimitRate", "0", "Fraction of requests the stub LLM rejects with 429"},
+            {"retryAfter", "1", "Retry-After seconds of the 429 responses"},
+            {"lineItems", "20", "Line items of the extraction result the stub LLM returns"},
+            {"maxAttempts", String.valueOf(AIConstants.MAX_ATTEMPTS_DEFAULT), "Attempts of each LLM request"},
+            {"retryBaseDelay", String.valueOf(AIConstants.RETRY_BASE_DELAY_DEFAULT), "Retry base delay in ms"},
+            {"httpVersion", AIConstants.HTTP_VERSION_DEFAULT, "HTTP version of the connection"},
+            {"coalesce", "false", "Coalesce identical documents in flight; every document of a run is identical"},
+            {"output", "", "File to write the results to as JSON"}
+    };
+
+    private final Map<String, String> options;
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String[] option : OPTIONS) {
+            options.put(option[0], option[1]);
+        }
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            String name = arg.startsWith("--") ? arg.substring(2, separator < 0 ? arg.length() : separator) : "";
+            if (!options.containsKey(name) || separator < 0) {
+                printUsage();
+                System.exit("--help".equals(arg) ? 0 : 1);
+            }
+            options.put(name, arg.substring(separator + 1));
+        }
+        new LoadTest(options).run();
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: java -cp target/benchmarks.jar " + LoadTest.class.getName() + " [--name=value]...");
+        for (String[] option : OPTIONS) {
+            System.out.printf("  --%-16s %s (default: %s)%n", option[0], option[2],
+                    option[1].isEmpty() ? "none" : option[1]);
+        }
+    }
+
+    private void run() throws Exception {
+        String fileContent = createDocument(options.get("document"));
+        SchemaCache.getInstance().put(SCHEMA_PATH, JsonParser.parseString(Fixtures.invoiceSchemaJson())
+                .getAsJsonObject());
+
+        JsonArray results = new JsonArray();
+        try (StubLlmServer server = new StubLlmServer()) {
+            server.setLatency(getLong("latency"), getLong("jitter"));
+            server.setFailureRate(Double.parseDouble(options.get("failureRate")));
+            server.setRateLimitRate(Double.parseDouble(options.get("rateLimitRate")),
+                    (int) getLong("retryAfter"));
+            server.setResponseContent(Fixtures.llmResponse((int) getLong("lineItems"), false));
+
+            AIConnection connection = new AIConnection(createConfiguration(server.getEndpointUrl()));
+            try {
+                runLevel(connection, server, fileContent, 1, (int) getLong("warmup"));
+                System.out.printf("%-6s %8s %6s %6s %9s %9s %9s %9s %9s %8s %8s %7s %6s%n", "conc", "requests",
+                        "ok", "failed", "req/s", "scaling", "p50 ms", "p99 ms", "max ms", "heap MB", "threads",
+                        "llm max", "429s");
+                double baseThroughput = 0;
+                for (String level : options.get("concurrency").split(",")) {
+                    int concurrency = Integer.parseInt(level.trim());
+                    int requests = Math.max((int) getLong("requests"), concurrency * 4);
+                    JsonObject result = runLevel(connection, server, fileContent, concurrency, requests);
+                    double throughput = result.get("throughput").getAsDouble();
+                    if (baseThroughput == 0) {
+                        baseThroughput = throughput / concurrency;
+                    }
+                    // throughput relative to the first level scaled linearly; the latency of the stub makes the
+                    // ideal 1.0 until the connector or the machine saturates
+                    double scaling = throughput / (baseThroughput * concurrency);
+                    result.addProperty("scalingEfficiency", scaling);
+                    results.add(result);
+                    System.out.printf("%-6d %8d %6d %6d %9.1f %9.2f %9.1f %9.1f %9.1f %8.1f %8d %7d %6d%n",
+                            concurrency, requests, result.get("succeeded").getAsInt(),
+                            result.get("failed").getAsInt(), throughput, scaling,
+                            result.get("p50Millis").getAsDouble(), result.get("p99Millis").getAsDouble(),
+                            result.get("maxMillis").getAsDouble(), result.get("heapHighWaterMb").getAsDouble(),
+                            result.get("peakThreads").getAsInt(), result.get("llmMaxInFlight").getAsInt(),
+                            result.get("llmRateLimited").getAsLong());
+                }
+            } finally {
+                connection.close();
+            }
+        }
+
+        String output = options.get("output");
+        if (!output.isEmpty()) {
+            JsonObject report = new JsonObject();
+            JsonObject settings = new JsonObject();
+            options.forEach(settings::addProperty);
+            report.add("options", settings);
+            report.addProperty("javaVersion", System.getProperty("java.version"));
+            report.addProperty("availableProcessors", Runtime.getRuntime().availableProcessors());
+            report.addProperty("maxHeapMb", toMb(Runtime.getRuntime().maxMemory()));
+            report.add("levels", results);
+            Path outputPath = Paths.get(output);
+            if (outputPath.getParent() != null) {
+                Files.createDirectories(outputPath.getParent());
+            }
+            try (Writer writer = Files.newBufferedWriter(outputPath, StandardCharsets.UTF_8)) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(report, writer);
+            }
+            System.out.println("Results written to " + outputPath.toAbsolutePath());
+        }
+    }
+
+    /**
+     * Processes the given number of documents on the given number of client threads, each client starting the next
+     * document as soon as its previous one completes.
+     */
+    private JsonObject runLevel(AIConnection connection, StubLlmServer server, String fileContent,
+                                int concurrency, int requests) throws Exception {
+        RenderProfile renderProfile = "default".equalsIgnoreCase(options.get("profile"))
+                ? RenderProfile.defaultProfile() : RenderProfile.autoProfile(AIConstants.MAX_IMAGE_DIMENSION_DEFAULT);
+        int chunkSize = (int) getLong("chunkSize");
+        boolean stream = Boolean.parseBoolean(options.get("stream"));
+
+        System.gc();
+        server.resetCounters();
+        threadBean.resetPeakThreadCount();
+        long gcCountBefore = getGcCount();
+        long gcTimeBefore = getGcTimeMillis();
+        AtomicLong heapHighWater = new AtomicLong(memoryBean.getHeapMemoryUsage().getUsed());
+        Thread heapSampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                heapHighWater.accumulateAndGet(memoryBean.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(HEAP_SAMPLE_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "load-test-heap-sampler");
+        heapSampler.setDaemon(true);
+        heapSampler.start();
+
+        long[] latencies = new long[requests];
+        AtomicInteger nextRequest = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Map<String, Integer> failures = new HashMap<>();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency, AIUtils.createThreadFactory("load-test"));
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            clients.execute(() -> {
+                for (int request = nextRequest.getAndIncrement(); request < requests;
+                     request = nextRequest.getAndIncrement()) {
+                    AIScannerAgentModel agent = new AIScannerAgentModel();
+                    agent.setFileContent(fileContent);
+                    agent.setSchemaRegistryPath(SCHEMA_PATH);
+                    agent.setRenderProfile(renderProfile);
+                    agent.setChunkSize(chunkSize);
+                    agent.setStream(stream);
+                    long requestStart = System.nanoTime();
+                    try {
+                        agent.processRequest(connection);
+                        latencies[request] = System.nanoTime() - requestStart;
+                    } catch (AIConnectorException | RuntimeException e) {
+                        latencies[request] = -1;
+                        failed.incrementAndGet();
+                        synchronized (failures) {
+                            failures.merge(String.valueOf(e.getMessage()), 1, Integer::sum);
+                        }
+                    }
+                }
+            });
+        }
+        clients.shutdown();
+        if (!clients.awaitTermination(1, TimeUnit.HOURS)) {
+            throw new IllegalStateException("The load test did not complete within an hour");
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        int liveThreads = threadBean.getThreadCount();
+        heapSampler.interrupt();
+        heapSampler.join();
+
+        long[] succeeded = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+        JsonObject result = new JsonObject();
+        result.addProperty("concurrency", concurrency);
+        result.addProperty("requests", requests);
+        result.addProperty("succeeded", succeeded.length);
+        result.addProperty("failed", failed.get());
+        result.addProperty("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        result.addProperty("throughput", succeeded.length / (elapsedNanos / 1e9));
+        result.addProperty("p50Millis", percentileMillis(succeeded, 0.50));
+        result.addProperty("p90Millis", percentileMillis(succeeded, 0.90));
+        result.addProperty("p99Millis", percentileMillis(succeeded, 0.99));
+        result.addProperty("maxMillis", succeeded.length > 0 ? succeeded[succeeded.length - 1] / 1e6 : 0);
+        result.addProperty("heapHighWaterMb", toMb(heapHighWater.get()));
+        result.addProperty("peakThreads", threadBean.getPeakThreadCount());
+        result.addProperty("liveThreadsAfter", liveThreads);
+        result.addProperty("gcCount", getGcCount() - gcCountBefore);
+        result.addProperty("gcTimeMillis", getGcTimeMillis() - gcTimeBefore);
+        result.addProperty("llmRequests", server.getRequestCount());
+        result.addProperty("llmMaxInFlight", server.getMaxInFlight());
+        result.addProperty("llmFailures", server.getFailureCount());
+        result.addProperty("llmRateLimited", server.getRateLimitedCount());
+        result.addProperty("llmBytesReceived", server.getBytesReceived());
+        JsonObject failureMessages = new JsonObject();
+        failures.forEach(failureMessages::addProperty);
+        result.add("failures", failureMessages);
+        return result;
+    }
+
+    private AIConnectionConfiguration createConfiguration(String endpointUrl) {
+        AIConnectionConfiguration configuration = new AIConnectionConfiguration();
+        configuration.setConnectionName("loadTest");
+        configuration.setApiKey("stub");
+        configuration.setModel("stub-model");
+        configuration.setEndpointUrl(endpointUrl);
+        configuration.setHttpVersion(options.get("httpVersion"));
+        configuration.setCoalesceRequests(Boolean.parseBoolean(options.get("coalesce")));
+        configuration.setRetryPolicy(new RetryPolicy((int) getLong("maxAttempts"), getLong("retryBaseDelay"),
+                AIConstants.RETRY_JITTER_DEFAULT, new HashSet<>(parseStatusCodes(
+                AIConstants.RETRYABLE_STATUS_CODES_DEFAULT))));
+        return configuration;
+    }
+
+    private static List<Integer> parseStatusCodes(String statusCodes) {
+        List<Integer> codes = new ArrayList<>();
+        for (String code : statusCodes.split(",")) {
+            codes.add(Integer.parseInt(code.trim()));
+        }
+        return codes;
+    }
+
+    private static String createDocument(String document) throws IOException {
+        if ("image".equalsIgnoreCase(document)) {
+            byte[] image = AIUtils.encodeImage(Fixtures.pageImage(1448, 2048), RenderProfile.ImageFormat.JPEG,
+                    AIConstants.IMAGE_QUALITY_DEFAULT);
+            return "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(image);
+        }
+        String[] parts = document.toUpperCase().split("-");
+        if (parts.length != 2 || !Arrays.asList("TEXT", "SCANNED").contains(parts[0])
+                || !Arrays.asList("SMALL", "LARGE").contains(parts[1])) {
+            throw new IllegalArgumentException("Unknown document: " + document);
+        }
+        byte[] pdf = Fixtures.pdf(Fixtures.PdfKind.valueOf(parts[0]),
+                "SMALL".equals(parts[1]) ? Fixtures.SMALL_PDF_PAGES : Fixtures.LARGE_PDF_PAGES);
+        return "data:application/pdf;base64," + Base64.getEncoder().encodeToString(pdf);
+    }
+
+    private long getLong(String option) {
+        return Long.parseLong(options.get(option).trim());
+    }
+
+    private static double percentileMillis(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1e6;
+    }
+
+    private static double toMb(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    private static long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long getGcTimeMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+}
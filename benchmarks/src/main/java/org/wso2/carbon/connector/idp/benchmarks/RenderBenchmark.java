@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.connector.idp.constants.AIConstants;
+import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+import org.wso2.carbon.connector.idp.model.scan.PageImage;
+import org.wso2.carbon.connector.idp.model.scan.RenderProfile;
+import org.wso2.carbon.connector.idp.util.AIUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of PDF pages to encoded images, as done for every PDF scanned in image mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class RenderBenchmark {
+
+    @Param({"SMALL", "LARGE"})
+    public String size;
+
+    @Param({"TEXT", "SCANNED"})
+    public Fixtures.PdfKind kind;
+
+    /** The 300 DPI PNG default profile, and the auto profile that fits pages within 2048 pixels as JPEG. */
+    @Param({"default", "auto"})
+    public String profile;
+
+    private byte[] pdf;
+    private RenderProfile renderProfile;
+
+    @Setup
+    public void setUp() throws IOException {
+        pdf = Fixtures.pdf(kind, "SMALL".equals(size) ? Fixtures.SMALL_PDF_PAGES : Fixtures.LARGE_PDF_PAGES);
+        renderProfile = "auto".equals(profile)
+                ? RenderProfile.autoProfile(AIConstants.MAX_IMAGE_DIMENSION_DEFAULT) : RenderProfile.defaultProfile();
+    }
+
+    @Benchmark
+    public List<PageImage> render() throws AIConnectorException {
+        return AIUtils.pdfToImage(pdf, renderProfile, null, 1);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.benchmarks;
+
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+import org.wso2.carbon.connector.idp.util.ChatResponseReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the content generated by the LLM: reading a plain or streamed response, and extracting the JSON object
+ * from content returned plain or wrapped in a markdown code fence.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class ResponseParseBenchmark {
+
+    /** Line items of the extracted invoice; 200 items is about 20 KB of JSON. */
+    @Param({"10", "200"})
+    public int lineItems;
+
+    @Param({"false", "true"})
+    public boolean fenced;
+
+    private String content;
+    private byte[] completion;
+    private byte[] eventStream;
+
+    @Setup
+    public void setUp() {
+        content = Fixtures.llmResponse(lineItems, fenced);
+        completion = Fixtures.completion(content);
+        eventStream = Fixtures.eventStream(content, 16);
+    }
+
+    @Benchmark
+    public JsonObject extractJson() throws AIConnectorException {
+        return ChatResponseReader.extractJson(content);
+    }
+
+    @Benchmark
+    public String readCompletion() throws AIConnectorException, IOException {
+        return ChatResponseReader.readCompletion(new ByteArrayInputStream(completion));
+    }
+
+    @Benchmark
+    public String readEventStream() throws AIConnectorException, IOException {
+        return ChatResponseReader.readEventStream(new ByteArrayInputStream(eventStream)).getText();
+    }
+}
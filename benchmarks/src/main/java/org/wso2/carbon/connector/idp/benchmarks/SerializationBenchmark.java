@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.connector.idp.constants.AIConstants;
+import org.wso2.carbon.connector.idp.model.scan.ChatMessage;
+import org.wso2.carbon.connector.idp.model.scan.ChatRequest;
+import org.wso2.carbon.connector.idp.model.scan.ContentPart;
+import org.wso2.carbon.connector.idp.model.scan.PageImage;
+import org.wso2.carbon.connector.idp.model.scan.RenderProfile;
+import org.wso2.carbon.connector.idp.util.AIUtils;
+import org.wso2.carbon.connector.idp.util.ChatRequestWriter;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of chat requests carrying page images to the JSON sent to the LLM, which Base64 encodes every
+ * image into the request body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class SerializationBenchmark {
+
+    @Param({"1", "4", "12"})
+    public int pages;
+
+    private ChatRequest request;
+
+    @Setup
+    public void setUp() throws IOException {
+        BufferedImage page = Fixtures.pageImage(1448, 2048);
+        byte[] data = AIUtils.encodeImage(page, RenderProfile.ImageFormat.JPEG, AIConstants.IMAGE_QUALITY_DEFAULT);
+        request = new ChatRequest("gpt-4.1-mini", AIConstants.MAX_TOKENS_DEFAULT, Fixtures.responseFormatJson());
+        request.addMessage(new ChatMessage("system", AIConstants.SYSTEM_PROMPT_TEMPLATE));
+        ChatMessage userMessage = new ChatMessage("user");
+        userMessage.addContent(ContentPart.text(AIConstants.USER_PROMPT_TEMPLATE));
+        for (int i = 0; i < pages; i++) {
+            userMessage.addContent(ContentPart.image(new PageImage(i + 1,
+                    RenderProfile.ImageFormat.JPEG.getMimeType(), data, page.getWidth(), page.getHeight(), null)));
+        }
+        request.addMessage(userMessage);
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        Fixtures.CountingOutputStream out = new Fixtures.CountingOutputStream();
+        ChatRequestWriter.write(request, out);
+        return out.getCount();
+    }
+}
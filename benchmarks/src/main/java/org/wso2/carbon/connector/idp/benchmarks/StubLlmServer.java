@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.benchmarks;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process, OpenAI compatible chat completions server for load tests. Every request is answered with the same
+ * extraction result after a configurable latency, unless it is picked to fail with a server error or to be rejected
+ * with 429. Both plain and streamed (server-sent events) responses are supported.
+ * <p>
+ * The request body is read to the end, as a real service does, but only the {@code stream} flag is parsed from it,
+ * so that the server takes as little CPU as possible away from the connector running in the same JVM.
+ */
+public final class StubLlmServer implements Closeable {
+
+    public static final String CHAT_COMPLETIONS_PATH = "/v1/chat/completions";
+
+    private static final byte[] SERVER_ERROR_BODY =
+            "{\"error\":{\"message\":\"Injected server error\",\"type\":\"server_error\"}}"
+                    .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RATE_LIMITED_BODY =
+            "{\"error\":{\"message\":\"Rate limit reached\",\"type\":\"rate_limit_exceeded\"}}"
+                    .getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private volatile long latencyMillis = 200;
+    private volatile long latencyJitterMillis = 50;
+    private volatile double failureRate;
+    private volatile double rateLimitRate;
+    private volatile int retryAfterSeconds = 1;
+    private volatile byte[] responseBody;
+    private volatile byte[] eventStreamBody;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    /**
+     * Starts a server on an ephemeral port of the loopback interface.
+     *
+     * @throws IOException if the server cannot be bound.
+     */
+    public StubLlmServer() throws IOException {
+        setResponseContent(Fixtures.llmResponse(20, false));
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        // one thread per exchange, so that the server never limits the concurrency under test
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-llm");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext(CHAT_COMPLETIONS_PATH, this::handle);
+        server.start();
+    }
+
+    public String getEndpointUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+                + CHAT_COMPLETIONS_PATH;
+    }
+
+    /**
+     * Sets the time from reading the request to answering it: the given latency plus a uniformly distributed
+     * jitter of up to the given number of milliseconds.
+     */
+    public void setLatency(long latencyMillis, long latencyJitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.latencyJitterMillis = latencyJitterMillis;
+    }
+
+    /**
+     * @param failureRate Fraction of the requests answered with 500, from 0 to 1.
+     */
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * @param rateLimitRate     Fraction of the requests rejected with 429, from 0 to 1.
+     * @param retryAfterSeconds Value of the Retry-After header of the rejections.
+     */
+    public void setRateLimitRate(double rateLimitRate, int retryAfterSeconds) {
+        this.rateLimitRate = rateLimitRate;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Sets the content generated by the "LLM", which is returned in every successful response.
+     */
+    public void setResponseContent(String content) {
+        responseBody = Fixtures.completion(content);
+        eventStreamBody = Fixtures.eventStream(content, 16);
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * @return The largest number of requests the server handled at the same time since the last reset.
+     */
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    public void resetCounters() {
+        requestCount.set(0);
+        failureCount.set(0);
+        rateLimitedCount.set(0);
+        bytesReceived.set(0);
+        maxInFlight.set(inFlight.get());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        requestCount.incrementAndGet();
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            boolean stream = readStreamFlag(exchange.getRequestBody());
+            double outcome = ThreadLocalRandom.current().nextDouble();
+            if (outcome < rateLimitRate) {
+                rateLimitedCount.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", Integer.toString(retryAfterSeconds));
+                respond(exchange, 429, "application/json", RATE_LIMITED_BODY);
+                return;
+            }
+            sleep();
+            if (outcome < rateLimitRate + failureRate) {
+                failureCount.incrementAndGet();
+                respond(exchange, 500, "application/json", SERVER_ERROR_BODY);
+            } else if (stream) {
+                respond(exchange, 200, "text/event-stream", eventStreamBody);
+            } else {
+                respond(exchange, 200, "application/json", responseBody);
+            }
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Reads the request body to the end and returns whether it asks for a streamed response. Every other value is
+     * skipped without being materialized.
+     */
+    private boolean readStreamFlag(InputStream body) throws IOException {
+        boolean stream = false;
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new CountingInputStream(body),
+                StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("stream".equals(reader.nextName()) && reader.peek() == JsonToken.BOOLEAN) {
+                    stream = reader.nextBoolean();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return stream;
+    }
+
+    private void sleep() throws IOException {
+        long jitter = latencyJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(latencyJitterMillis + 1) : 0;
+        try {
+            TimeUnit.MILLISECONDS.sleep(latencyMillis + jitter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while simulating latency", e);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int statusCode, String contentType, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(statusCode, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private final class CountingInputStream extends FilterInputStream {
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                bytesReceived.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                bytesReceived.addAndGet(read);
+            }
+            return read;
+        }
+    }
+}
@@ -17,35 +17,157 @@
 package org.wso2.carbon.connector.idp;
 
 import com.google.gson.JsonObject;
+import org.apache.synapse.FaultHandler;
+import org.apache.synapse.Mediator;
 import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseConstants;
+import org.apache.synapse.mediators.base.SequenceMediator;
 import org.wso2.integration.connector.core.AbstractConnectorOperation;
 import org.wso2.integration.connector.core.ConnectException;
 import org.wso2.integration.connector.core.connection.ConnectionHandler;
 import org.wso2.carbon.connector.idp.connection.AIConnection;
 import org.wso2.carbon.connector.idp.constants.AIConstants;
+import org.wso2.carbon.connector.idp.exception.AIConnectorException;
 import org.wso2.carbon.connector.idp.model.scan.AIScannerAgentModel;
 import org.wso2.carbon.connector.idp.util.AIUtils;
 
+import java.util.Stack;
+
 /**
  * THis class handles scanning documents with AI.
  */
 public class AIScanner extends AbstractConnectorOperation {
-    
+
+    /**
+     * Set by {@link #execute} for a Non-Blocking scan, which {@link #mediate} hands over to the connection worker
+     * pool once the operation has returned.
+     */
+    private final ThreadLocal<PendingScan> pendingScan = new ThreadLocal<>();
+
+    /**
+     * A Non-Blocking scan prepared on the mediation thread and not yet handed over to the worker pool.
+     */
+    private static class PendingScan {
+        private final AIConnection connection;
+        private final AIScannerAgentModel agent;
+        private final Runnable task;
+
+        PendingScan(AIConnection connection, AIScannerAgentModel agent, Runnable task) {
+            this.connection = connection;
+            this.agent = agent;
+            this.task = task;
+        }
+    }
+
+    /**
+     * Runs the operation and, for a Non-Blocking scan, hands the scan over to the worker pool of the connection
+     * and ends the current flow, which resumes in the response sequence. The scan is handed over only after the
+     * operation has returned, since the worker thread continues the flow with the same message context and must not
+     * use it while the mediation thread still does.
+     */
     @Override
-    public void execute(MessageContext messageContext, String responseVariable, Boolean overwriteBody) throws ConnectException {
+    public boolean mediate(MessageContext messageContext) {
+        boolean result;
+        try {
+            result = super.mediate(messageContext);
+        } catch (RuntimeException e) {
+            PendingScan scan = takePendingScan();
+            if (scan != null) {
+                scan.agent.closeDocument();
+            }
+            throw e;
+        }
+        PendingScan scan = takePendingScan();
+        if (scan == null) {
+            return result;
+        }
+        try {
+            scan.connection.executeAsync(scan.task);
+        } catch (AIConnectorException | RuntimeException e) {
+            scan.agent.closeDocument();
+            handleException("Error processing the document", e, messageContext);
+        }
+        return false;
+    }
+
+    private PendingScan takePendingScan() {
+        PendingScan scan = pendingScan.get();
+        pendingScan.remove();
+        return scan;
+    }
+
+    @Override
+    public void execute(MessageContext messageContext, String responseVariable, Boolean overwriteBody)
+            throws ConnectException {
         try {
             ConnectionHandler handler = ConnectionHandler.getConnectionHandler();
             AIConnection aiConnection = (AIConnection) handler
                     .getConnection(AIConstants.CONNECTOR_NAME, AIUtils.getConnectionName(messageContext));
-            AIScannerAgentModel agent = AIUtils.getAIScannerAgent(messageContext);
+            String executionMode = AIUtils.getStringParam(messageContext, AIConstants.EXECUTION_MODE)
+                    .orElse(AIConstants.EXECUTION_MODE_BLOCKING);
+            if (AIConstants.EXECUTION_MODE_NON_BLOCKING.equalsIgnoreCase(executionMode)) {
+                SequenceMediator responseSequence = getResponseSequence(messageContext);
+                AIScannerAgentModel agent = AIUtils.getAIScannerAgent(messageContext,
+                        aiConnection.getAiConnectionConfiguration().getDocumentBaseDirectory());
+                pendingScan.set(new PendingScan(aiConnection, agent, () -> processAsync(messageContext,
+                        responseVariable, overwriteBody, aiConnection, agent, responseSequence)));
+                return;
+            }
+            AIScannerAgentModel agent = AIUtils.getAIScannerAgent(messageContext,
+                    aiConnection.getAiConnectionConfiguration().getDocumentBaseDirectory());
             agent.processRequest(aiConnection);
             JsonObject resultJSON = agent.getResponse();
-            handleConnectorResponse(messageContext, responseVariable, overwriteBody, resultJSON, null, null);
+            handleConnectorResponse(messageContext, responseVariable, overwriteBody, resultJSON, null,
+                    agent.getResponseAttributes());
         
         } catch (Exception e) {
            handleException("Error processing the document", e, messageContext);
         }
         
     }
-}
 
+    /**
+     * Runs the scan on a connection worker thread and continues the message flow in the response sequence, or in
+     * the fault handler of the flow if the scan fails.
+     */
+    private void processAsync(MessageContext messageContext, String responseVariable, Boolean overwriteBody,
+                              AIConnection aiConnection, AIScannerAgentModel agent,
+                              SequenceMediator responseSequence) {
+        try {
+            agent.processRequest(aiConnection);
+            handleConnectorResponse(messageContext, responseVariable, overwriteBody, agent.getResponse(), null,
+                    agent.getResponseAttributes());
+        } catch (Exception e) {
+            log.error("Error processing the document", e);
+            handleAsyncFault(messageContext, e);
+            return;
+        }
+        messageContext.getEnvironment().injectAsync(messageContext, responseSequence);
+    }
+
+    private void handleAsyncFault(MessageContext messageContext, Exception e) {
+        Stack<FaultHandler> faultStack = messageContext.getFaultStack();
+        if (faultStack != null && !faultStack.isEmpty()) {
+            faultStack.pop().handleFault(messageContext, e);
+            return;
+        }
+        messageContext.setProperty(SynapseConstants.ERROR_CODE, SynapseConstants.DEFAULT_ERROR);
+        messageContext.setProperty(SynapseConstants.ERROR_MESSAGE, "Error processing the document: " + e.getMessage());
+        messageContext.setProperty(SynapseConstants.ERROR_EXCEPTION, e);
+        Mediator faultSequence = messageContext.getFaultSequence();
+        if (faultSequence != null) {
+            faultSequence.mediate(messageContext);
+        }
+    }
+
+    private SequenceMediator getResponseSequence(MessageContext messageContext) throws AIConnectorException {
+        String sequenceName = AIUtils.getStringParam(messageContext, AIConstants.RESPONSE_SEQUENCE)
+                .orElseThrow(() -> new AIConnectorException("A response sequence is required in the " +
+                        AIConstants.EXECUTION_MODE_NON_BLOCKING + " execution mode."));
+        Mediator sequence = messageContext.getSequence(sequenceName);
+        if (!(sequence instanceof SequenceMediator)) {
+            throw new AIConnectorException("Response sequence " + sequenceName + " not found.");
+        }
+        return (SequenceMediator) sequence;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp;
+
+import com.google.gson.Gson;
+import org.apache.synapse.MessageContext;
+import org.wso2.integration.connector.core.AbstractConnectorOperation;
+import org.wso2.integration.connector.core.ConnectException;
+import org.wso2.integration.connector.core.connection.ConnectionHandler;
+import org.wso2.carbon.connector.idp.connection.AIConnection;
+import org.wso2.carbon.connector.idp.constants.AIConstants;
+import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+import org.wso2.carbon.connector.idp.metrics.ScanMetrics;
+import org.wso2.carbon.connector.idp.util.AIUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class returns the scan metrics of a connection, in the Prometheus text format for scraping through an API, or
+ * as JSON.
+ */
+public class MetricsReader extends AbstractConnectorOperation {
+
+    private static final Gson gson = new Gson();
+
+    @Override
+    public void execute(MessageContext messageContext, String responseVariable, Boolean overwriteBody)
+            throws ConnectException {
+        try {
+            ConnectionHandler handler = ConnectionHandler.getConnectionHandler();
+            AIConnection aiConnection = (AIConnection) handler
+                    .getConnection(AIConstants.CONNECTOR_NAME, AIUtils.getConnectionName(messageContext));
+            ScanMetrics metrics = aiConnection.getMetrics();
+            String format = AIUtils.getStringParam(messageContext, AIConstants.METRICS_FORMAT)
+                    .orElse(AIConstants.METRICS_FORMAT_PROMETHEUS);
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            if (AIConstants.METRICS_FORMAT_PROMETHEUS.equalsIgnoreCase(format)) {
+                attributes.put(AIConstants.CONTENT_TYPE_STRING, AIConstants.PROMETHEUS_CONTENT_TYPE);
+                handleConnectorResponse(messageContext, responseVariable, overwriteBody, metrics.toPrometheusText(),
+                        null, attributes);
+            } else if (AIConstants.METRICS_FORMAT_JSON.equalsIgnoreCase(format)) {
+                attributes.put(AIConstants.CONTENT_TYPE_STRING, AIConstants.JSON_CONTENT_TYPE);
+                handleConnectorResponse(messageContext, responseVariable, overwriteBody, toJson(metrics), null,
+                        attributes);
+            } else {
+                throw new AIConnectorException("Invalid format: " + format + ". Supported formats are: " +
+                        AIConstants.METRICS_FORMAT_PROMETHEUS + ", " + AIConstants.METRICS_FORMAT_JSON);
+            }
+        } catch (Exception e) {
+            handleException("Error reading the metrics", e, messageContext);
+        }
+    }
+
+    private static Object toJson(ScanMetrics metrics) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("scans", metrics.getScans());
+        json.put("failedScans", metrics.getFailedScans());
+        json.put("cacheHits", metrics.getCacheHits());
+        json.put("coalescedScans", metrics.getCoalescedScans());
+        json.put("schemaCacheHits", metrics.getSchemaCacheHits());
+        json.put("schemaCacheMisses", metrics.getSchemaCacheMisses());
+        json.put("pagesRendered", metrics.getPagesRendered());
+        json.put("pagesSent", metrics.getPagesSent());
+        json.put("bytesUploaded", metrics.getBytesUploaded());
+        json.put("responses", metrics.getResponses());
+        json.put("errors", metrics.getErrors());
+        json.put("stages", metrics.getStageLatencies());
+        json.put("schemas", metrics.getSchemaLatencies());
+        return gson.toJsonTree(json);
+    }
+}
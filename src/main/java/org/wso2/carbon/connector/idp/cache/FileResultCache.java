@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.cache;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Result cache stored as one JSON file per key in a directory, so that cached results survive server restarts.
+ * Entries expire by the modification time of their files. The number of files is checked every few writes and the
+ * oldest files are removed when the cache holds more than the maximum number of entries.
+ */
+public class FileResultCache implements ResultCache {
+
+    private static final Log log = LogFactory.getLog(FileResultCache.class);
+    private static final String FILE_SUFFIX = ".json";
+    private static final int EVICTION_CHECK_INTERVAL = 32;
+
+    private final Path directory;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final AtomicInteger writesSinceEvictionCheck = new AtomicInteger();
+
+    public FileResultCache(Path directory, int maxEntries, long ttlMillis) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public JsonObject get(String key) {
+        Path file = directory.resolve(key + FILE_SUFFIX);
+        try {
+            if (Files.getLastModifiedTime(file).toMillis() + ttlMillis < System.currentTimeMillis()) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                return JsonParser.parseReader(reader).getAsJsonObject();
+            }
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            log.warn("Discarding unreadable cached result " + file, e);
+            deleteQuietly(file);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, JsonObject result) {
+        Path file = directory.resolve(key + FILE_SUFFIX);
+        Path tempFile = null;
+        try {
+            // written to a temporary file first so that readers never see a partially written entry
+            tempFile = Files.createTempFile(directory, key, ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                writer.write(result.toString());
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write the result cache entry " + file, e);
+            if (tempFile != null) {
+                deleteQuietly(tempFile);
+            }
+            return;
+        }
+        if (writesSinceEvictionCheck.incrementAndGet() >= EVICTION_CHECK_INTERVAL) {
+            writesSinceEvictionCheck.set(0);
+            evict();
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Path file : listEntries()) {
+            deleteQuietly(file);
+        }
+    }
+
+    private synchronized void evict() {
+        List<Path> files = listEntries();
+        long expiredBefore = System.currentTimeMillis() - ttlMillis;
+        List<Path> live = new ArrayList<>();
+        for (Path file : files) {
+            if (lastModified(file) < expiredBefore) {
+                deleteQuietly(file);
+            } else {
+                live.add(file);
+            }
+        }
+        if (live.size() > maxEntries) {
+            live.sort(Comparator.comparingLong(FileResultCache::lastModified));
+            for (Path file : live.subList(0, live.size() - maxEntries)) {
+                deleteQuietly(file);
+            }
+        }
+    }
+
+    private List<Path> listEntries() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to list the result cache directory " + directory, e);
+        }
+        return files;
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            FileTime lastModifiedTime = Files.getLastModifiedTime(file);
+            return lastModifiedTime.toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete the result cache file " + file, e);
+        }
+    }
+}
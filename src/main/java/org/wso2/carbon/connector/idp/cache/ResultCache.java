@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.cache;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Cache of extraction results, keyed by a digest of everything that determines the result of an extraction.
+ */
+public interface ResultCache {
+
+    /**
+     * @param key Cache key.
+     * @return The cached result, or null if there is no live entry for the key.
+     */
+    JsonObject get(String key);
+
+    void put(String key, JsonObject result);
+
+    void clear();
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Builds content-addressed cache keys: a SHA-256 digest over the document bytes and the text values that affect
+ * the extraction result.
+ */
+public class ResultCacheKey {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ResultCacheKey() {
+    }
+
+    /**
+     * @param document Decoded bytes of the document.
+     * @param values   Schema, model, prompts and any other values the result depends on.
+     * @return Hex encoded SHA-256 digest.
+     */
+    public static String compute(byte[] document, String... values) {
+        MessageDigest digest = newDigest();
+        digest.update(document);
+        return finish(digest, values);
+    }
+
+    /**
+     * Computes the key of a document read from a stream, which is digested as it is read instead of being loaded
+     * into memory. The key is the same as that of the same document given as bytes.
+     *
+     * @param document Stream of the decoded document, which is read to the end but not closed.
+     * @param values   Schema, model, prompts and any other values the result depends on.
+     * @return Hex encoded SHA-256 digest.
+     * @throws IOException if reading the stream fails.
+     */
+    public static String compute(InputStream document, String... values) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int count;
+        while ((count = document.read(buffer)) > 0) {
+            digest.update(buffer, 0, count);
+        }
+        return finish(digest, values);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    private static String finish(MessageDigest digest, String... values) {
+        for (String value : values) {
+            // each value is length prefixed so that different splits of the same text give different keys
+            byte[] bytes = String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+            digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) ':');
+            digest.update(bytes);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -16,6 +16,10 @@
  */
 package org.wso2.carbon.connector.idp.config;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import org.apache.synapse.ManagedLifecycle;
 import org.apache.synapse.MessageContext;
 import org.apache.synapse.SynapseException;
@@ -26,12 +30,21 @@ import org.wso2.integration.connector.core.connection.ConnectionHandler;
 import org.wso2.carbon.connector.idp.connection.AIConnection;
 import org.wso2.carbon.connector.idp.connection.AIConnectionConfiguration;
 import org.wso2.carbon.connector.idp.constants.AIConstants;
+import org.wso2.carbon.connector.idp.model.AIEngineModel;
 import org.wso2.carbon.connector.idp.util.AIUtils;
+import org.wso2.carbon.connector.idp.util.RetryPolicy;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 public class Init extends AbstractConnector implements ManagedLifecycle {
 
+    private static final Pattern KEEP_ALIVE_PATTERN = Pattern.compile("-?(\\d+|(\\d+(\\.\\d+)?(ms|s|m|h))+)");
+
     @Override
     public void init(SynapseEnvironment synapseEnvironment) {
     }
@@ -50,6 +63,7 @@ public class Init extends AbstractConnector implements ManagedLifecycle {
             if (!handler.checkIfConnectionExists(AIConstants.CONNECTOR_NAME, connectionName)) {
                 AIConnection aiConnection = new AIConnection(configuration);
                 handler.createConnection(AIConstants.CONNECTOR_NAME, connectionName, aiConnection);
+                aiConnection.scheduleKeepWarm();
             } else {
                 AIConnection aiConnection = (AIConnection) handler
                         .getConnection(AIConstants.CONNECTOR_NAME, connectionName);
@@ -97,7 +111,262 @@ public class Init extends AbstractConnector implements ManagedLifecycle {
         connectionConfiguration.setApiKey(apiKey.get());
         connectionConfiguration.setModel(model);
         connectionConfiguration.setEndpointUrl(endpointURL);
+        setHttpClientConfig(mc, connectionConfiguration);
+        setRenderConfig(mc, connectionConfiguration);
+        setResultCacheConfig(mc, connectionConfiguration);
+        connectionConfiguration.setCoalesceRequests(Boolean.parseBoolean(AIUtils.getStringParam(mc,
+                AIConstants.COALESCE_REQUESTS).orElse(AIConstants.COALESCE_REQUESTS_DEFAULT.toString())));
+        int maxOutstandingCalls = AIUtils.getIntegerParam(mc, AIConstants.MAX_OUTSTANDING_CALLS)
+                .orElse(AIConstants.MAX_OUTSTANDING_CALLS_DEFAULT);
+        if (maxOutstandingCalls <= 0) {
+            throw new SynapseException("Invalid maxOutstandingCalls: " + maxOutstandingCalls +
+                    ". It must be greater than 0.");
+        }
+        connectionConfiguration.setMaxOutstandingCalls(maxOutstandingCalls);
+        connectionConfiguration.setDocumentBaseDirectory(AIUtils.getStringParam(mc,
+                AIConstants.DOCUMENT_BASE_DIRECTORY).map(String::trim).filter(value -> !value.isEmpty()).orElse(null));
+        setRateLimitConfig(mc, connectionConfiguration);
+        setRetryConfig(mc, connectionConfiguration);
+        setEngineConfig(mc, connectionConfiguration);
+        setOllamaConfig(mc, connectionConfiguration);
         return connectionConfiguration;
     }
-}
 
+    private void setEngineConfig(MessageContext mc, AIConnectionConfiguration connectionConfiguration)
+            throws SynapseException {
+        int engineWeight = AIUtils.getIntegerParam(mc, AIConstants.ENGINE_WEIGHT)
+                .orElse(AIConstants.ENGINE_WEIGHT_DEFAULT);
+        int ejectAfterFailures = AIUtils.getIntegerParam(mc, AIConstants.EJECT_AFTER_FAILURES)
+                .orElse(AIConstants.EJECT_AFTER_FAILURES_DEFAULT);
+        int ejectionTime = AIUtils.getIntegerParam(mc, AIConstants.EJECTION_TIME)
+                .orElse(AIConstants.EJECTION_TIME_DEFAULT);
+
+        if (engineWeight <= 0) {
+            throw new SynapseException("Invalid engineWeight: " + engineWeight + ". It must be greater than 0.");
+        }
+        if (ejectAfterFailures <= 0) {
+            throw new SynapseException("Invalid ejectAfterFailures: " + ejectAfterFailures +
+                    ". It must be greater than 0.");
+        }
+        if (ejectionTime < 0) {
+            throw new SynapseException("Invalid ejectionTime: " + ejectionTime + ". It must not be negative.");
+        }
+        connectionConfiguration.setEngineWeight(engineWeight);
+        connectionConfiguration.setEjectAfterFailures(ejectAfterFailures);
+        connectionConfiguration.setEjectionTime(ejectionTime);
+        Optional<String> additionalEngines = AIUtils.getStringParam(mc, AIConstants.ADDITIONAL_ENGINES);
+        if (additionalEngines.isPresent()) {
+            connectionConfiguration.setAdditionalEngines(parseEngines(additionalEngines.get(),
+                    connectionConfiguration));
+        }
+    }
+
+    /**
+     * Parses the additional engines of a connection, a JSON array of objects with an endpointUrl and optionally an
+     * apiKey, a model and a weight. The API key and model default to the ones of the connection.
+     */
+    private List<AIEngineModel> parseEngines(String enginesJson, AIConnectionConfiguration connectionConfiguration)
+            throws SynapseException {
+        List<AIEngineModel> engines = new ArrayList<>();
+        try {
+            for (JsonElement element : JsonParser.parseString(enginesJson).getAsJsonArray()) {
+                JsonObject engine = element.getAsJsonObject();
+                if (!engine.has("endpointUrl") || engine.get("endpointUrl").getAsString().isBlank()) {
+                    throw new SynapseException("Every additional engine must have an endpointUrl.");
+                }
+                int weight = engine.has("weight") ? engine.get("weight").getAsInt() : AIConstants.ENGINE_WEIGHT_DEFAULT;
+                if (weight <= 0) {
+                    throw new SynapseException("Invalid weight " + weight + " of the additional engine " +
+                            engine.get("endpointUrl").getAsString() + ". It must be greater than 0.");
+                }
+                engines.add(new AIEngineModel(
+                        engine.has("apiKey") ? engine.get("apiKey").getAsString() : connectionConfiguration.getApiKey(),
+                        engine.has("model") ? engine.get("model").getAsString() : connectionConfiguration.getModel(),
+                        engine.get("endpointUrl").getAsString(), weight));
+            }
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException |
+                 NumberFormatException e) {
+            throw new SynapseException("Invalid additionalEngines: it must be a JSON array of objects with an " +
+                    "endpointUrl and optionally an apiKey, a model and a weight.", e);
+        }
+        return engines;
+    }
+
+    /**
+     * Reads the model residency settings, which apply to the engines that use the native chat API of Ollama.
+     */
+    private void setOllamaConfig(MessageContext mc, AIConnectionConfiguration connectionConfiguration)
+            throws SynapseException {
+        Optional<String> keepAlive = AIUtils.getStringParam(mc, AIConstants.KEEP_ALIVE).map(String::trim);
+        int contextLength = AIUtils.getIntegerParam(mc, AIConstants.CONTEXT_LENGTH)
+                .orElse(AIConstants.CONTEXT_LENGTH_DEFAULT);
+        int keepWarmInterval = AIUtils.getIntegerParam(mc, AIConstants.KEEP_WARM_INTERVAL)
+                .orElse(AIConstants.KEEP_WARM_INTERVAL_DEFAULT);
+
+        if (keepAlive.isPresent() && !keepAlive.get().isEmpty()
+                && !KEEP_ALIVE_PATTERN.matcher(keepAlive.get()).matches()) {
+            throw new SynapseException("Invalid keepAlive: " + keepAlive.get() + ". It must be a number of seconds " +
+                    "or a duration such as 30m or 1h, and a negative value keeps the model loaded indefinitely.");
+        }
+        if (contextLength < 0) {
+            throw new SynapseException("Invalid contextLength: " + contextLength + ". It must not be negative.");
+        }
+        if (keepWarmInterval < 0) {
+            throw new SynapseException("Invalid keepWarmInterval: " + keepWarmInterval +
+                    ". It must not be negative.");
+        }
+        connectionConfiguration.setKeepAlive(keepAlive.filter(value -> !value.isEmpty()).orElse(null));
+        connectionConfiguration.setContextLength(contextLength);
+        connectionConfiguration.setKeepWarmInterval(keepWarmInterval);
+    }
+
+    private void setRetryConfig(MessageContext mc, AIConnectionConfiguration connectionConfiguration)
+            throws SynapseException {
+        int maxAttempts = AIUtils.getIntegerParam(mc, AIConstants.MAX_ATTEMPTS)
+                .orElse(AIConstants.MAX_ATTEMPTS_DEFAULT);
+        int baseDelay = AIUtils.getIntegerParam(mc, AIConstants.RETRY_BASE_DELAY)
+                .orElse(AIConstants.RETRY_BASE_DELAY_DEFAULT);
+        String jitterParam = AIUtils.getStringParam(mc, AIConstants.RETRY_JITTER)
+                .orElse(AIConstants.RETRY_JITTER_DEFAULT.toString());
+        String statusCodesParam = AIUtils.getStringParam(mc, AIConstants.RETRYABLE_STATUS_CODES)
+                .orElse(AIConstants.RETRYABLE_STATUS_CODES_DEFAULT);
+
+        if (maxAttempts <= 0) {
+            throw new SynapseException("Invalid maxAttempts: " + maxAttempts + ". It must be greater than 0.");
+        }
+        if (baseDelay < 0) {
+            throw new SynapseException("Invalid retryBaseDelay: " + baseDelay + ". It must not be negative.");
+        }
+        double jitter;
+        try {
+            jitter = Double.parseDouble(jitterParam.trim());
+        } catch (NumberFormatException e) {
+            jitter = -1;
+        }
+        if (jitter < 0 || jitter > 1) {
+            throw new SynapseException("Invalid retryJitter: " + jitterParam + ". It must be between 0 and 1.");
+        }
+        Set<Integer> statusCodes = new HashSet<>();
+        for (String statusCode : statusCodesParam.split(",")) {
+            if (statusCode.isBlank()) {
+                continue;
+            }
+            try {
+                statusCodes.add(Integer.parseInt(statusCode.trim()));
+            } catch (NumberFormatException e) {
+                throw new SynapseException("Invalid retryableStatusCodes: " + statusCodesParam +
+                        ". It must be a comma separated list of HTTP status codes.");
+            }
+        }
+        connectionConfiguration.setRetryPolicy(new RetryPolicy(maxAttempts, baseDelay, jitter, statusCodes));
+    }
+
+    private void setRateLimitConfig(MessageContext mc, AIConnectionConfiguration connectionConfiguration)
+            throws SynapseException {
+        int requestsPerMinute = AIUtils.getIntegerParam(mc, AIConstants.REQUESTS_PER_MINUTE)
+                .orElse(AIConstants.REQUESTS_PER_MINUTE_DEFAULT);
+        int tokensPerMinute = AIUtils.getIntegerParam(mc, AIConstants.TOKENS_PER_MINUTE)
+                .orElse(AIConstants.TOKENS_PER_MINUTE_DEFAULT);
+        int rateLimitMaxWait = AIUtils.getIntegerParam(mc, AIConstants.RATE_LIMIT_MAX_WAIT)
+                .orElse(AIConstants.RATE_LIMIT_MAX_WAIT_DEFAULT);
+
+        if (requestsPerMinute < 0) {
+            throw new SynapseException("Invalid requestsPerMinute: " + requestsPerMinute +
+                    ". It must not be negative.");
+        }
+        if (tokensPerMinute < 0) {
+            throw new SynapseException("Invalid tokensPerMinute: " + tokensPerMinute + ". It must not be negative.");
+        }
+        if (rateLimitMaxWait < 0) {
+            throw new SynapseException("Invalid rateLimitMaxWait: " + rateLimitMaxWait +
+                    ". It must not be negative.");
+        }
+        connectionConfiguration.setRequestsPerMinute(requestsPerMinute);
+        connectionConfiguration.setTokensPerMinute(tokensPerMinute);
+        connectionConfiguration.setRateLimitMaxWait(rateLimitMaxWait);
+    }
+
+    private void setHttpClientConfig(MessageContext mc, AIConnectionConfiguration connectionConfiguration)
+            throws SynapseException {
+        int connectTimeout = AIUtils.getIntegerParam(mc, AIConstants.CONNECT_TIMEOUT)
+                .orElse(AIConstants.CONNECT_TIMEOUT_DEFAULT);
+        String httpVersion = AIUtils.getStringParam(mc, AIConstants.HTTP_VERSION)
+                .orElse(AIConstants.HTTP_VERSION_DEFAULT).trim().toUpperCase();
+        int maxConcurrentStreams = AIUtils.getIntegerParam(mc, AIConstants.MAX_CONCURRENT_STREAMS)
+                .orElse(AIConstants.MAX_CONCURRENT_STREAMS_DEFAULT);
+        int executorThreads = AIUtils.getIntegerParam(mc, AIConstants.EXECUTOR_THREADS)
+                .orElse(AIConstants.EXECUTOR_THREADS_DEFAULT);
+
+        if (connectTimeout <= 0) {
+            throw new SynapseException("Invalid connectTimeout: " + connectTimeout + ". It must be greater than 0.");
+        }
+        if (!"HTTP_2".equals(httpVersion) && !"HTTP_1_1".equals(httpVersion)) {
+            throw new SynapseException("Invalid httpVersion: " + httpVersion + ". Supported versions are: " +
+                    "HTTP_2, HTTP_1_1");
+        }
+        if (maxConcurrentStreams <= 0) {
+            throw new SynapseException("Invalid maxConcurrentStreams: " + maxConcurrentStreams +
+                    ". It must be greater than 0.");
+        }
+        if (executorThreads < 0) {
+            throw new SynapseException("Invalid executorThreads: " + executorThreads + ". It must not be negative.");
+        }
+        connectionConfiguration.setConnectTimeout(connectTimeout);
+        connectionConfiguration.setHttpVersion(httpVersion);
+        connectionConfiguration.setMaxConcurrentStreams(maxConcurrentStreams);
+        connectionConfiguration.setExecutorThreads(executorThreads);
+    }
+
+    private void setRenderConfig(MessageContext mc, AIConnectionConfiguration connectionConfiguration)
+            throws SynapseException {
+        int renderPoolSize = AIUtils.getIntegerParam(mc, AIConstants.RENDER_POOL_SIZE)
+                .orElse(AIConstants.RENDER_POOL_SIZE_DEFAULT);
+        int renderQueueDepth = AIUtils.getIntegerParam(mc, AIConstants.RENDER_QUEUE_DEPTH)
+                .orElse(AIConstants.RENDER_QUEUE_DEPTH_DEFAULT);
+        int renderParallelism = AIUtils.getIntegerParam(mc, AIConstants.RENDER_PARALLELISM)
+                .orElse(AIConstants.RENDER_PARALLELISM_DEFAULT);
+
+        if (renderPoolSize < 0) {
+            throw new SynapseException("Invalid renderPoolSize: " + renderPoolSize + ". It must not be negative.");
+        }
+        if (renderQueueDepth <= 0) {
+            throw new SynapseException("Invalid renderQueueDepth: " + renderQueueDepth +
+                    ". It must be greater than 0.");
+        }
+        if (renderParallelism <= 0) {
+            throw new SynapseException("Invalid renderParallelism: " + renderParallelism +
+                    ". It must be greater than 0.");
+        }
+        connectionConfiguration.setRenderPoolSize(renderPoolSize);
+        connectionConfiguration.setRenderQueueDepth(renderQueueDepth);
+        connectionConfiguration.setRenderParallelism(renderParallelism);
+    }
+
+    private void setResultCacheConfig(MessageContext mc, AIConnectionConfiguration connectionConfiguration)
+            throws SynapseException {
+        String resultCache = AIUtils.getStringParam(mc, AIConstants.RESULT_CACHE)
+                .orElse(AIConstants.RESULT_CACHE_NONE).trim().toUpperCase();
+        int maxEntries = AIUtils.getIntegerParam(mc, AIConstants.RESULT_CACHE_MAX_ENTRIES)
+                .orElse(AIConstants.RESULT_CACHE_MAX_ENTRIES_DEFAULT);
+        int ttl = AIUtils.getIntegerParam(mc, AIConstants.RESULT_CACHE_TTL)
+                .orElse(AIConstants.RESULT_CACHE_TTL_DEFAULT);
+
+        if (!AIConstants.RESULT_CACHE_NONE.equals(resultCache) && !AIConstants.RESULT_CACHE_MEMORY.equals(resultCache)
+                && !AIConstants.RESULT_CACHE_DISK.equals(resultCache)) {
+            throw new SynapseException("Invalid resultCache: " + resultCache + ". Supported values are: " +
+                    AIConstants.RESULT_CACHE_NONE + ", " + AIConstants.RESULT_CACHE_MEMORY + ", " +
+                    AIConstants.RESULT_CACHE_DISK);
+        }
+        if (maxEntries <= 0) {
+            throw new SynapseException("Invalid resultCacheMaxEntries: " + maxEntries + ". It must be greater than 0.");
+        }
+        if (ttl <= 0) {
+            throw new SynapseException("Invalid resultCacheTtl: " + ttl + ". It must be greater than 0.");
+        }
+        connectionConfiguration.setResultCache(resultCache);
+        connectionConfiguration.setResultCacheMaxEntries(maxEntries);
+        connectionConfiguration.setResultCacheTtl(ttl);
+        connectionConfiguration.setResultCacheDirectory(
+                AIUtils.getStringParam(mc, AIConstants.RESULT_CACHE_DIRECTORY).orElse(null));
+    }
+}
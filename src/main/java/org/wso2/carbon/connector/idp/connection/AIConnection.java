@@ -16,20 +16,92 @@
  */
 package org.wso2.carbon.connector.idp.connection;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.wso2.integration.connector.core.connection.Connection;
 import org.wso2.integration.connector.core.connection.ConnectionConfig;
+import org.wso2.carbon.connector.idp.cache.FileResultCache;
+import org.wso2.carbon.connector.idp.cache.InMemoryResultCache;
+import org.wso2.carbon.connector.idp.cache.ResultCache;
+import org.wso2.carbon.connector.idp.constants.AIConstants;
+import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+import org.wso2.carbon.connector.idp.metrics.ScanMetrics;
+import org.wso2.carbon.connector.idp.metrics.Stage;
 import org.wso2.carbon.connector.idp.model.AIEngineModel;
+import org.wso2.carbon.connector.idp.util.AIUtils;
+import org.wso2.carbon.connector.idp.util.ChatRequestWriter;
+import org.wso2.carbon.connector.idp.util.RateLimiter;
+import org.wso2.carbon.connector.idp.util.SingleFlight;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 public class AIConnection implements Connection {
     private AIConnectionConfiguration aiConnectionConfiguration;
     private AIEngineModel engine;
+    private HttpClient httpClient;
+    private Semaphore streamPermits;
+    private ExecutorService renderExecutor;
+    private ResultCache resultCache;
+    private ExecutorService asyncExecutor;
+    private ExecutorService batchExecutor;
+    private Semaphore outstandingCallPermits;
+    private EngineBalancer engineBalancer;
+    private ScanMetrics metrics;
+    private ScheduledExecutorService keepWarmExecutor;
+    private volatile long lastRequestNanos = System.nanoTime();
+    private boolean closed;
+    private final SingleFlight<JsonObject> inFlightScans = new SingleFlight<>();
+
+    private static final Log log = LogFactory.getLog(AIConnection.class);
 
     @Override
     public void connect(ConnectionConfig connectionConfiguration) {
     }
 
+    /**
+     * Drops the HTTP client and shuts down the worker pools and the keep-warm task of the connection. Once closed, the
+     * connection refuses new work instead of creating them again, so that a scan still running on a replaced
+     * connection cannot leak threads.
+     */
     @Override
     public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        closeHttpClient();
+        closeRenderExecutor();
+        closeAsyncExecutor();
+        closeBatchExecutor();
+        closeKeepWarm();
+        synchronized (this) {
+            if (metrics != null) {
+                // kept, unregistered, for the scans still running on this connection
+                metrics.unregister();
+            }
+        }
     }
 
     public AIConnection(AIConnectionConfiguration aiConnectionConfiguration) {
@@ -41,9 +113,39 @@ public class AIConnection implements Connection {
     }
 
     public void setAiConnectionConfiguration(AIConnectionConfiguration aiConnectionConfiguration) {
+        if (!aiConnectionConfiguration.hasSameHttpSettings(this.aiConnectionConfiguration)) {
+            closeHttpClient();
+        }
+        if (!aiConnectionConfiguration.hasSameRenderPoolSettings(this.aiConnectionConfiguration)) {
+            closeRenderExecutor();
+        }
+        if (!Objects.equals(aiConnectionConfiguration.getMaxOutstandingCalls(),
+                this.aiConnectionConfiguration.getMaxOutstandingCalls())) {
+            closeAsyncExecutor();
+        }
+        if (!aiConnectionConfiguration.hasSameEngineSettings(this.aiConnectionConfiguration)) {
+            synchronized (this) {
+                engineBalancer = null;
+            }
+        }
+        if (!aiConnectionConfiguration.hasSameResultCacheSettings(this.aiConnectionConfiguration)) {
+            synchronized (this) {
+                resultCache = null;
+            }
+        }
+        boolean keepWarmChanged = !aiConnectionConfiguration.hasSameKeepWarmSettings(this.aiConnectionConfiguration);
+        if (keepWarmChanged) {
+            closeKeepWarm();
+        }
         this.aiConnectionConfiguration = aiConnectionConfiguration;
+        if (keepWarmChanged) {
+            scheduleKeepWarm();
+        }
     }
 
+    /**
+     * @return The primary engine of the connection, whose model identifies the results of the connection.
+     */
     public AIEngineModel getEngine() {
         if (engine == null) {
             this.engine = createNewAIEngineInstance(this.aiConnectionConfiguration);
@@ -55,6 +157,430 @@ public class AIConnection implements Connection {
         this.engine = createNewAIEngineInstance(connectionConfiguration);
     }
 
+    /**
+     * Returns the HTTP client of this connection. The client is created on first use and reused by every request
+     * made through this connection, so that TCP/TLS connections and HTTP/2 streams are shared between documents.
+     *
+     * @return Shared HTTP client.
+     */
+    public synchronized HttpClient getHttpClient() {
+        checkOpen();
+        if (httpClient == null) {
+            AIConnectionConfiguration configuration = this.aiConnectionConfiguration;
+            HttpClient.Builder builder = HttpClient.newBuilder()
+                    .version(HttpClient.Version.valueOf(configuration.getHttpVersion()))
+                    .connectTimeout(Duration.ofMillis(configuration.getConnectTimeout()));
+            if (configuration.getExecutorThreads() > 0) {
+                // idle threads time out, so the pool of a dropped client goes away with the client, see
+                // closeHttpClient()
+                ThreadPoolExecutor httpExecutor = new ThreadPoolExecutor(configuration.getExecutorThreads(),
+                        configuration.getExecutorThreads(), 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                        AIUtils.createThreadFactory("idp-http-" + configuration.getConnectionName()));
+                httpExecutor.allowCoreThreadTimeOut(true);
+                builder.executor(httpExecutor);
+            }
+            streamPermits = new Semaphore(configuration.getMaxConcurrentStreams());
+            httpClient = builder.build();
+        }
+        return httpClient;
+    }
+
+    /**
+     * Sends a request with the shared HTTP client, keeping the number of in-flight requests of this connection
+     * within the configured maximum concurrent streams and the requests and tokens per minute of each engine within
+     * its rate limit.
+     * <p>
+     * The request goes to the engine chosen by the engine balancer. If the engine cannot be reached, answers with a
+     * server error, or is rate limited for longer than the maximum rate limit wait, the request moves on to the next
+     * engine, until every engine was tried. A request rejected with 429 by the only engine left is sent again once
+     * the rate limiter allows it, if that is within the maximum rate limit wait.
+     *
+     * @param requestFactory Builds the request for an engine. It is called for every engine tried, and the body of
+     *                       the request must be replayable.
+     * @param bodyHandler    Handler for the response body.
+     * @param tokenCost      Estimated number of tokens the request uses, prompt and completion.
+     * @return The HTTP response of the last engine tried.
+     * @throws AIConnectorException if the rate limit does not allow the request within the maximum wait.
+     * @throws IOException if an I/O error occurs while sending or receiving.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public <T> HttpResponse<T> send(Function<AIEngineModel, HttpRequest> requestFactory,
+                                    HttpResponse.BodyHandler<T> bodyHandler, long tokenCost)
+            throws AIConnectorException, IOException, InterruptedException {
+        HttpClient client;
+        Semaphore permits;
+        EngineBalancer balancer;
+        ScanMetrics scanMetrics;
+        synchronized (this) {
+            client = getHttpClient();
+            permits = streamPermits;
+            balancer = getEngineBalancer();
+            scanMetrics = getMetrics();
+        }
+        List<EngineBalancer.Endpoint> tried = new ArrayList<>();
+        HttpResponse<T> response = null;
+        Exception failure = null;
+        EngineBalancer.Endpoint endpoint;
+        while ((endpoint = balancer.select(tried)) != null) {
+            tried.add(endpoint);
+            boolean lastEngine = balancer.select(tried) == null;
+            closeBody(response);
+            response = null;
+            try {
+                response = send(client, permits, balancer, scanMetrics, endpoint,
+                        requestFactory.apply(endpoint.getEngine()), bodyHandler, tokenCost, lastEngine);
+                failure = null;
+            } catch (AIConnectorException | IOException e) {
+                failure = e;
+                if (!lastEngine) {
+                    log.warn("Request to the AI engine " + endpoint + " failed: " + e.getMessage() +
+                            ". Trying the next engine.");
+                }
+                continue;
+            }
+            if (response.statusCode() < 500 && response.statusCode() != 429) {
+                return response;
+            }
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure != null) {
+            throw (AIConnectorException) failure;
+        }
+        return response;
+    }
+
+    private <T> HttpResponse<T> send(HttpClient client, Semaphore permits, EngineBalancer balancer,
+                                     ScanMetrics scanMetrics, EngineBalancer.Endpoint endpoint, HttpRequest request,
+                                     HttpResponse.BodyHandler<T> bodyHandler, long tokenCost, boolean waitOn429)
+            throws AIConnectorException, IOException, InterruptedException {
+        RateLimiter limiter = endpoint.getRateLimiter();
+        long remainingWait = aiConnectionConfiguration.getRateLimitMaxWait();
+        while (true) {
+            remainingWait -= limiter.acquire(tokenCost, remainingWait);
+            HttpResponse<T> response;
+            permits.acquire();
+            endpoint.begin();
+            long startNanos = System.nanoTime();
+            lastRequestNanos = startNanos;
+            try {
+                response = client.send(request, bodyHandler);
+            } catch (IOException e) {
+                recordFailure(balancer, endpoint);
+                scanMetrics.recordResponse(0);
+                throw e;
+            } finally {
+                endpoint.end();
+                permits.release();
+                scanMetrics.recordStage(Stage.REQUEST, System.nanoTime() - startNanos);
+            }
+            scanMetrics.recordResponse(response.statusCode());
+            limiter.update(response.statusCode(), response.headers());
+            if (response.statusCode() >= 500) {
+                recordFailure(balancer, endpoint);
+            } else if (response.statusCode() != 429) {
+                balancer.recordSuccess(endpoint, System.nanoTime() - startNanos);
+            }
+            if (response.statusCode() != 429 || !waitOn429 || limiter.getBlockedMillis() > remainingWait) {
+                return response;
+            }
+            closeBody(response);
+        }
+    }
+
+    private void recordFailure(EngineBalancer balancer, EngineBalancer.Endpoint endpoint) {
+        if (balancer.recordFailure(endpoint) && balancer.getEndpoints().size() > 1) {
+            log.warn("AI engine " + endpoint + " of connection " + aiConnectionConfiguration.getConnectionName() +
+                    " failed " + aiConnectionConfiguration.getEjectAfterFailures() + " requests in a row. It is " +
+                    "left out for " + aiConnectionConfiguration.getEjectionTime() + " ms.");
+        }
+    }
+
+    private static void closeBody(HttpResponse<?> response) throws IOException {
+        if (response != null && response.body() instanceof Closeable) {
+            ((Closeable) response.body()).close();
+        }
+    }
+
+    /**
+     * Returns the scan metrics of this connection, registering them with JMX on first use. The metrics of a closed
+     * connection are never registered, so that they cannot take the JMX name over from the connection that
+     * replaced it.
+     *
+     * @return Scan metrics.
+     */
+    public synchronized ScanMetrics getMetrics() {
+        if (metrics == null) {
+            metrics = new ScanMetrics(aiConnectionConfiguration.getConnectionName());
+            if (!closed) {
+                metrics.register();
+            }
+        }
+        return metrics;
+    }
+
+    private synchronized EngineBalancer getEngineBalancer() {
+        if (engineBalancer == null) {
+            AIConnectionConfiguration configuration = this.aiConnectionConfiguration;
+            engineBalancer = new EngineBalancer(configuration.getEngines(), configuration.getRequestsPerMinute(),
+                    configuration.getTokensPerMinute(), configuration.getEjectAfterFailures(),
+                    configuration.getEjectionTime());
+        }
+        return engineBalancer;
+    }
+
+    /**
+     * Returns the worker pool used to render PDF pages in parallel. The pool is shared by all documents processed
+     * through this connection and is bounded both in threads and in queued tasks. When the queue is full, the
+     * submitting mediation thread renders the task itself, which throttles new work instead of failing it.
+     *
+     * @return Shared page rendering executor.
+     */
+    public synchronized ExecutorService getRenderExecutor() {
+        checkOpen();
+        if (renderExecutor == null) {
+            AIConnectionConfiguration configuration = this.aiConnectionConfiguration;
+            int poolSize = configuration.getRenderPoolSize() > 0
+                    ? configuration.getRenderPoolSize() : Runtime.getRuntime().availableProcessors();
+            renderExecutor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(configuration.getRenderQueueDepth()),
+                    AIUtils.createThreadFactory("idp-render-" + configuration.getConnectionName()),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            ((ThreadPoolExecutor) renderExecutor).allowCoreThreadTimeOut(true);
+        }
+        return renderExecutor;
+    }
+
+    /**
+     * @return The document scans in flight on this connection, used to coalesce identical concurrent scans.
+     */
+    public SingleFlight<JsonObject> getInFlightScans() {
+        return inFlightScans;
+    }
+
+    /**
+     * Returns the extraction result cache of this connection.
+     *
+     * @return Result cache, or null if result caching is disabled.
+     * @throws AIConnectorException if the on-disk cache directory cannot be created.
+     */
+    public synchronized ResultCache getResultCache() throws AIConnectorException {
+        AIConnectionConfiguration configuration = this.aiConnectionConfiguration;
+        if (resultCache == null && !AIConstants.RESULT_CACHE_NONE.equals(configuration.getResultCache())) {
+            long ttlMillis = configuration.getResultCacheTtl() * 1000L;
+            if (AIConstants.RESULT_CACHE_DISK.equals(configuration.getResultCache())) {
+                Path directory = configuration.getResultCacheDirectory() != null
+                        ? Paths.get(configuration.getResultCacheDirectory())
+                        : Paths.get(System.getProperty("java.io.tmpdir"), AIConstants.RESULT_CACHE_DIRECTORY_NAME,
+                        configuration.getConnectionName());
+                try {
+                    resultCache = new FileResultCache(directory, configuration.getResultCacheMaxEntries(), ttlMillis);
+                } catch (IOException e) {
+                    throw new AIConnectorException("Could not create the result cache directory " + directory, e);
+                }
+            } else {
+                resultCache = new InMemoryResultCache(configuration.getResultCacheMaxEntries(), ttlMillis);
+            }
+        }
+        return resultCache;
+    }
+
+    /**
+     * Runs a non-blocking document scan on the worker pool of this connection. At most maxOutstandingCalls scans
+     * are in flight at a time. When the limit is reached, the scan is rejected right away instead of making the
+     * calling mediation thread wait for a free slot, which would tie up the very threads the Non-Blocking mode
+     * frees. The flow handles the rejection in its fault sequence, for example by answering with 503 or by
+     * retrying later, so that documents are never queued in memory without bound.
+     *
+     * @param task Scan to run.
+     * @throws AIConnectorException if maxOutstandingCalls scans are already in flight.
+     */
+    public void executeAsync(Runnable task) throws AIConnectorException {
+        ExecutorService executor;
+        Semaphore permits;
+        synchronized (this) {
+            checkOpen();
+            if (asyncExecutor == null) {
+                int maxOutstandingCalls = aiConnectionConfiguration.getMaxOutstandingCalls();
+                asyncExecutor = new ThreadPoolExecutor(maxOutstandingCalls, maxOutstandingCalls, 60L,
+                        TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                        AIUtils.createThreadFactory("idp-async-" + aiConnectionConfiguration.getConnectionName()));
+                ((ThreadPoolExecutor) asyncExecutor).allowCoreThreadTimeOut(true);
+                outstandingCallPermits = new Semaphore(maxOutstandingCalls);
+            }
+            executor = asyncExecutor;
+            permits = outstandingCallPermits;
+        }
+        if (!permits.tryAcquire()) {
+            throw new AIConnectorException("Connection " + aiConnectionConfiguration.getConnectionName() +
+                    " already has " + aiConnectionConfiguration.getMaxOutstandingCalls() + " Non-Blocking scans " +
+                    "in flight, the maxOutstandingCalls of the connection.");
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the executor that runs the items of document batches and the page chunks of documents. Each batch or
+     * document bounds its own concurrency, so the pool itself grows with the number of them in flight.
+     *
+     * @return Batch executor.
+     */
+    public synchronized ExecutorService getBatchExecutor() {
+        checkOpen();
+        if (batchExecutor == null) {
+            batchExecutor = Executors.newCachedThreadPool(AIUtils.createThreadFactory(
+                    "idp-batch-" + aiConnectionConfiguration.getConnectionName()));
+        }
+        return batchExecutor;
+    }
+
+    /**
+     * Schedules the keep-warm task of the connection if a keep-warm interval is set and any of its engines uses the
+     * native chat API of Ollama. The task loads the model of those engines right away and then, whenever no request
+     * was sent through the connection for the interval, asks Ollama to keep it loaded, so that requests after an
+     * idle period do not wait for the model to load.
+     * <p>
+     * It is not started by the constructor, so that the keep-warm thread never sees a partly constructed connection.
+     * Init starts it once the connection is created, and it is started again whenever the keep-warm settings change.
+     */
+    public synchronized void scheduleKeepWarm() {
+        AIConnectionConfiguration configuration = this.aiConnectionConfiguration;
+        int interval = configuration.getKeepWarmInterval();
+        if (closed || interval <= 0 || keepWarmExecutor != null) {
+            return;
+        }
+        List<AIEngineModel> engines = new ArrayList<>();
+        for (AIEngineModel engine : configuration.getEngines()) {
+            if (engine.isOllamaChat()) {
+                engines.add(engine);
+            }
+        }
+        if (engines.isEmpty()) {
+            log.warn("keepWarmInterval of connection " + configuration.getConnectionName() + " is ignored, since " +
+                    "none of its engines uses the native chat API of Ollama, " + AIConstants.OLLAMA_CHAT_PATH + ".");
+            return;
+        }
+        keepWarmExecutor = Executors.newSingleThreadScheduledExecutor(
+                AIUtils.createThreadFactory("idp-keep-warm-" + configuration.getConnectionName()));
+        long intervalNanos = TimeUnit.SECONDS.toNanos(interval);
+        lastRequestNanos = System.nanoTime() - intervalNanos;
+        keepWarmExecutor.scheduleWithFixedDelay(() -> {
+            // an exception escaping the task would cancel every later run, so none is let out
+            try {
+                if (System.nanoTime() - lastRequestNanos >= intervalNanos) {
+                    for (AIEngineModel engine : engines) {
+                        keepWarm(engine, configuration.getKeepAlive());
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to keep the models of connection " + configuration.getConnectionName() +
+                        " loaded: " + e.getMessage(), e);
+            }
+        }, 0, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sends a chat request without messages to an Ollama engine, which loads the model, or keeps it loaded, for the
+     * keep alive time without generating anything.
+     */
+    private void keepWarm(AIEngineModel engine, String keepAlive) {
+        JsonObject body = new JsonObject();
+        body.addProperty("model", engine.getModel());
+        body.add("messages", new JsonArray());
+        if (keepAlive != null) {
+            body.add("keep_alive", ChatRequestWriter.getKeepAliveValue(keepAlive));
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(engine.getEndpointUrl()))
+                .timeout(Duration.ofMillis(AIConstants.KEEP_WARM_TIMEOUT))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + engine.getApiKey())
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        try {
+            HttpResponse<Void> response = getHttpClient().send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 200) {
+                log.warn("Failed to keep the model " + engine.getModel() + " of the AI engine " +
+                        engine.getEndpointUrl() + " loaded. Status code: " + response.statusCode());
+            } else if (log.isDebugEnabled()) {
+                log.debug("Kept the model " + engine.getModel() + " of the AI engine " + engine.getEndpointUrl() +
+                        " loaded.");
+            }
+        } catch (IOException e) {
+            log.warn("Failed to keep the model " + engine.getModel() + " of the AI engine " +
+                    engine.getEndpointUrl() + " loaded: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Fails fast when the connection is closed. Called with the lock of the connection held, like close() sets the
+     * flag, so that no resource is created after the connection was closed.
+     *
+     * @throws IllegalStateException if the connection is closed.
+     */
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Connection " + aiConnectionConfiguration.getConnectionName() +
+                    " is closed.");
+        }
+    }
+
+    private synchronized void closeKeepWarm() {
+        if (keepWarmExecutor != null) {
+            keepWarmExecutor.shutdownNow();
+            keepWarmExecutor = null;
+        }
+    }
+
+    private synchronized void closeBatchExecutor() {
+        if (batchExecutor != null) {
+            batchExecutor.shutdown();
+            batchExecutor = null;
+        }
+    }
+
+    private synchronized void closeAsyncExecutor() {
+        if (asyncExecutor != null) {
+            // the scans already submitted still complete and resume their flows
+            asyncExecutor.shutdown();
+            asyncExecutor = null;
+            outstandingCallPermits = null;
+        }
+    }
+
+    private synchronized void closeRenderExecutor() {
+        if (renderExecutor != null) {
+            renderExecutor.shutdown();
+            renderExecutor = null;
+        }
+    }
+
+    /**
+     * Drops the HTTP client, so that the next request creates one with the current settings. HttpClient has no
+     * close() on the Java versions supported, and the requests in flight on the old client keep handing their work
+     * to its executor until they complete, so the executor is not shut down here: that would fail them with
+     * RejectedExecutionException. Once the old client is idle, the threads of its executor time out, and the
+     * client and its executor are garbage collected.
+     */
+    private synchronized void closeHttpClient() {
+        httpClient = null;
+        streamPermits = null;
+    }
+
     private AIEngineModel createNewAIEngineInstance(AIConnectionConfiguration connectionConfiguration) {
         return new AIEngineModel(
             connectionConfiguration.getApiKey(),
@@ -63,4 +589,3 @@ public class AIConnection implements Connection {
         );
     }
 }
-
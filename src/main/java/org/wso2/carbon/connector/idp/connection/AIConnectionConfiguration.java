@@ -16,11 +16,45 @@
  */
 package org.wso2.carbon.connector.idp.connection;
 
+import org.wso2.carbon.connector.idp.constants.AIConstants;
+import org.wso2.carbon.connector.idp.model.AIEngineModel;
+import org.wso2.carbon.connector.idp.util.RetryPolicy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
 public class AIConnectionConfiguration {
     private String connectionName;
     private String apiKey;
     private String model;
     private String endpointUrl;
+    private Integer connectTimeout = AIConstants.CONNECT_TIMEOUT_DEFAULT;
+    private String httpVersion = AIConstants.HTTP_VERSION_DEFAULT;
+    private Integer maxConcurrentStreams = AIConstants.MAX_CONCURRENT_STREAMS_DEFAULT;
+    private Integer executorThreads = AIConstants.EXECUTOR_THREADS_DEFAULT;
+    private Integer renderPoolSize = AIConstants.RENDER_POOL_SIZE_DEFAULT;
+    private Integer renderQueueDepth = AIConstants.RENDER_QUEUE_DEPTH_DEFAULT;
+    private Integer renderParallelism = AIConstants.RENDER_PARALLELISM_DEFAULT;
+    private String resultCache = AIConstants.RESULT_CACHE_NONE;
+    private Integer resultCacheMaxEntries = AIConstants.RESULT_CACHE_MAX_ENTRIES_DEFAULT;
+    private Integer resultCacheTtl = AIConstants.RESULT_CACHE_TTL_DEFAULT;
+    private String resultCacheDirectory;
+    private Boolean coalesceRequests = AIConstants.COALESCE_REQUESTS_DEFAULT;
+    private Integer maxOutstandingCalls = AIConstants.MAX_OUTSTANDING_CALLS_DEFAULT;
+    private Integer requestsPerMinute = AIConstants.REQUESTS_PER_MINUTE_DEFAULT;
+    private Integer tokensPerMinute = AIConstants.TOKENS_PER_MINUTE_DEFAULT;
+    private Integer rateLimitMaxWait = AIConstants.RATE_LIMIT_MAX_WAIT_DEFAULT;
+    private RetryPolicy retryPolicy;
+    private Integer engineWeight = AIConstants.ENGINE_WEIGHT_DEFAULT;
+    private List<AIEngineModel> additionalEngines = Collections.emptyList();
+    private Integer ejectAfterFailures = AIConstants.EJECT_AFTER_FAILURES_DEFAULT;
+    private Integer ejectionTime = AIConstants.EJECTION_TIME_DEFAULT;
+    private String keepAlive;
+    private Integer contextLength = AIConstants.CONTEXT_LENGTH_DEFAULT;
+    private Integer keepWarmInterval = AIConstants.KEEP_WARM_INTERVAL_DEFAULT;
+    private String documentBaseDirectory;
 
     public String getConnectionName() {
         return connectionName;
@@ -53,5 +87,355 @@ public class AIConnectionConfiguration {
     public void setEndpointUrl(String endpointUrl) {
         this.endpointUrl = endpointUrl;
     }
-}
 
+    public Integer getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Integer connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public String getHttpVersion() {
+        return httpVersion;
+    }
+
+    public void setHttpVersion(String httpVersion) {
+        this.httpVersion = httpVersion;
+    }
+
+    public Integer getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    public void setMaxConcurrentStreams(Integer maxConcurrentStreams) {
+        this.maxConcurrentStreams = maxConcurrentStreams;
+    }
+
+    public Integer getExecutorThreads() {
+        return executorThreads;
+    }
+
+    public void setExecutorThreads(Integer executorThreads) {
+        this.executorThreads = executorThreads;
+    }
+
+    public Integer getRenderPoolSize() {
+        return renderPoolSize;
+    }
+
+    public void setRenderPoolSize(Integer renderPoolSize) {
+        this.renderPoolSize = renderPoolSize;
+    }
+
+    public Integer getRenderQueueDepth() {
+        return renderQueueDepth;
+    }
+
+    public void setRenderQueueDepth(Integer renderQueueDepth) {
+        this.renderQueueDepth = renderQueueDepth;
+    }
+
+    public Integer getRenderParallelism() {
+        return renderParallelism;
+    }
+
+    public void setRenderParallelism(Integer renderParallelism) {
+        this.renderParallelism = renderParallelism;
+    }
+
+    public String getResultCache() {
+        return resultCache;
+    }
+
+    public void setResultCache(String resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public Integer getResultCacheMaxEntries() {
+        return resultCacheMaxEntries;
+    }
+
+    public void setResultCacheMaxEntries(Integer resultCacheMaxEntries) {
+        this.resultCacheMaxEntries = resultCacheMaxEntries;
+    }
+
+    /**
+     * @return Time to live of cached results in seconds.
+     */
+    public Integer getResultCacheTtl() {
+        return resultCacheTtl;
+    }
+
+    public void setResultCacheTtl(Integer resultCacheTtl) {
+        this.resultCacheTtl = resultCacheTtl;
+    }
+
+    public String getResultCacheDirectory() {
+        return resultCacheDirectory;
+    }
+
+    public void setResultCacheDirectory(String resultCacheDirectory) {
+        this.resultCacheDirectory = resultCacheDirectory;
+    }
+
+    public Boolean getCoalesceRequests() {
+        return coalesceRequests;
+    }
+
+    public void setCoalesceRequests(Boolean coalesceRequests) {
+        this.coalesceRequests = coalesceRequests;
+    }
+
+    public Integer getMaxOutstandingCalls() {
+        return maxOutstandingCalls;
+    }
+
+    public void setMaxOutstandingCalls(Integer maxOutstandingCalls) {
+        this.maxOutstandingCalls = maxOutstandingCalls;
+    }
+
+    public Integer getRequestsPerMinute() {
+        return requestsPerMinute;
+    }
+
+    public void setRequestsPerMinute(Integer requestsPerMinute) {
+        this.requestsPerMinute = requestsPerMinute;
+    }
+
+    public Integer getTokensPerMinute() {
+        return tokensPerMinute;
+    }
+
+    public void setTokensPerMinute(Integer tokensPerMinute) {
+        this.tokensPerMinute = tokensPerMinute;
+    }
+
+    public Integer getRateLimitMaxWait() {
+        return rateLimitMaxWait;
+    }
+
+    public void setRateLimitMaxWait(Integer rateLimitMaxWait) {
+        this.rateLimitMaxWait = rateLimitMaxWait;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public Integer getEngineWeight() {
+        return engineWeight;
+    }
+
+    public void setEngineWeight(Integer engineWeight) {
+        this.engineWeight = engineWeight;
+    }
+
+    public List<AIEngineModel> getAdditionalEngines() {
+        return additionalEngines;
+    }
+
+    public void setAdditionalEngines(List<AIEngineModel> additionalEngines) {
+        this.additionalEngines = additionalEngines;
+    }
+
+    public Integer getEjectAfterFailures() {
+        return ejectAfterFailures;
+    }
+
+    public void setEjectAfterFailures(Integer ejectAfterFailures) {
+        this.ejectAfterFailures = ejectAfterFailures;
+    }
+
+    public Integer getEjectionTime() {
+        return ejectionTime;
+    }
+
+    public void setEjectionTime(Integer ejectionTime) {
+        this.ejectionTime = ejectionTime;
+    }
+
+    /**
+     * @return How long Ollama keeps the model loaded after a request, as a duration such as 10m or a number of
+     * seconds, or null for the default of the server.
+     */
+    public String getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(String keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * @return Context window size in tokens that Ollama loads the model with, or 0 for the default of the model.
+     */
+    public Integer getContextLength() {
+        return contextLength;
+    }
+
+    public void setContextLength(Integer contextLength) {
+        this.contextLength = contextLength;
+    }
+
+    /**
+     * @return Interval in seconds at which an idle connection asks Ollama to keep the model loaded, or 0 to not.
+     */
+    public Integer getKeepWarmInterval() {
+        return keepWarmInterval;
+    }
+
+    public void setKeepWarmInterval(Integer keepWarmInterval) {
+        this.keepWarmInterval = keepWarmInterval;
+    }
+
+    /**
+     * @return Directory that documents given by path must be in, or null if documents cannot be given by path.
+     */
+    public String getDocumentBaseDirectory() {
+        return documentBaseDirectory;
+    }
+
+    public void setDocumentBaseDirectory(String documentBaseDirectory) {
+        this.documentBaseDirectory = documentBaseDirectory;
+    }
+
+    /**
+     * @return The engines requests are balanced across: the primary engine of the connection, then the additional
+     * engines.
+     */
+    public List<AIEngineModel> getEngines() {
+        List<AIEngineModel> engines = new ArrayList<>();
+        engines.add(new AIEngineModel(apiKey, model, endpointUrl, engineWeight));
+        engines.addAll(additionalEngines);
+        return engines;
+    }
+
+    /**
+     * Checks whether the engines and their balancing settings of the given configuration match this one, in which
+     * case the engine balancer of this configuration, with the latencies, health and rate limits it learned, can be
+     * kept.
+     *
+     * @param other Configuration to compare with.
+     * @return true if the engine settings are the same.
+     */
+    public boolean hasSameEngineSettings(AIConnectionConfiguration other) {
+        return other != null
+                && Objects.equals(getEngines(), other.getEngines())
+                && Objects.equals(ejectAfterFailures, other.ejectAfterFailures)
+                && Objects.equals(ejectionTime, other.ejectionTime)
+                && hasSameRateLimitSettings(other);
+    }
+
+    /**
+     * Checks whether the HTTP transport settings of the given configuration match this one, in which case the
+     * HTTP client built for this configuration can be kept.
+     *
+     * @param other Configuration to compare with.
+     * @return true if the HTTP client settings are the same.
+     */
+    public boolean hasSameHttpSettings(AIConnectionConfiguration other) {
+        return other != null
+                && Objects.equals(connectTimeout, other.connectTimeout)
+                && Objects.equals(httpVersion, other.httpVersion)
+                && Objects.equals(maxConcurrentStreams, other.maxConcurrentStreams)
+                && Objects.equals(executorThreads, other.executorThreads);
+    }
+
+    /**
+     * Checks whether the page rendering pool settings of the given configuration match this one, in which case the
+     * rendering pool built for this configuration can be kept.
+     *
+     * @param other Configuration to compare with.
+     * @return true if the rendering pool settings are the same.
+     */
+    public boolean hasSameRenderPoolSettings(AIConnectionConfiguration other) {
+        return other != null
+                && Objects.equals(renderPoolSize, other.renderPoolSize)
+                && Objects.equals(renderQueueDepth, other.renderQueueDepth);
+    }
+
+    /**
+     * Checks whether the result cache settings of the given configuration match this one, in which case the
+     * result cache built for this configuration can be kept.
+     *
+     * @param other Configuration to compare with.
+     * @return true if the result cache settings are the same.
+     */
+    public boolean hasSameResultCacheSettings(AIConnectionConfiguration other) {
+        return other != null
+                && Objects.equals(resultCache, other.resultCache)
+                && Objects.equals(resultCacheMaxEntries, other.resultCacheMaxEntries)
+                && Objects.equals(resultCacheTtl, other.resultCacheTtl)
+                && Objects.equals(resultCacheDirectory, other.resultCacheDirectory);
+    }
+
+    /**
+     * Checks whether the rate limit budgets of the given configuration match this one, in which case the rate
+     * limiter of this configuration, together with what it learned from the provider, can be kept.
+     *
+     * @param other Configuration to compare with.
+     * @return true if the rate limit budgets are the same.
+     */
+    public boolean hasSameRateLimitSettings(AIConnectionConfiguration other) {
+        return other != null
+                && Objects.equals(requestsPerMinute, other.requestsPerMinute)
+                && Objects.equals(tokensPerMinute, other.tokensPerMinute);
+    }
+
+    /**
+     * Checks whether the model residency settings of the given configuration match this one, in which case the
+     * keep-warm task scheduled for this configuration can be kept.
+     *
+     * @param other Configuration to compare with.
+     * @return true if the keep-warm settings are the same.
+     */
+    public boolean hasSameKeepWarmSettings(AIConnectionConfiguration other) {
+        return other != null
+                && Objects.equals(getEngines(), other.getEngines())
+                && Objects.equals(keepAlive, other.keepAlive)
+                && Objects.equals(contextLength, other.contextLength)
+                && Objects.equals(keepWarmInterval, other.keepWarmInterval);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        AIConnectionConfiguration that = (AIConnectionConfiguration) o;
+        return Objects.equals(connectionName, that.connectionName)
+                && Objects.equals(apiKey, that.apiKey)
+                && Objects.equals(model, that.model)
+                && Objects.equals(endpointUrl, that.endpointUrl)
+                && hasSameHttpSettings(that)
+                && hasSameRenderPoolSettings(that)
+                && hasSameResultCacheSettings(that)
+                && Objects.equals(coalesceRequests, that.coalesceRequests)
+                && Objects.equals(maxOutstandingCalls, that.maxOutstandingCalls)
+                && hasSameRateLimitSettings(that)
+                && Objects.equals(rateLimitMaxWait, that.rateLimitMaxWait)
+                && Objects.equals(retryPolicy, that.retryPolicy)
+                && hasSameEngineSettings(that)
+                && hasSameKeepWarmSettings(that)
+                && Objects.equals(renderParallelism, that.renderParallelism)
+                && Objects.equals(documentBaseDirectory, that.documentBaseDirectory);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(connectionName, apiKey, model, endpointUrl, connectTimeout, httpVersion,
+                maxConcurrentStreams, executorThreads, renderPoolSize, renderQueueDepth, renderParallelism,
+                resultCache, resultCacheMaxEntries, resultCacheTtl, resultCacheDirectory, coalesceRequests,
+                maxOutstandingCalls, requestsPerMinute, tokensPerMinute, rateLimitMaxWait, retryPolicy,
+                engineWeight, additionalEngines, ejectAfterFailures, ejectionTime, keepAlive, contextLength,
+                keepWarmInterval, documentBaseDirectory);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.connection;
+
+import org.wso2.carbon.connector.idp.model.AIEngineModel;
+import org.wso2.carbon.connector.idp.util.RateLimiter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes the requests of a connection across its engines.
+ * <p>
+ * Each request goes to the healthy engine with the lowest expected wait: its moving average latency, times the
+ * requests already in flight on it plus one, divided by its weight. Slow or busy engines receive fewer requests
+ * without any configuration. An engine that fails several requests in a row is left out for the ejection time, after
+ * which it gets requests again; one more failure ejects it again.
+ */
+public class EngineBalancer {
+
+    // weight of a new latency sample in the moving average
+    private static final double LATENCY_DECAY = 0.3;
+    // latency assumed for an engine with requests in flight but no response yet, so that a new engine is not flooded
+    private static final double UNKNOWN_LATENCY_MILLIS = 10000;
+
+    private final List<Endpoint> endpoints;
+    private final int ejectAfterFailures;
+    private final long ejectionNanos;
+
+    /**
+     * An engine with its routing state and its own rate limiter, since every backend enforces its own limits.
+     */
+    public static class Endpoint {
+        private final AIEngineModel engine;
+        private final RateLimiter rateLimiter;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private double latencyMillis;
+        private int consecutiveFailures;
+        private boolean ejected;
+        private long ejectedUntilNanos;
+
+        private Endpoint(AIEngineModel engine, RateLimiter rateLimiter) {
+            this.engine = engine;
+            this.rateLimiter = rateLimiter;
+        }
+
+        public AIEngineModel getEngine() {
+            return engine;
+        }
+
+        public RateLimiter getRateLimiter() {
+            return rateLimiter;
+        }
+
+        /**
+         * Marks the start of a request sent to the engine.
+         */
+        public void begin() {
+            outstanding.incrementAndGet();
+        }
+
+        /**
+         * Marks the end of a request sent to the engine.
+         */
+        public void end() {
+            outstanding.decrementAndGet();
+        }
+
+        private synchronized double getCost() {
+            int inFlight = outstanding.get();
+            double latency = latencyMillis > 0 ? latencyMillis : inFlight > 0 ? UNKNOWN_LATENCY_MILLIS : 0;
+            return latency * (inFlight + 1) / engine.getWeight();
+        }
+
+        private synchronized boolean isEjected(long now) {
+            return ejected && ejectedUntilNanos - now > 0;
+        }
+
+        private synchronized long getEjectedUntilNanos() {
+            return ejectedUntilNanos;
+        }
+
+        @Override
+        public String toString() {
+            return engine.getEndpointUrl() + " (" + engine.getModel() + ")";
+        }
+    }
+
+    /**
+     * @param engines            Engines of the connection, the primary engine first.
+     * @param requestsPerMinute  Request budget of each engine, or 0 to only follow the limits it reports.
+     * @param tokensPerMinute    Token budget of each engine, or 0 to only follow the limits it reports.
+     * @param ejectAfterFailures Consecutive failures after which an engine is ejected.
+     * @param ejectionMillis     Time an ejected engine is left out.
+     */
+    public EngineBalancer(List<AIEngineModel> engines, int requestsPerMinute, int tokensPerMinute,
+                          int ejectAfterFailures, long ejectionMillis) {
+        List<Endpoint> endpointList = new ArrayList<>();
+        for (AIEngineModel engine : engines) {
+            endpointList.add(new Endpoint(engine, new RateLimiter(requestsPerMinute, tokensPerMinute)));
+        }
+        this.endpoints = Collections.unmodifiableList(endpointList);
+        this.ejectAfterFailures = ejectAfterFailures;
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionMillis);
+    }
+
+    /**
+     * Selects the engine for the next attempt of a request.
+     *
+     * @param tried Engines the request was already sent to.
+     * @return Engine to send the request to, or null if no healthy engine is left to try. For the first attempt an
+     * engine is always returned: if all engines are ejected, the one that comes back first.
+     */
+    public Endpoint select(List<Endpoint> tried) {
+        long now = System.nanoTime();
+        Endpoint selected = null;
+        double selectedCost = 0;
+        for (Endpoint endpoint : endpoints) {
+            if (tried.contains(endpoint) || endpoint.isEjected(now)) {
+                continue;
+            }
+            double cost = endpoint.getCost();
+            if (selected == null || cost < selectedCost) {
+                selected = endpoint;
+                selectedCost = cost;
+            }
+        }
+        if (selected == null && tried.isEmpty()) {
+            for (Endpoint endpoint : endpoints) {
+                if (selected == null || endpoint.getEjectedUntilNanos() - selected.getEjectedUntilNanos() < 0) {
+                    selected = endpoint;
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Records a response of the engine, which also brings an ejected engine back.
+     *
+     * @param endpoint     Engine that responded.
+     * @param latencyNanos Time until the response.
+     */
+    public void recordSuccess(Endpoint endpoint, long latencyNanos) {
+        double latencyMillis = latencyNanos / 1e6;
+        synchronized (endpoint) {
+            endpoint.latencyMillis = endpoint.latencyMillis > 0
+                    ? endpoint.latencyMillis + LATENCY_DECAY * (latencyMillis - endpoint.latencyMillis)
+                    : latencyMillis;
+            endpoint.consecutiveFailures = 0;
+            endpoint.ejected = false;
+        }
+    }
+
+    /**
+     * Records a failed request, a connection error or a server error, and ejects the engine if it failed too many
+     * requests in a row.
+     *
+     * @param endpoint Engine that failed.
+     * @return true if the engine was ejected.
+     */
+    public boolean recordFailure(Endpoint endpoint) {
+        synchronized (endpoint) {
+            endpoint.consecutiveFailures++;
+            if (endpoint.consecutiveFailures >= ejectAfterFailures) {
+                endpoint.ejected = true;
+                endpoint.ejectedUntilNanos = System.nanoTime() + ejectionNanos;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+}
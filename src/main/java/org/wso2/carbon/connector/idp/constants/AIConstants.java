@@ -32,28 +32,181 @@ public class AIConstants {
     public static final String ENDPOINT_LLM_DEFAULT= "https://api.openai.com/v1/chat/completions";
     public static final String ENDPOINT_OLLAMA_DEFAULT= "http://localhost:11434/v1/chat/completions";
     public static final String ENDPOINT_OPEN_AI_DEFAULT = "https://api.openai.com/v1/chat/completions";
+    public static final String CONNECT_TIMEOUT = "connectTimeout";
+    public static final String HTTP_VERSION = "httpVersion";
+    public static final String MAX_CONCURRENT_STREAMS = "maxConcurrentStreams";
+    public static final String EXECUTOR_THREADS = "executorThreads";
+    public static final Integer CONNECT_TIMEOUT_DEFAULT = 10000;
+    public static final String HTTP_VERSION_DEFAULT = "HTTP_2";
+    public static final Integer MAX_CONCURRENT_STREAMS_DEFAULT = 100;
+    public static final Integer EXECUTOR_THREADS_DEFAULT = 0;
+    public static final String RENDER_POOL_SIZE = "renderPoolSize";
+    public static final String RENDER_QUEUE_DEPTH = "renderQueueDepth";
+    public static final String RENDER_PARALLELISM = "renderParallelism";
+    public static final Integer RENDER_POOL_SIZE_DEFAULT = 0;
+    public static final Integer RENDER_QUEUE_DEPTH_DEFAULT = 64;
+    public static final Integer RENDER_PARALLELISM_DEFAULT = 1;
+    public static final String RESULT_CACHE = "resultCache";
+    public static final String RESULT_CACHE_NONE = "NONE";
+    public static final String RESULT_CACHE_MEMORY = "MEMORY";
+    public static final String RESULT_CACHE_DISK = "DISK";
+    public static final String RESULT_CACHE_MAX_ENTRIES = "resultCacheMaxEntries";
+    public static final String RESULT_CACHE_TTL = "resultCacheTtl";
+    public static final String RESULT_CACHE_DIRECTORY = "resultCacheDirectory";
+    public static final Integer RESULT_CACHE_MAX_ENTRIES_DEFAULT = 1000;
+    public static final Integer RESULT_CACHE_TTL_DEFAULT = 3600;
+    public static final String RESULT_CACHE_DIRECTORY_NAME = "idp-result-cache";
+    // part of every result cache key; bump it when the requests change in a way the key does not otherwise cover
+    public static final String RESULT_CACHE_KEY_VERSION = "1";
+    public static final String COALESCE_REQUESTS = "coalesceRequests";
+    public static final Boolean COALESCE_REQUESTS_DEFAULT = false;
+    public static final String MAX_OUTSTANDING_CALLS = "maxOutstandingCalls";
+    public static final Integer MAX_OUTSTANDING_CALLS_DEFAULT = 32;
+    public static final String REQUESTS_PER_MINUTE = "requestsPerMinute";
+    public static final String TOKENS_PER_MINUTE = "tokensPerMinute";
+    public static final String RATE_LIMIT_MAX_WAIT = "rateLimitMaxWait";
+    public static final Integer REQUESTS_PER_MINUTE_DEFAULT = 0;
+    public static final Integer TOKENS_PER_MINUTE_DEFAULT = 0;
+    public static final Integer RATE_LIMIT_MAX_WAIT_DEFAULT = 30000;
+    public static final String ENGINE_WEIGHT = "engineWeight";
+    public static final Integer ENGINE_WEIGHT_DEFAULT = 1;
+    public static final String ADDITIONAL_ENGINES = "additionalEngines";
+    public static final String EJECT_AFTER_FAILURES = "ejectAfterFailures";
+    public static final Integer EJECT_AFTER_FAILURES_DEFAULT = 3;
+    public static final String EJECTION_TIME = "ejectionTime";
+    public static final Integer EJECTION_TIME_DEFAULT = 30000;
+    public static final String OLLAMA_CHAT_PATH = "/api/chat";
+    public static final String KEEP_ALIVE = "keepAlive";
+    public static final String CONTEXT_LENGTH = "contextLength";
+    public static final Integer CONTEXT_LENGTH_DEFAULT = 0;
+    public static final String KEEP_WARM_INTERVAL = "keepWarmInterval";
+    public static final Integer KEEP_WARM_INTERVAL_DEFAULT = 0;
+    public static final Integer KEEP_WARM_TIMEOUT = 120000;
+    public static final String MAX_ATTEMPTS = "maxAttempts";
+    public static final String RETRY_BASE_DELAY = "retryBaseDelay";
+    public static final String RETRY_JITTER = "retryJitter";
+    public static final String RETRYABLE_STATUS_CODES = "retryableStatusCodes";
+    public static final Integer MAX_ATTEMPTS_DEFAULT = 3;
+    public static final Integer RETRY_BASE_DELAY_DEFAULT = 1000;
+    public static final Double RETRY_JITTER_DEFAULT = 0.5;
+    public static final String RETRYABLE_STATUS_CODES_DEFAULT = "500,502,503,504";
+    public static final Long RETRY_MAX_DELAY = 30000L;
+    public static final String ATTEMPTS_ATTRIBUTE = "attempts";
+    public static final Integer TEXT_CHARS_PER_TOKEN = 4;
+    public static final Integer IMAGE_TOKENS_ESTIMATE = 765;
     public static final String RESPONSE_VARIABLE= "responseVariable";
     public static final String OVERWRITE_BODY = "overwriteBody";
     public static final String MESSAGE_TYPE_STRING = "messageType";
     public static final String CONTENT_TYPE_STRING = "ContentType";
     public static final String JSON_CONTENT_TYPE = "application/json";
+    public static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4";
+    public static final String METRICS_FORMAT = "format";
+    public static final String METRICS_FORMAT_PROMETHEUS = "Prometheus";
+    public static final String METRICS_FORMAT_JSON = "JSON";
     public static final String MAX_TOKENS = "maxTokens";
     public static final String FILE_CONTENT = "fileContent";
     public static final String MIME_TYPE = "mimeType";
     public static final String CONTENT_FORMAT = "contentFormat";
+    public static final String CONTENT_FORMAT_BASE64 = "Base64";
+    public static final String CONTENT_FORMAT_FILE_PATH = "File Path";
+    public static final String CONTENT_FORMAT_MESSAGE_BODY = "Message Body";
+    public static final String DOCUMENT_BASE_DIRECTORY = "documentBaseDirectory";
+    public static final Integer DOCUMENT_MEMORY_THRESHOLD = 1024 * 1024;
+    public static final Integer REQUEST_BODY_MEMORY_THRESHOLD = 4 * 1024 * 1024;
     public static final Integer MAX_TOKENS_DEFAULT = 4096;
+    public static final String AUTO_MAX_TOKENS = "autoMaxTokens";
+    public static final Integer AUTO_MAX_TOKENS_MIN = 256;
+    public static final String MAX_REQUEST_TOKENS = "maxRequestTokens";
+    public static final Integer MAX_REQUEST_TOKENS_DEFAULT = 0;
+    public static final String ESTIMATED_TOKENS_ATTRIBUTE = "estimatedTokens";
     public static final Integer IMAGE_DPI_DEFAULT = 300;
+    public static final String RENDER_PROFILE = "renderProfile";
+    public static final String RENDER_PROFILE_DEFAULT = "Default";
+    public static final String RENDER_PROFILE_AUTO = "Auto";
+    public static final String RENDER_PROFILE_CUSTOM = "Custom";
+    public static final String RENDER_DPI = "renderDpi";
+    public static final String COLOR_MODE = "colorMode";
+    public static final String IMAGE_FORMAT = "imageFormat";
+    public static final String IMAGE_QUALITY = "imageQuality";
+    public static final Integer IMAGE_QUALITY_DEFAULT = 85;
+    public static final String NORMALIZE_IMAGES = "normalizeImages";
+    public static final String TRIM_MARGINS = "trimMargins";
+    public static final String GRAYSCALE = "grayscale";
+    public static final String IMAGE_DETAIL = "imageDetail";
+    public static final String IMAGE_DETAIL_AUTO = "Auto";
+    public static final String IMAGE_DETAIL_LOW = "low";
+    public static final String IMAGE_DETAIL_HIGH = "high";
+    public static final String EXTRACTION_MODE = "extractionMode";
+    public static final String EXTRACTION_MODE_DEFAULT = "Image";
+    public static final String MIN_PAGE_TEXT_LENGTH = "minPageTextLength";
+    public static final Integer MIN_PAGE_TEXT_LENGTH_DEFAULT = 50;
+    public static final String PAGES = "pages";
+    public static final String PRUNE_PAGES = "prunePages";
+    public static final String BLANK_PAGE_THRESHOLD = "blankPageThreshold";
+    public static final Double BLANK_PAGE_THRESHOLD_DEFAULT = 0.001;
+    public static final Integer DUPLICATE_PAGE_MAX_DISTANCE = 8;
+    public static final String SENT_PAGES_ATTRIBUTE = "sentPages";
+    public static final String SKIPPED_PAGES_ATTRIBUTE = "skippedPages";
+    public static final String CHUNK_SIZE = "chunkSize";
+    public static final Integer CHUNK_SIZE_DEFAULT = 0;
+    public static final String CHUNK_CONCURRENCY = "chunkConcurrency";
+    public static final Integer CHUNK_CONCURRENCY_DEFAULT = 4;
+    public static final String CHUNKS_ATTRIBUTE = "chunks";
+    public static final String TEXT_PAGES_ATTRIBUTE = "textPages";
+    public static final String IMAGE_PAGES_ATTRIBUTE = "imagePages";
+    public static final String STREAM = "stream";
+    public static final String BYPASS_CACHE = "bypassCache";
+    public static final String VALIDATE_RESULT = "validateResult";
+    public static final String REPAIR_ATTEMPTS = "repairAttempts";
+    public static final Integer REPAIR_ATTEMPTS_DEFAULT = 0;
+    public static final String VALIDATION_ERRORS_ATTRIBUTE = "validationErrors";
+    public static final String REPAIRED_FIELDS_ATTRIBUTE = "repairedFields";
+    public static final String EXECUTION_MODE = "executionMode";
+    public static final String EXECUTION_MODE_BLOCKING = "Blocking";
+    public static final String EXECUTION_MODE_NON_BLOCKING = "Non-Blocking";
+    public static final String RESPONSE_SEQUENCE = "responseSequence";
+    public static final String DOCUMENTS = "documents";
+    public static final String CONCURRENCY = "concurrency";
+    public static final Integer CONCURRENCY_DEFAULT = 4;
+    public static final String BATCH_ITEM_ID = "id";
+    public static final String BATCH_ITEM_CONTENT = "content";
+    public static final String BATCH_ITEM_PATH = "path";
+    public static final String BATCH_ITEM_SCHEMA = "schema";
+    public static final String BATCH_STATUS_SUCCESS = "SUCCESS";
+    public static final String BATCH_STATUS_FAILED = "FAILED";
+    public static final String BATCH_TOTAL_ATTRIBUTE = "total";
+    public static final String BATCH_SUCCEEDED_ATTRIBUTE = "succeeded";
+    public static final String BATCH_FAILED_ATTRIBUTE = "failed";
+    public static final String CACHE_HIT_ATTRIBUTE = "cacheHit";
+    public static final String COALESCED_ATTRIBUTE = "coalesced";
+    public static final String TIME_TO_FIRST_TOKEN_ATTRIBUTE = "timeToFirstTokenMillis";
+    public static final String TOTAL_TIME_ATTRIBUTE = "totalTimeMillis";
+    public static final String MAX_IMAGE_DIMENSION = "maxImageDimension";
+    public static final Integer MAX_IMAGE_DIMENSION_DEFAULT = 2048;
     public static final String SCANNER_OUTPUT_SCHEMA = "idpSchema";
     public static final String REGISTRY_PATH = "gov:mi-resources/idp-schemas/";
     public static final String REGISTRY_PATH_BELOW_4_4_0 = "gov:idp-schemas/";
+    public static final Integer SCHEMA_CACHE_MAX_ENTRIES = 64;
+    public static final Long SCHEMA_CACHE_TTL_DEFAULT = 60000L;
     public static final String SYSTEM_PROMPT_TEMPLATE =
             "You are an expert AI assistant specialized in analyzing multiple images and extracting structured data. " +
             "Your task is to accurately populate the provided JSON schema using the given images. " +
             "Each field in the schema has a description. Use it to infer the correct value if possible. " +
-            "If a field cannot be confidently inferred from the images or its description, return null for that field. " +
+            "If a field cannot be confidently inferred from the images or its description, " +
+            "return null for that field. " +
             "Field names in the output must exactly match the keys in the schema, including case sensitivity. " +
-            "Return only a valid JSON object matching the schema structure. Do not include any other text, comments, or formatting.";
+            "Return only a valid JSON object matching the schema structure. " +
+            "Do not include any other text, comments, or formatting.";
+    public static final String PAGE_TEXT_TEMPLATE = "Page %d (text layer):%n%s";
+    public static final String PAGE_IMAGE_TEMPLATE = "Page %d (image):";
+    public static final String CHUNK_PROMPT_TEMPLATE =
+            "These are pages %s of a longer document. Populate only the fields whose values appear on these " +
+            "pages and return null for the others. For lists, return only the items on these pages.";
+    public static final String REPAIR_PROMPT_TEMPLATE =
+            "Some fields of your previous answer do not match the JSON schema:%n%s%nLook at the document again " +
+            "and return a JSON object with only these fields, corrected: %s.";
     public static final String USER_PROMPT_TEMPLATE =
-            "Please analyze all the provided images thoroughly and populate the following JSON schema based on the information extracted. ";
+            "Please analyze all the provided images thoroughly and populate the following JSON schema " +
+            "based on the information extracted. ";
 }
 
@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.metrics;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Latency and throughput metrics of the scans of a connection: a histogram per scan stage and per schema, and
+ * counters of scans, schema cache lookups, pages, uploaded bytes, response status codes and errors. Recording only
+ * touches striped counters, so it can be left on in production.
+ */
+public class ScanMetrics implements ScanMetricsMXBean {
+
+    private static final Log log = LogFactory.getLog(ScanMetrics.class);
+    private static final String OBJECT_NAME_PREFIX = "org.wso2.carbon.connector.idp:type=ScanMetrics,connection=";
+
+    private final String connectionName;
+    private volatile State state = new State();
+    private ObjectName objectName;
+
+    /**
+     * The registered metrics by object name, so that a connection only unregisters the name while it holds it and
+     * never takes away the registration of the connection that replaced it.
+     */
+    private static final Map<ObjectName, ScanMetrics> registered = new HashMap<>();
+
+    /**
+     * Everything recorded since the metrics were created or reset, swapped as a whole on reset.
+     */
+    private static class State {
+        private final Map<Stage, LatencyHistogram> stages = new EnumMap<>(Stage.class);
+        private final ConcurrentMap<String, LatencyHistogram> schemas = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, LongAdder> responses = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+        private final LongAdder scans = new LongAdder();
+        private final LongAdder cacheHits = new LongAdder();
+        private final LongAdder coalescedScans = new LongAdder();
+        private final LongAdder schemaCacheHits = new LongAdder();
+        private final LongAdder schemaCacheMisses = new LongAdder();
+        private final LongAdder pagesRendered = new LongAdder();
+        private final LongAdder pagesSent = new LongAdder();
+        private final LongAdder bytesUploaded = new LongAdder();
+
+        State() {
+            for (Stage stage : Stage.values()) {
+                stages.put(stage, new LatencyHistogram());
+            }
+        }
+    }
+
+    public ScanMetrics(String connectionName) {
+        this.connectionName = connectionName;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, replacing the metrics of an earlier connection of the
+     * same name. Failing to register only disables the JMX view.
+     */
+    public void register() {
+        synchronized (registered) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(connectionName));
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                    ScanMetrics replaced = registered.remove(name);
+                    if (replaced != null) {
+                        replaced.objectName = null;
+                    }
+                }
+                server.registerMBean(this, name);
+                registered.put(name, this);
+                objectName = name;
+            } catch (JMException e) {
+                log.warn("Could not register the scan metrics of connection " + connectionName + " with JMX.", e);
+            }
+        }
+    }
+
+    /**
+     * Unregisters the metrics, unless another instance has registered under the name since.
+     */
+    public void unregister() {
+        synchronized (registered) {
+            if (objectName == null || registered.get(objectName) != this) {
+                objectName = null;
+                return;
+            }
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                log.warn("Could not unregister the scan metrics of connection " + connectionName + " from JMX.", e);
+            }
+            registered.remove(objectName);
+            objectName = null;
+        }
+    }
+
+    /**
+     * @param stage Stage that ran.
+     * @param nanos Time it took.
+     */
+    public void recordStage(Stage stage, long nanos) {
+        state.stages.get(stage).record(nanos);
+    }
+
+    /**
+     * Records a completed or failed scan.
+     *
+     * @param schema  Registry path of the schema of the scan.
+     * @param nanos   Time the scan took.
+     * @param failure Exception the scan failed with, or null.
+     */
+    public void recordScan(String schema, long nanos, Throwable failure) {
+        State current = state;
+        current.scans.increment();
+        current.stages.get(Stage.SCAN).record(nanos);
+        current.schemas.computeIfAbsent(schema, key -> new LatencyHistogram()).record(nanos);
+        if (failure != null) {
+            current.errors.computeIfAbsent(failure.getClass().getSimpleName(), key -> new LongAdder()).increment();
+        }
+    }
+
+    public void recordCacheHit() {
+        state.cacheHits.increment();
+    }
+
+    public void recordCoalescedScan() {
+        state.coalescedScans.increment();
+    }
+
+    public void recordSchemaCacheHit() {
+        state.schemaCacheHits.increment();
+    }
+
+    public void recordSchemaCacheMiss() {
+        state.schemaCacheMisses.increment();
+    }
+
+    public void recordPagesRendered(int pages) {
+        state.pagesRendered.add(pages);
+    }
+
+    public void recordPagesSent(int pages) {
+        state.pagesSent.add(pages);
+    }
+
+    public void recordBytesUploaded(long bytes) {
+        state.bytesUploaded.add(bytes);
+    }
+
+    /**
+     * Records a response of the AI service, or a request that got no response.
+     *
+     * @param statusCode HTTP status code, or 0 if the request failed without a response.
+     */
+    public void recordResponse(int statusCode) {
+        state.responses.computeIfAbsent(statusCode == 0 ? "none" : String.valueOf(statusCode),
+                key -> new LongAdder()).increment();
+    }
+
+    @Override
+    public long getScans() {
+        return state.scans.sum();
+    }
+
+    @Override
+    public long getFailedScans() {
+        long failed = 0;
+        for (LongAdder errors : state.errors.values()) {
+            failed += errors.sum();
+        }
+        return failed;
+    }
+
+    @Override
+    public long getCacheHits() {
+        return state.cacheHits.sum();
+    }
+
+    @Override
+    public long getCoalescedScans() {
+        return state.coalescedScans.sum();
+    }
+
+    @Override
+    public long getSchemaCacheHits() {
+        return state.schemaCacheHits.sum();
+    }
+
+    @Override
+    public long getSchemaCacheMisses() {
+        return state.schemaCacheMisses.sum();
+    }
+
+    @Override
+    public long getPagesRendered() {
+        return state.pagesRendered.sum();
+    }
+
+    @Override
+    public long getPagesSent() {
+        return state.pagesSent.sum();
+    }
+
+    @Override
+    public long getBytesUploaded() {
+        return state.bytesUploaded.sum();
+    }
+
+    @Override
+    public Map<String, Long> getResponses() {
+        return sums(state.responses);
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        return sums(state.errors);
+    }
+
+    @Override
+    public Map<String, LatencyStatistics> getStageLatencies() {
+        Map<String, LatencyStatistics> latencies = new TreeMap<>();
+        for (Map.Entry<Stage, LatencyHistogram> stage : state.stages.entrySet()) {
+            latencies.put(stage.getKey().label(), stage.getValue().toStatistics());
+        }
+        return latencies;
+    }
+
+    @Override
+    public Map<String, LatencyStatistics> getSchemaLatencies() {
+        Map<String, LatencyStatistics> latencies = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> schema : state.schemas.entrySet()) {
+            latencies.put(schema.getKey(), schema.getValue().toStatistics());
+        }
+        return latencies;
+    }
+
+    @Override
+    public void reset() {
+        state = new State();
+    }
+
+    private static Map<String, Long> sums(Map<String, LongAdder> counters) {
+        Map<String, Long> sums = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            sums.put(counter.getKey(), counter.getValue().sum());
+        }
+        return sums;
+    }
+
+    @Override
+    public String toPrometheusText() {
+        State current = state;
+        StringBuilder text = new StringBuilder();
+        String connection = "connection=\"" + escape(connectionName) + "\"";
+        counter(text, "idp_scans_total", "Document scans.", connection, current.scans.sum());
+        counter(text, "idp_cache_hits_total", "Scans answered from the result cache.", connection,
+                current.cacheHits.sum());
+        counter(text, "idp_coalesced_scans_total", "Scans that shared the result of an identical scan in flight.",
+                connection, current.coalescedScans.sum());
+        counter(text, "idp_schema_cache_hits_total", "Schema lookups answered from the schema cache.", connection,
+                current.schemaCacheHits.sum());
+        counter(text, "idp_schema_cache_misses_total", "Schema lookups that read the schema from the registry.",
+                connection, current.schemaCacheMisses.sum());
+        counter(text, "idp_pages_rendered_total", "PDF pages rendered to images.", connection,
+                current.pagesRendered.sum());
+        counter(text, "idp_pages_sent_total", "Document pages sent to the AI service.", connection,
+                current.pagesSent.sum());
+        counter(text, "idp_upload_bytes_total", "Request body bytes sent to the AI service.", connection,
+                current.bytesUploaded.sum());
+        labelledCounter(text, "idp_responses_total", "Responses of the AI service by status code.", connection,
+                "code", current.responses);
+        labelledCounter(text, "idp_scan_errors_total", "Failed scans by exception type.", connection, "type",
+                current.errors);
+
+        text.append("# HELP idp_stage_duration_seconds Latency of the stages of a scan.\n");
+        text.append("# TYPE idp_stage_duration_seconds histogram\n");
+        for (Map.Entry<Stage, LatencyHistogram> stage : current.stages.entrySet()) {
+            histogram(text, "idp_stage_duration_seconds", connection + ",stage=\"" + stage.getKey().label() + "\"",
+                    stage.getValue());
+        }
+        text.append("# HELP idp_schema_scan_duration_seconds Latency of whole scans by schema.\n");
+        text.append("# TYPE idp_schema_scan_duration_seconds histogram\n");
+        for (Map.Entry<String, LatencyHistogram> schema : new TreeMap<>(current.schemas).entrySet()) {
+            histogram(text, "idp_schema_scan_duration_seconds",
+                    connection + ",schema=\"" + escape(schema.getKey()) + "\"", schema.getValue());
+        }
+        return text.toString();
+    }
+
+    private static void counter(StringBuilder text, String name, String help, String labels, long value) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" counter\n");
+        text.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private static void labelledCounter(StringBuilder text, String name, String help, String labels, String label,
+                                        Map<String, LongAdder> counters) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(" counter\n");
+        for (Map.Entry<String, Long> counter : sums(counters).entrySet()) {
+            text.append(name).append('{').append(labels).append(',').append(label).append("=\"")
+                    .append(escape(counter.getKey())).append("\"} ").append(counter.getValue()).append('\n');
+        }
+    }
+
+    private static void histogram(StringBuilder text, String name, String labels, LatencyHistogram histogram) {
+        long[] counts = histogram.getBucketCounts();
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            String bound = i < LatencyHistogram.BUCKET_BOUNDS_MILLIS.length
+                    ? String.valueOf(LatencyHistogram.BUCKET_BOUNDS_MILLIS[i] / 1000.0) : "+Inf";
+            text.append(name).append("_bucket{").append(labels).append(",le=\"").append(bound).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        text.append(name).append("_sum{").append(labels).append("} ").append(histogram.getSumMillis() / 1000)
+                .append('\n');
+        text.append(name).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
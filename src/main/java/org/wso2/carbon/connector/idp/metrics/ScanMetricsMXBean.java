@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of the scan metrics of a connection, registered as
+ * org.wso2.carbon.connector.idp:type=ScanMetrics,connection=&lt;connection name&gt;.
+ */
+public interface ScanMetricsMXBean {
+
+    long getScans();
+
+    long getFailedScans();
+
+    long getCacheHits();
+
+    long getCoalescedScans();
+
+    /**
+     * @return Number of schema lookups answered from the schema cache.
+     */
+    long getSchemaCacheHits();
+
+    /**
+     * @return Number of schema lookups that read the schema from the registry.
+     */
+    long getSchemaCacheMisses();
+
+    long getPagesRendered();
+
+    long getPagesSent();
+
+    long getBytesUploaded();
+
+    /**
+     * @return Number of responses of the AI service by HTTP status code.
+     */
+    Map<String, Long> getResponses();
+
+    /**
+     * @return Number of failed scans by exception type.
+     */
+    Map<String, Long> getErrors();
+
+    /**
+     * @return Latency of each stage of a scan.
+     */
+    Map<String, LatencyStatistics> getStageLatencies();
+
+    /**
+     * @return Latency of whole scans by schema.
+     */
+    Map<String, LatencyStatistics> getSchemaLatencies();
+
+    /**
+     * @return The metrics in the Prometheus text exposition format.
+     */
+    String toPrometheusText();
+
+    void reset();
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.metrics;
+
+import java.util.Locale;
+
+/**
+ * Stages of a document scan whose latency is recorded.
+ */
+public enum Stage {
+
+    /** Decoding the Base64 document. */
+    DECODE,
+    /** Rasterizing a PDF page. */
+    RENDER,
+    /** Encoding a rendered page as PNG or JPEG. */
+    ENCODE,
+    /** Extracting the text layer of PDF pages. */
+    TEXT,
+    /** Normalizing an uploaded image. */
+    NORMALIZE,
+    /** Writing a request body once, serialization and Base64 encoding into memory or a temporary file. */
+    WRITE,
+    /** One HTTP exchange with an engine, from sending the request to receiving the response. */
+    REQUEST,
+    /** Parsing the JSON result out of the LLM response. */
+    PARSE,
+    /** Validating the result against the schema. */
+    VALIDATE,
+    /** A whole scan, including cache lookups and retries. */
+    SCAN;
+
+    /**
+     * @return Name of the stage in metric labels.
+     */
+    public String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
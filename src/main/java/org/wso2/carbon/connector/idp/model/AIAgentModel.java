@@ -17,7 +17,9 @@
 package org.wso2.carbon.connector.idp.model;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import com.google.gson.JsonObject;
 
 import org.wso2.carbon.connector.idp.connection.AIConnection;
@@ -33,6 +35,8 @@ public abstract class AIAgentModel {
 
     private JsonObject response = null;
 
+    private final Map<String, Object> responseAttributes = new LinkedHashMap<>();
+
     private String responseVariable= "";
 
     private Boolean overwriteBody= false;
@@ -76,6 +80,18 @@ public abstract class AIAgentModel {
     public JsonObject getResponse() {
         return response;
     }
+
+    /**
+     * @return Details of how the response was produced, such as timings, returned as the attributes of the
+     * operation response.
+     */
+    public Map<String, Object> getResponseAttributes() {
+        return responseAttributes;
+    }
+
+    public void addResponseAttribute(String name, Object value) {
+        this.responseAttributes.put(name, value);
+    }
     
     public abstract void processRequest(AIConnection connection) throws AIConnectorException;
 }
@@ -16,24 +16,30 @@
  */
 package org.wso2.carbon.connector.idp.model;
 
-import java.net.http.HttpClient;
+import org.wso2.carbon.connector.idp.constants.AIConstants;
+
+import java.net.URI;
+import java.util.Objects;
 
 public class AIEngineModel {
 
     private final String apiKey;
     private final String model;
     private final String endpointUrl;
+    private final int weight;
 
     public AIEngineModel(String apiKey, String model, String endpointUrl) {
+        this(apiKey, model, endpointUrl, 1);
+    }
+
+    /**
+     * @param weight Share of the requests of the connection the engine receives relative to the other engines.
+     */
+    public AIEngineModel(String apiKey, String model, String endpointUrl, int weight) {
         this.apiKey = apiKey;
         this.model = model;
         this.endpointUrl = endpointUrl;
-    }
-
-    public HttpClient getHttpClient() {
-        return HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_2)
-                .build();
+        this.weight = weight;
     }
 
     public String getModel() {
@@ -47,5 +53,47 @@ public class AIEngineModel {
     public String getEndpointUrl() {
         return endpointUrl;
     }
-}
 
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return true if the endpoint is the native chat API of Ollama rather than a chat completions API.
+     */
+    public boolean isOllamaChat() {
+        try {
+            return isOllamaChat(URI.create(endpointUrl));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param uri URI of a chat endpoint.
+     * @return true if the URI is that of the native chat API of Ollama, /api/chat.
+     */
+    public static boolean isOllamaChat(URI uri) {
+        return uri.getPath() != null && uri.getPath().endsWith(AIConstants.OLLAMA_CHAT_PATH);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        AIEngineModel that = (AIEngineModel) o;
+        return weight == that.weight
+                && Objects.equals(apiKey, that.apiKey)
+                && Objects.equals(model, that.model)
+                && Objects.equals(endpointUrl, that.endpointUrl);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(apiKey, model, endpointUrl, weight);
+    }
+}
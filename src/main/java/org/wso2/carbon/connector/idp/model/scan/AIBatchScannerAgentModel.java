@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.model.scan;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.wso2.carbon.connector.idp.connection.AIConnection;
+import org.wso2.carbon.connector.idp.constants.AIConstants;
+import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+import org.wso2.carbon.connector.idp.model.AIAgentModel;
+import org.wso2.carbon.connector.idp.util.AIUtils;
+import org.wso2.carbon.connector.idp.util.ConcurrentTasks;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agent that processes a batch of documents. Each document is processed by its own {@link AIScannerAgentModel}, at
+ * most {@code concurrency} at a time, and the results are returned in the order of the input. A document that fails
+ * is reported in its own result and does not fail the batch.
+ */
+public class AIBatchScannerAgentModel extends AIAgentModel {
+
+    private static final Gson gson = new Gson();
+
+    private final AIScannerAgentModel itemSettings;
+    private JsonArray documents = new JsonArray();
+    private int concurrency = AIConstants.CONCURRENCY_DEFAULT;
+
+    /**
+     * @param itemSettings Agent holding the settings shared by all documents of the batch.
+     */
+    public AIBatchScannerAgentModel(AIScannerAgentModel itemSettings) {
+        this.itemSettings = itemSettings;
+    }
+
+    public JsonArray getDocuments() {
+        return documents;
+    }
+
+    public void setDocuments(JsonArray documents) {
+        this.documents = documents;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    @Override
+    public void processRequest(AIConnection connection) throws AIConnectorException {
+        long startNanos = System.nanoTime();
+        int total = documents.size();
+        JsonObject[] results = new JsonObject[total];
+        // processItem reports the failure of a document in its result, so a failing document never stops the batch
+        ConcurrentTasks.run(connection.getBatchExecutor(), total, concurrency,
+                index -> results[index] = processItem(connection, index));
+
+        JsonArray resultArray = new JsonArray();
+        int succeeded = 0;
+        for (JsonObject result : results) {
+            if (AIConstants.BATCH_STATUS_SUCCESS.equals(result.get("status").getAsString())) {
+                succeeded++;
+            }
+            resultArray.add(result);
+        }
+        JsonObject response = new JsonObject();
+        response.add("results", resultArray);
+        setResponse(response);
+        addResponseAttribute(AIConstants.BATCH_TOTAL_ATTRIBUTE, total);
+        addResponseAttribute(AIConstants.BATCH_SUCCEEDED_ATTRIBUTE, succeeded);
+        addResponseAttribute(AIConstants.BATCH_FAILED_ATTRIBUTE, total - succeeded);
+        addResponseAttribute(AIConstants.TOTAL_TIME_ATTRIBUTE,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    private JsonObject processItem(AIConnection connection, int index) {
+        JsonElement document = documents.get(index);
+        JsonObject result = new JsonObject();
+        result.addProperty("index", index);
+        if (document.isJsonObject() && document.getAsJsonObject().has(AIConstants.BATCH_ITEM_ID)) {
+            result.add(AIConstants.BATCH_ITEM_ID, document.getAsJsonObject().get(AIConstants.BATCH_ITEM_ID));
+        }
+        try {
+            AIScannerAgentModel agent = AIUtils.getBatchItemAgent(itemSettings, document,
+                    connection.getAiConnectionConfiguration().getDocumentBaseDirectory());
+            agent.processRequest(connection);
+            result.addProperty("status", AIConstants.BATCH_STATUS_SUCCESS);
+            result.add("result", agent.getResponse());
+            result.add("attributes", gson.toJsonTree(agent.getResponseAttributes()));
+        } catch (Exception e) {
+            result.addProperty("status", AIConstants.BATCH_STATUS_FAILED);
+            // NullPointerException and the like carry no message, so name the exception instead of reporting null.
+            String message = e.getMessage();
+            result.addProperty("error", message != null ? message : e.getClass().getName());
+        }
+        return result;
+    }
+}
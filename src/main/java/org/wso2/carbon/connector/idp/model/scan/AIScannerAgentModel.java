@@ -16,58 +16,116 @@
  */
 package org.wso2.carbon.connector.idp.model.scan;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import com.google.gson.JsonSyntaxException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.wso2.carbon.connector.idp.cache.ResultCache;
+import org.wso2.carbon.connector.idp.cache.ResultCacheKey;
 import org.wso2.carbon.connector.idp.connection.AIConnection;
+import org.wso2.carbon.connector.idp.connection.AIConnectionConfiguration;
 import org.wso2.carbon.connector.idp.constants.AIConstants;
 import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+import org.wso2.carbon.connector.idp.exception.AIServiceException;
 import org.wso2.carbon.connector.idp.model.AIAgentModel;
+import org.wso2.carbon.connector.idp.metrics.ScanMetrics;
+import org.wso2.carbon.connector.idp.metrics.Stage;
 import org.wso2.carbon.connector.idp.model.AIEngineModel;
 import org.wso2.carbon.connector.idp.util.AIUtils;
+import org.wso2.carbon.connector.idp.util.ChatRequestWriter;
+import org.wso2.carbon.connector.idp.util.ChatResponseReader;
+import org.wso2.carbon.connector.idp.util.ConcurrentTasks;
+import org.wso2.carbon.connector.idp.util.ImageNormalizer;
+import org.wso2.carbon.connector.idp.util.JsonMerger;
+import org.wso2.carbon.connector.idp.util.PagePruner;
+import org.wso2.carbon.connector.idp.util.RetryPolicy;
+import org.wso2.carbon.connector.idp.util.SchemaCache;
+import org.wso2.carbon.connector.idp.util.SchemaValidator;
+import org.wso2.carbon.connector.idp.util.TokenEstimator;
+import org.wso2.carbon.connector.idp.util.SingleFlight;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class AIScannerAgentModel extends AIAgentModel {
 
     private Integer maxTokens = AIConstants.MAX_TOKENS_DEFAULT;
+    private boolean autoMaxTokens = false;
+    private int maxRequestTokens = AIConstants.MAX_REQUEST_TOKENS_DEFAULT;
     private String fileContent = "";
+    private String fileMimeType;
     private String schemaRegistryPath = "";
+    private RenderProfile renderProfile = RenderProfile.defaultProfile();
+    private ExtractionMode extractionMode = ExtractionMode.IMAGE;
+    private int minPageTextLength = AIConstants.MIN_PAGE_TEXT_LENGTH_DEFAULT;
+    private PageSelection pageSelection = PageSelection.all();
+    private PagePruner pagePruner;
+    private ImageNormalizer imageNormalizer;
+    private String imageDetail;
+    private int chunkSize = 0;
+    private int chunkConcurrency = AIConstants.CHUNK_CONCURRENCY_DEFAULT;
+    private boolean stream = false;
+    private boolean bypassCache = false;
+    private boolean validateResult = true;
+    private int repairAttempts = AIConstants.REPAIR_ATTEMPTS_DEFAULT;
+    private DocumentContent document;
+    private PDDocument pdfDocument;
+    private ScanMetrics metrics;
+
+    private static final Log log = LogFactory.getLog(AIScannerAgentModel.class);
 
-    private static final Gson gson = new Gson();
-
-    private static class ApiResponse {
-        private List<Choice> choices;
-
-        public List<Choice> getChoices() {
-            return choices;
-        }
-    }
-
-    private static class Choice {
-        private ResponseMessage message;
-
-        public ResponseMessage getMessage() {
-            return message;
+    /**
+     * Pages of a PDF sent to the LLM and skipped, and the estimated tokens of the requests, reported in the response
+     * attributes.
+     */
+    private static class PageReport {
+        private final List<Integer> sentPages = new ArrayList<>();
+        private final List<Integer> skippedPages = new ArrayList<>();
+        private int textPages;
+        private int imagePages;
+        private long estimatedTokens;
+
+        void addAll(PageReport other) {
+            sentPages.addAll(other.sentPages);
+            skippedPages.addAll(other.skippedPages);
+            textPages += other.textPages;
+            imagePages += other.imagePages;
+            estimatedTokens += other.estimatedTokens;
         }
-    }
 
-    private static class ResponseMessage {
-        private String content;
-
-        public String getContent() {
-            return content;
+        void addTo(AIAgentModel agent, boolean pdf) {
+            if (estimatedTokens > 0) {
+                agent.addResponseAttribute(AIConstants.ESTIMATED_TOKENS_ATTRIBUTE, estimatedTokens);
+            }
+            if (!pdf) {
+                return;
+            }
+            Collections.sort(skippedPages);
+            agent.addResponseAttribute(AIConstants.SENT_PAGES_ATTRIBUTE, sentPages);
+            agent.addResponseAttribute(AIConstants.SKIPPED_PAGES_ATTRIBUTE, skippedPages);
+            if (textPages > 0) {
+                agent.addResponseAttribute(AIConstants.TEXT_PAGES_ATTRIBUTE, textPages);
+                agent.addResponseAttribute(AIConstants.IMAGE_PAGES_ATTRIBUTE, imagePages);
+            }
         }
     }
 
@@ -83,6 +141,28 @@ public class AIScannerAgentModel extends AIAgentModel {
         this.maxTokens = maxTokens;
     }
 
+    public boolean isAutoMaxTokens() {
+        return autoMaxTokens;
+    }
+
+    /**
+     * @param autoMaxTokens Whether max_tokens follows the output estimated from the schema, up to maxTokens.
+     */
+    public void setAutoMaxTokens(boolean autoMaxTokens) {
+        this.autoMaxTokens = autoMaxTokens;
+    }
+
+    public int getMaxRequestTokens() {
+        return maxRequestTokens;
+    }
+
+    /**
+     * @param maxRequestTokens Most tokens a single request may be estimated to use, or 0 for no limit.
+     */
+    public void setMaxRequestTokens(int maxRequestTokens) {
+        this.maxRequestTokens = maxRequestTokens;
+    }
+
     public String getSchemaRegistryPath() {
         return schemaRegistryPath;
     }
@@ -91,145 +171,826 @@ public class AIScannerAgentModel extends AIAgentModel {
         this.schemaRegistryPath = schemaRegistryPath;
     }
 
+    public RenderProfile getRenderProfile() {
+        return renderProfile;
+    }
+
+    public void setRenderProfile(RenderProfile renderProfile) {
+        this.renderProfile = renderProfile;
+    }
+
+    public ExtractionMode getExtractionMode() {
+        return extractionMode;
+    }
+
+    public void setExtractionMode(ExtractionMode extractionMode) {
+        this.extractionMode = extractionMode;
+    }
+
+    public int getMinPageTextLength() {
+        return minPageTextLength;
+    }
+
+    public void setMinPageTextLength(int minPageTextLength) {
+        this.minPageTextLength = minPageTextLength;
+    }
+
+    public PageSelection getPageSelection() {
+        return pageSelection;
+    }
+
+    public void setPageSelection(PageSelection pageSelection) {
+        this.pageSelection = pageSelection;
+    }
+
+    /**
+     * @return Pruner of blank and duplicate pages, or null if pages are not pruned.
+     */
+    public PagePruner getPagePruner() {
+        return pagePruner;
+    }
+
+    public void setPagePruner(PagePruner pagePruner) {
+        this.pagePruner = pagePruner;
+    }
+
+    public ImageNormalizer getImageNormalizer() {
+        return imageNormalizer;
+    }
+
+    /**
+     * @param imageNormalizer Normalizer of uploaded images, or null to send them as they are.
+     */
+    public void setImageNormalizer(ImageNormalizer imageNormalizer) {
+        this.imageNormalizer = imageNormalizer;
+    }
+
+    public String getImageDetail() {
+        return imageDetail;
+    }
+
+    /**
+     * @param imageDetail Detail level hint of the images, low or high, or null to leave it to the model.
+     */
+    public void setImageDetail(String imageDetail) {
+        this.imageDetail = imageDetail;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @param chunkSize Maximum number of PDF pages per request, or 0 to send the whole document in one request.
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkConcurrency() {
+        return chunkConcurrency;
+    }
+
+    public void setChunkConcurrency(int chunkConcurrency) {
+        this.chunkConcurrency = chunkConcurrency;
+    }
+
+    public boolean isStream() {
+        return stream;
+    }
+
+    public void setStream(boolean stream) {
+        this.stream = stream;
+    }
+
+    public boolean isBypassCache() {
+        return bypassCache;
+    }
+
+    public void setBypassCache(boolean bypassCache) {
+        this.bypassCache = bypassCache;
+    }
+
+    public boolean isValidateResult() {
+        return validateResult;
+    }
+
+    public void setValidateResult(boolean validateResult) {
+        this.validateResult = validateResult;
+    }
+
+    /**
+     * @return Number of follow-up requests made for the fields of a result that do not match the schema.
+     */
+    public int getRepairAttempts() {
+        return repairAttempts;
+    }
+
+    public void setRepairAttempts(int repairAttempts) {
+        this.repairAttempts = repairAttempts;
+    }
+
     public String getFileContent() {
         return fileContent;
     }
 
+    /**
+     * @param fileContent Content of the document as a Base64 data URI.
+     */
     public void setFileContent(String fileContent) {
         this.fileContent = fileContent;
+        this.fileMimeType = null;
+        this.document = null;
+    }
+
+    /**
+     * Sets the content of the document as a plain Base64 string, which is decoded without being turned into a data
+     * URI first.
+     *
+     * @param fileContent Content of the document in Base64.
+     * @param mimeType    MIME type of the document.
+     */
+    public void setFileContent(String fileContent, String mimeType) {
+        this.fileContent = fileContent;
+        this.fileMimeType = mimeType;
+        this.document = null;
+    }
+
+    /**
+     * @param document Document read from a file or stream, which is closed once the request is processed.
+     */
+    public void setDocument(DocumentContent document) {
+        this.fileContent = "";
+        this.fileMimeType = null;
+        this.document = document;
     }
 
    @Override
     public void processRequest(AIConnection connection) throws AIConnectorException {
+        metrics = connection.getMetrics();
+        long startNanos = System.nanoTime();
+        Throwable failure = null;
         try {
-            HttpClient sharedHttpClient = connection.getEngine().getHttpClient();
-            AIEngineModel engine = connection.getEngine();
-            String endpointUrl = engine.getEndpointUrl();
-            String apiKey = engine.getApiKey();
-            String modelName = engine.getModel();
-            
-            List<Map<String, Object>> messages = buildRequestMessages();
-
-            JsonObject schemaObject = AIUtils.getSchemaContentAsJsonObject(getSchemaRegistryPath());
-
-            Map<String, Object> jsonSchemaPayload = Map.of(
-                    "name", "document_extraction_schema",
-                    "schema", schemaObject,
-                    "strict", true // Set to true for strict validation, or false for non-
-                    // "strict" if needed 
-            );
-            Map<String, Object> responseFormat = Map.of(
-                    "type", "json_schema",
-                    "json_schema", jsonSchemaPayload
-            );
-
-            Map<String, Object> requestPayload = Map.of(
-                    "model", modelName, 
-                    "messages", messages,
-                    "max_tokens", this.maxTokens,
-                    "temperature", 0.0,
-                    "response_format", responseFormat 
-            );
-
-            String jsonBody = gson.toJson(requestPayload);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(endpointUrl))
-                    .header("Content-Type", "application/json")
-                    .header("Authorization", "Bearer " + apiKey)
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-                    .build();
-
-            HttpResponse<String> response = sharedHttpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-             if (response.statusCode() == 200) {
-                ApiResponse apiResponse = gson.fromJson(response.body(), ApiResponse.class);
-                if (apiResponse == null || apiResponse.getChoices() == null || apiResponse.getChoices().isEmpty()) {
-                    throw new AIConnectorException("Failed to process document: LLM response was empty or malformed.");
+            String modelName = connection.getEngine().getModel();
+            SchemaCache.Entry schema = SchemaCache.getInstance().get(getSchemaRegistryPath(), metrics);
+
+            ResultCache resultCache = connection.getResultCache();
+            boolean coalesce = connection.getAiConnectionConfiguration().getCoalesceRequests();
+            String fingerprint = resultCache != null || coalesce ? getFingerprint(modelName, schema) : null;
+            if (resultCache != null) {
+                JsonObject cachedResult = bypassCache ? null : resultCache.get(fingerprint);
+                addResponseAttribute(AIConstants.CACHE_HIT_ATTRIBUTE, cachedResult != null);
+                if (cachedResult != null) {
+                    metrics.recordCacheHit();
+                    setResponse(cachedResult);
+                    addResponseAttribute(AIConstants.TOTAL_TIME_ATTRIBUTE, toMillis(System.nanoTime() - startNanos));
+                    return;
                 }
-                String responseContent = apiResponse.getChoices().get(0).getMessage().getContent();
-                JsonObject finalJsonResponse = extractJsonFromLlmContent(responseContent);
-                setResponse(finalJsonResponse);
+            }
+
+            JsonObject finalJsonResponse;
+            boolean shared = false;
+            if (coalesce) {
+                // identical documents arriving together wait for the scan already in flight instead of repeating it
+                SingleFlight.Outcome<JsonObject> outcome = connection.getInFlightScans()
+                        .execute(fingerprint, () -> extract(connection, schema, startNanos));
+                shared = outcome.isShared();
+                addResponseAttribute(AIConstants.COALESCED_ATTRIBUTE, shared);
+                if (shared) {
+                    // the result of another scan, for which this one sent no request
+                    metrics.recordCoalescedScan();
+                    addResponseAttribute(AIConstants.ATTEMPTS_ATTRIBUTE, 0);
+                }
+                finalJsonResponse = shared ? outcome.getValue().deepCopy() : outcome.getValue();
             } else {
-                throw new AIConnectorException("API request failed with status code " + response.statusCode() + ": " + response.body());
+                finalJsonResponse = extract(connection, schema, startNanos);
+            }
+            setResponse(finalJsonResponse);
+            if (resultCache != null && !shared) {
+                resultCache.put(fingerprint, finalJsonResponse);
             }
+            addResponseAttribute(AIConstants.TOTAL_TIME_ATTRIBUTE, toMillis(System.nanoTime() - startNanos));
          } 
          catch (AIConnectorException e) {
+            failure = e;
             throw e;
          }
          catch (IOException e) {
+            failure = e;
             throw new AIConnectorException("Error occurred while sending request to AI service.", e);
         } catch (Exception e) {
+            failure = e;
             throw new AIConnectorException(e.getMessage(), e);
+        } finally {
+            metrics.recordScan(getSchemaRegistryPath(), System.nanoTime() - startNanos, failure);
+            closeDocument();
+        }
+    }
+
+    private JsonObject extract(AIConnection connection, SchemaCache.Entry schema, long startNanos)
+            throws AIConnectorException, IOException, InterruptedException {
+        String modelName = connection.getEngine().getModel();
+        boolean pdf = isPdf();
+        AtomicInteger attempts = new AtomicInteger();
+        PageReport pageReport = new PageReport();
+        try {
+            List<int[]> chunks = getPageChunks();
+            if (chunks.size() > 1) {
+                JsonObject result = extractChunks(connection, modelName, schema, chunks, pageReport, attempts,
+                        startNanos);
+                return validate(connection, schema, null, result, attempts, startNanos);
+            }
+            ChatRequest chatRequest = buildChatRequest(connection, modelName, schema,
+                    chunks.isEmpty() ? null : chunks.get(0), false, pageReport);
+            if (pdf && pageReport.sentPages.isEmpty()) {
+                throw noPagesLeft();
+            }
+            JsonObject result = exchange(connection, chatRequest, attempts, startNanos);
+            return validate(connection, schema, chatRequest, result, attempts, startNanos);
+        } finally {
+            addResponseAttribute(AIConstants.ATTEMPTS_ATTRIBUTE, attempts.get());
+            metrics.recordPagesSent(pdf ? pageReport.sentPages.size() : 1);
+            pageReport.addTo(this, pdf);
+        }
+    }
+
+    /**
+     * Extracts the page chunks of the document concurrently, each against the whole schema, and merges the partial
+     * results in page order.
+     */
+    private JsonObject extractChunks(AIConnection connection, String modelName, SchemaCache.Entry schema,
+                                     List<int[]> chunks, PageReport pageReport, AtomicInteger attempts,
+                                     long startNanos) throws AIConnectorException {
+        JsonObject[] partialResults = new JsonObject[chunks.size()];
+        PageReport[] chunkReports = new PageReport[chunks.size()];
+        ConcurrentTasks.run(connection.getBatchExecutor(), chunks.size(), chunkConcurrency, index -> {
+            int[] chunk = chunks.get(index);
+            chunkReports[index] = new PageReport();
+            ChatRequest chatRequest = buildChatRequest(connection, modelName, schema, chunk, true,
+                    chunkReports[index]);
+            // a chunk whose pages were all pruned has nothing to contribute
+            if (!chunkReports[index].sentPages.isEmpty()) {
+                partialResults[index] = exchange(connection, chatRequest, attempts, startNanos);
+            }
+        });
+
+        JsonObject result = null;
+        for (int i = 0; i < chunks.size(); i++) {
+            pageReport.addAll(chunkReports[i]);
+            if (partialResults[i] != null) {
+                if (result == null) {
+                    result = partialResults[i];
+                } else {
+                    JsonMerger.merge(result, partialResults[i]);
+                }
+            }
+        }
+        if (result == null) {
+            throw noPagesLeft();
+        }
+        addResponseAttribute(AIConstants.CHUNKS_ATTRIBUTE, chunks.size());
+        return result;
+    }
+
+    /**
+     * Splits the selected pages of a PDF into chunks of at most chunkSize pages.
+     *
+     * @return The zero-based page indexes of each chunk, or an empty list if the document is not split.
+     */
+    private List<int[]> getPageChunks() throws AIConnectorException {
+        List<int[]> chunks = new ArrayList<>();
+        if (chunkSize <= 0 || !isPdf()) {
+            return chunks;
+        }
+        int[] pages = pageSelection.resolve(AIUtils.getPdfPageCount(getPdfDocument()));
+        for (int from = 0; from < pages.length; from += chunkSize) {
+            chunks.add(Arrays.copyOfRange(pages, from, Math.min(from + chunkSize, pages.length)));
         }
+        return chunks;
     }
 
     /**
-     * Extracts a valid JSON object from the raw string content of an LLM response.
-     * This method cleans markdown fences and surrounding text, then parses the result.
+     * Validates the result against the schema and, if it was extracted in a single request, asks the LLM again for
+     * only the fields that do not match, continuing the conversation of that request so that the same pages are
+     * used. The corrected fields replace those of the result. Results extracted in chunks are validated but not
+     * repaired, since no single conversation has seen every page. Fields that are still invalid are reported in the
+     * validationErrors attribute.
      *
-     * @param content The raw string content from the LLM.
-     * @return A validated JsonObject.
-     * @throws AIConnectorException if the content is empty, no JSON object is found, or parsing fails.
-     */
-    private static JsonObject extractJsonFromLlmContent(String content) throws AIConnectorException {
-        if (content == null || content.isBlank()) {
-            throw new AIConnectorException("LLM response content is empty or not a string");
-        }
-        //some open source LLMS may return content with markdown code fences
-        String cleanedContent = content.replaceAll("```json\\s*", "").replaceAll("```\\s*", "").trim();
-        Pattern pattern = Pattern.compile("\\{[\\s\\S]*\\}");
-        Matcher matcher = pattern.matcher(cleanedContent);
-
-        String jsonString;
-        if (matcher.find()) {
-            jsonString = matcher.group(0);
+     * @param chatRequest Request the result was extracted with, or null if it cannot be repaired.
+     */
+    private JsonObject validate(AIConnection connection, SchemaCache.Entry schema, ChatRequest chatRequest,
+                                JsonObject result, AtomicInteger attempts, long startNanos)
+            throws AIConnectorException, IOException, InterruptedException {
+        if (!validateResult) {
+            return result;
+        }
+        SchemaValidator validator = schema.getValidator();
+        long validateStart = System.nanoTime();
+        List<SchemaValidator.Violation> violations = validator.validate(result);
+        recordStage(Stage.VALIDATE, validateStart);
+
+        Set<String> repairedFields = new LinkedHashSet<>();
+        for (int repair = 0; repair < repairAttempts && !violations.isEmpty() && chatRequest != null; repair++) {
+            Set<String> fields = SchemaValidator.getFields(violations);
+            JsonObject fieldSchema = fields != null ? validator.getSubSchema(fields) : null;
+            if (fieldSchema == null) {
+                // the result as a whole is invalid, which a request for some of its fields cannot fix
+                break;
+            }
+            ChatRequest repairRequest = buildRepairRequest(chatRequest, fieldSchema, result, violations, fields);
+            if (maxRequestTokens > 0 && repairRequest.estimateTokens() > maxRequestTokens) {
+                break;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Result does not match schema " + schemaRegistryPath + ": " + violations
+                        + ". Requesting the fields " + fields + " again.");
+            }
+            JsonObject correction = exchange(connection, repairRequest, attempts, startNanos);
+            for (String field : fields) {
+                if (correction.has(field)) {
+                    result.add(field, correction.get(field));
+                }
+            }
+            repairedFields.addAll(fields);
+            validateStart = System.nanoTime();
+            violations = validator.validate(result);
+            recordStage(Stage.VALIDATE, validateStart);
+        }
+
+        if (!repairedFields.isEmpty()) {
+            addResponseAttribute(AIConstants.REPAIRED_FIELDS_ATTRIBUTE, new ArrayList<>(repairedFields));
+        }
+        if (!violations.isEmpty()) {
+            List<String> validationErrors = new ArrayList<>();
+            for (SchemaValidator.Violation violation : violations) {
+                validationErrors.add(violation.toString());
+            }
+            log.warn("Result does not match schema " + schemaRegistryPath + ": " + validationErrors);
+            addResponseAttribute(AIConstants.VALIDATION_ERRORS_ATTRIBUTE, validationErrors);
+        }
+        return result;
+    }
+
+    /**
+     * Builds a follow-up request of the given request, which answers with the result and asks for the given fields
+     * again, with a response format of only those fields. The request repeats every message of the given request,
+     * so the page images are uploaded, and billed, once more.
+     */
+    private ChatRequest buildRepairRequest(ChatRequest chatRequest, JsonObject fieldSchema, JsonObject result,
+                                           List<SchemaValidator.Violation> violations, Set<String> fields) {
+        int requestMaxTokens = autoMaxTokens
+                ? TokenEstimator.suggestMaxTokens(TokenEstimator.estimateOutputTokens(fieldSchema), maxTokens)
+                : maxTokens;
+        ChatRequest repairRequest = new ChatRequest(chatRequest.getModel(), requestMaxTokens,
+                SchemaCache.createResponseFormat(fieldSchema).toString());
+        repairRequest.setImageDetail(chatRequest.getImageDetail());
+        for (ChatMessage message : chatRequest.getMessages()) {
+            repairRequest.addMessage(message);
+        }
+        repairRequest.addMessage(new ChatMessage("assistant", result.toString()));
+        StringBuilder problems = new StringBuilder();
+        for (SchemaValidator.Violation violation : violations) {
+            problems.append("- ").append(violation).append(System.lineSeparator());
+        }
+        repairRequest.addMessage(new ChatMessage("user", String.format(AIConstants.REPAIR_PROMPT_TEMPLATE,
+                problems, String.join(", ", fields))));
+        return repairRequest;
+    }
+
+    /**
+     * Sends a chat request to the AI service, retrying it according to the retry policy of the connection, and
+     * extracts the JSON object from the response.
+     */
+    private JsonObject exchange(AIConnection connection, ChatRequest chatRequest, AtomicInteger attempts,
+                                long startNanos) throws AIConnectorException, IOException, InterruptedException {
+        chatRequest.setStream(stream);
+        AIConnectionConfiguration configuration = connection.getAiConnectionConfiguration();
+        chatRequest.setKeepAlive(configuration.getKeepAlive());
+        chatRequest.setContextLength(configuration.getContextLength());
+
+        try (ChatRequestWriter.SpooledBody requestBody = ChatRequestWriter.spool(chatRequest, metrics)) {
+            // the body is written when the request is first sent to an engine, so it names the model and has the
+            // format of that engine
+            Function<AIEngineModel, HttpRequest> request = engine -> {
+                chatRequest.setModel(engine.getModel());
+                chatRequest.setOllamaChat(engine.isOllamaChat());
+                HttpRequest.BodyPublisher body;
+                try {
+                    body = requestBody.getPublisher();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return HttpRequest.newBuilder()
+                        .uri(URI.create(engine.getEndpointUrl()))
+                        .header("Content-Type", "application/json")
+                        .header("Authorization", "Bearer " + engine.getApiKey())
+                        .POST(body)
+                        .build();
+            };
+
+            long tokenCost = chatRequest.estimateTokens();
+            if (configuration.getContextLength() > 0 && tokenCost > configuration.getContextLength()) {
+                log.warn("The request is estimated to use " + tokenCost + " tokens, which exceeds the context " +
+                        "length of " + configuration.getContextLength() + " tokens of connection " +
+                        configuration.getConnectionName() + ". Ollama truncates the prompt to fit the context.");
+            }
+            RetryPolicy retryPolicy = configuration.getRetryPolicy();
+            // every attempt replays the body written for the first one, so the request is serialized and its
+            // pages are encoded only once
+            for (int attempt = 1; ; attempt++) {
+                attempts.incrementAndGet();
+                try {
+                    String responseContent = stream ? sendStreamed(connection, request, tokenCost, startNanos)
+                            : send(connection, request, tokenCost);
+                    long parseStart = System.nanoTime();
+                    JsonObject result = ChatResponseReader.extractJson(responseContent);
+                    recordStage(Stage.PARSE, parseStart);
+                    return result;
+                } catch (AIServiceException | IOException e) {
+                    if (retryPolicy == null || !retryPolicy.shouldRetry(attempt, e)) {
+                        throw e;
+                    }
+                    long delayMillis = retryPolicy.getDelayMillis(attempt);
+                    log.warn("Attempt " + attempt + " of the request to the AI service failed: " + e.getMessage()
+                            + ". Retrying in " + delayMillis + " ms.");
+                    TimeUnit.MILLISECONDS.sleep(delayMillis);
+                }
+            }
+        }
+    }
+
+    private String send(AIConnection connection, Function<AIEngineModel, HttpRequest> request, long tokenCost)
+            throws AIConnectorException, IOException, InterruptedException {
+        HttpResponse<InputStream> response = sendRequest(connection, request, tokenCost);
+
+        if (response.statusCode() == 200) {
+            return AIEngineModel.isOllamaChat(response.request().uri())
+                    ? ChatResponseReader.readOllamaChat(response.body())
+                    : ChatResponseReader.readCompletion(response.body());
+        } else {
+            throw serviceError(response);
+        }
+    }
+
+    private String sendStreamed(AIConnection connection, Function<AIEngineModel, HttpRequest> request,
+                                long tokenCost, long startNanos)
+            throws AIConnectorException, IOException, InterruptedException {
+        HttpResponse<InputStream> response = sendRequest(connection, request, tokenCost);
+
+        if (response.statusCode() == 200) {
+            ChatResponseReader.Content content = AIEngineModel.isOllamaChat(response.request().uri())
+                    ? ChatResponseReader.readOllamaStream(response.body())
+                    : ChatResponseReader.readEventStream(response.body());
+            if (content.getFirstTokenNanos() > 0) {
+                recordTimeToFirstToken(toMillis(content.getFirstTokenNanos() - startNanos));
+            }
+            return content.getText();
         } else {
-            throw new AIConnectorException("No valid JSON object found in the LLM response content.");
+            throw serviceError(response);
         }
+    }
+
+    private static HttpResponse<InputStream> sendRequest(AIConnection connection,
+                                                         Function<AIEngineModel, HttpRequest> request,
+                                                         long tokenCost)
+            throws AIConnectorException, IOException, InterruptedException {
         try {
-            JsonObject parsedJson = JsonParser.parseString(jsonString).getAsJsonObject();
-            if (parsedJson == null || parsedJson.isJsonNull()) {
-                throw new AIConnectorException("Parsed content is not a valid JSON object (resulted in null).");
+            return connection.send(request, HttpResponse.BodyHandlers.ofInputStream(), tokenCost);
+        } catch (UncheckedIOException e) {
+            // writing the request body failed
+            throw e.getCause();
+        }
+    }
+
+    private static AIServiceException serviceError(HttpResponse<InputStream> response) throws IOException {
+        try (InputStream errorBody = response.body()) {
+            return new AIServiceException("API request failed with status code " + response.statusCode() + ": "
+                    + new String(errorBody.readAllBytes(), StandardCharsets.UTF_8), response.statusCode());
+        }
+    }
+
+    /**
+     * Adds pages of the PDF to the message and reports which pages were sent and which were skipped.
+     */
+    private void addPdfPages(AIConnection connection, ChatMessage userMessage, int[] pages, PageReport pageReport)
+            throws AIConnectorException {
+        if (pages == null && !(extractionMode == ExtractionMode.IMAGE && pageSelection.isAll())) {
+            pages = pageSelection.resolve(AIUtils.getPdfPageCount(getPdfDocument()));
+        }
+        if (extractionMode == ExtractionMode.IMAGE) {
+            checkImageBudget(pages);
+            for (PageImage pageImage : renderPdfPages(connection, pages, pageReport.skippedPages)) {
+                userMessage.addContent(ContentPart.image(pageImage));
+                pageReport.sentPages.add(pageImage.getPageNumber());
             }
-            return parsedJson;
-        } catch (JsonSyntaxException e) {
-            throw new AIConnectorException("Failed to parse extracted content as JSON. Syntax error.", e);
-        } catch (IllegalStateException e) {
-            throw new AIConnectorException("Parsed content is not a JSON object.", e);
+        } else {
+            addPdfTextPages(connection, userMessage, pages, pageReport);
         }
     }
 
-    private List<Map<String, Object>> buildRequestMessages() throws AIConnectorException {
-        List<Map<String, Object>> messages = new ArrayList<>();
-        messages.add(Map.of("role", "system", "content", getBasePrompt()));
+    /**
+     * Rejects a request whose page images alone exceed the token budget before spending time on rendering them. Pruned
+     * pages are only known after rendering, so the check then waits for the complete request.
+     */
+    private void checkImageBudget(int[] pages) throws AIConnectorException {
+        if (maxRequestTokens <= 0 || pagePruner != null) {
+            return;
+        }
+        long imageTokens = 0;
+        for (int[] pageSize : AIUtils.getPdfPageSizes(getPdfDocument(), pages, renderProfile)) {
+            imageTokens += TokenEstimator.estimateImageTokens(pageSize[0], pageSize[1]);
+        }
+        if (imageTokens > maxRequestTokens) {
+            throw overBudget(imageTokens);
+        }
+    }
 
-        List<Object> userMessageParts = new ArrayList<>();
-        userMessageParts.add(Map.of("type", "text", "text", AIConstants.USER_PROMPT_TEMPLATE));
+    private AIConnectorException overBudget(long estimatedTokens) {
+        return new AIConnectorException("The request is estimated to use " + estimatedTokens + " tokens, which " +
+                "exceeds the limit of " + maxRequestTokens + " tokens per request. Select fewer pages, split the " +
+                "document with a chunk size, or use a lower render DPI.");
+    }
 
-        if (fileContent != null && fileContent.toLowerCase().startsWith("data:")) {
-            String mimeType = fileContent.substring(5, fileContent.indexOf(";")).toLowerCase();
-            if (mimeType.equals("application/pdf")) {
-                String base64Pdf = fileContent.substring("data:application/pdf;base64,".length());
-                List<String> base64Images = AIUtils.pdfToImage(base64Pdf);
-                for (String base64Image : Objects.requireNonNull(base64Images)) {
-                    userMessageParts.add(createImagePart("data:image/png;base64," + base64Image));
+    /**
+     * Adds the pages with a text layer as text and, in the AUTO mode, the other pages as images. Every page is
+     * labelled with its number, so that the LLM can follow the page order across text and images.
+     */
+    private void addPdfTextPages(AIConnection connection, ChatMessage userMessage, int[] pages,
+                                 PageReport pageReport) throws AIConnectorException {
+        List<Integer> sentPages = pageReport.sentPages;
+        List<Integer> skippedPages = pageReport.skippedPages;
+        PDDocument pdf = getPdfDocument();
+        long textStart = System.nanoTime();
+        String[] pageTexts = AIUtils.extractPdfText(pdf, pages, minPageTextLength);
+        recordStage(Stage.TEXT, textStart);
+        List<Integer> scannedPages = new ArrayList<>();
+        for (int i = 0; i < pages.length; i++) {
+            if (pageTexts[i] == null) {
+                scannedPages.add(pages[i]);
+            }
+        }
+        Map<Integer, PageImage> pageImages = new HashMap<>();
+        if (extractionMode == ExtractionMode.AUTO && !scannedPages.isEmpty()) {
+            int[] pageIndexes = scannedPages.stream().mapToInt(Integer::intValue).toArray();
+            for (PageImage pageImage : renderPdfPages(connection, pageIndexes, skippedPages)) {
+                pageImages.put(pageImage.getPageNumber(), pageImage);
+            }
+        } else {
+            for (int page : scannedPages) {
+                skippedPages.add(page + 1);
+            }
+        }
+        Set<String> sentTexts = new HashSet<>();
+        int textPages = 0;
+        for (int i = 0; i < pages.length; i++) {
+            int pageNumber = pages[i] + 1;
+            if (pageTexts[i] != null) {
+                if (pagePruner != null && !sentTexts.add(pageTexts[i])) {
+                    // the same text was already sent for an earlier page
+                    skippedPages.add(pageNumber);
+                    continue;
                 }
-            } else if ((mimeType.equals("image/png") || mimeType.equals("image/jpeg") ||
-                       mimeType.equals("image/gif") || mimeType.equals("image/webp"))) {
-                userMessageParts.add(createImagePart(fileContent));
-            } else {
-                throw new AIConnectorException("Unsupported file MIME type: " + mimeType);
+                userMessage.addContent(ContentPart.text(
+                        String.format(AIConstants.PAGE_TEXT_TEMPLATE, pageNumber, pageTexts[i])));
+                sentPages.add(pageNumber);
+                textPages++;
+            } else if (pageImages.containsKey(pageNumber)) {
+                userMessage.addContent(ContentPart.text(String.format(AIConstants.PAGE_IMAGE_TEMPLATE, pageNumber)));
+                userMessage.addContent(ContentPart.image(pageImages.get(pageNumber)));
+                sentPages.add(pageNumber);
             }
+        }
+        pageReport.textPages += textPages;
+        pageReport.imagePages += pageImages.size();
+    }
+
+    /**
+     * Renders the given pages and, if pruning is enabled, drops the blank and duplicate ones.
+     */
+    private List<PageImage> renderPdfPages(AIConnection connection, int[] pageIndexes, List<Integer> skippedPages)
+            throws AIConnectorException {
+        int renderParallelism = connection.getAiConnectionConfiguration().getRenderParallelism();
+        // concurrent page chunks each render with a document of their own rather than queue for the shared one
+        PDDocument sharedDocument = chunkSize > 0 && chunkConcurrency > 1 ? null : getPdfDocument();
+        List<PageImage> pageImages = AIUtils.pdfToImage(getDocument(), sharedDocument, pageIndexes, renderProfile,
+                renderParallelism > 1 ? connection.getRenderExecutor() : null, renderParallelism,
+                pagePruner != null, metrics);
+        return pagePruner != null ? pagePruner.prune(pageImages, skippedPages) : pageImages;
+    }
+
+    /**
+     * Keeps the earliest first token of the requests of this scan, which run concurrently for page chunks.
+     */
+    private synchronized void recordTimeToFirstToken(long millis) {
+        Object recorded = getResponseAttributes().get(AIConstants.TIME_TO_FIRST_TOKEN_ATTRIBUTE);
+        if (recorded == null || (Long) recorded > millis) {
+            addResponseAttribute(AIConstants.TIME_TO_FIRST_TOKEN_ATTRIBUTE, millis);
+        }
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * Builds the chat request for the document, or for some of the pages of a PDF.
+     *
+     * @param pages      Zero-based indexes of the PDF pages to send, or null for the selected pages.
+     * @param chunk      Whether the pages are a chunk of a longer document, which the LLM is told along with the
+     *                   numbers of the pages it sees.
+     * @param pageReport Receives the pages sent and skipped, and the estimated tokens.
+     * @throws AIConnectorException if the request is estimated to exceed the token budget.
+     */
+    private ChatRequest buildChatRequest(AIConnection connection, String modelName, SchemaCache.Entry schema,
+                                         int[] pages, boolean chunk, PageReport pageReport)
+            throws AIConnectorException {
+        int requestMaxTokens = autoMaxTokens
+                ? TokenEstimator.suggestMaxTokens(schema.getOutputTokenEstimate(), maxTokens) : maxTokens;
+        ChatRequest chatRequest = new ChatRequest(modelName, requestMaxTokens, schema.getResponseFormatJson());
+        chatRequest.setImageDetail(imageDetail);
+        chatRequest.addMessage(new ChatMessage("system", getBasePrompt()));
+
+        ChatMessage userMessage = new ChatMessage("user");
+        userMessage.addContent(ContentPart.text(AIConstants.USER_PROMPT_TEMPLATE));
+
+        String mimeType = getMimeType();
+        if (mimeType.equals("application/pdf") && chunk) {
+            // the prompt names the pages actually sent, which are not contiguous once pages are selected or pruned
+            ChatMessage pageMessage = new ChatMessage("user");
+            addPdfPages(connection, pageMessage, pages, pageReport);
+            userMessage.addContent(ContentPart.text(String.format(AIConstants.CHUNK_PROMPT_TEMPLATE,
+                    pageReport.sentPages.stream().map(String::valueOf).collect(Collectors.joining(", ")))));
+            for (ContentPart part : pageMessage.getContent()) {
+                userMessage.addContent(part);
+            }
+        } else if (mimeType.equals("application/pdf")) {
+            addPdfPages(connection, userMessage, pages, pageReport);
+        } else if ((mimeType.equals("image/png") || mimeType.equals("image/jpeg") ||
+                   mimeType.equals("image/gif") || mimeType.equals("image/webp"))) {
+            addImage(userMessage, mimeType);
         } else {
+            throw new AIConnectorException("Unsupported file MIME type: " + mimeType);
+        }
+        chatRequest.addMessage(userMessage);
+
+        long estimatedTokens = chatRequest.estimateTokens();
+        pageReport.estimatedTokens += estimatedTokens;
+        if (maxRequestTokens > 0 && estimatedTokens > maxRequestTokens) {
+            throw overBudget(estimatedTokens);
+        }
+        return chatRequest;
+    }
+
+    /**
+     * Adds an uploaded image to the message, normalized if enabled and the format can be decoded.
+     */
+    private void addImage(ChatMessage userMessage, String mimeType) throws AIConnectorException {
+        PageImage image = null;
+        if (imageNormalizer != null) {
+            byte[] imageData = getDocumentData();
+            long normalizeStart = System.nanoTime();
+            image = imageNormalizer.normalize(imageData, mimeType);
+            recordStage(Stage.NORMALIZE, normalizeStart);
+        }
+        if (image == null) {
+            userMessage.addContent(ContentPart.imageUrl(getDataUri()));
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Normalized the " + mimeType + " image of " + getDocumentData().length + " bytes to a " +
+                    image.getWidth() + "x" + image.getHeight() + " " + image.getMimeType() + " image of " +
+                    image.getData().length + " bytes.");
+        }
+        userMessage.addContent(ContentPart.image(image));
+    }
+
+    private AIConnectorException noPagesLeft() {
+        if (extractionMode == ExtractionMode.TEXT) {
+            return new AIConnectorException("The selected pages of the PDF have no text layer. Use the Auto or " +
+                    "Image extraction mode.");
+        }
+        return new AIConnectorException("No page of the document is left to process. Check the selected pages " +
+                pageSelection + ".");
+    }
+
+    private boolean isPdf() throws AIConnectorException {
+        return "application/pdf".equals(getMimeType());
+    }
+
+    private String getMimeType() throws AIConnectorException {
+        if (document != null) {
+            return document.getMimeType();
+        }
+        if (fileMimeType != null) {
+            return fileMimeType.toLowerCase();
+        }
+        if (fileContent == null || !fileContent.toLowerCase().startsWith("data:") || fileContent.indexOf(';') < 0) {
             throw new AIConnectorException("Invalid or missing Base64 data URI string.");
         }
-        messages.add(Map.of("role", "user", "content", userMessageParts));
-        return messages;
+        return fileContent.substring(5, fileContent.indexOf(";")).toLowerCase();
     }
 
-    private Map<String, Object> createImagePart(String dataUri) {
-        return Map.of("type", "image_url", "image_url", Map.of("url", dataUri));
+    private void recordStage(Stage stage, long startNanos) {
+        if (metrics != null) {
+            metrics.recordStage(stage, System.nanoTime() - startNanos);
+        }
     }
-}
 
+    /**
+     * Decodes the Base64 content of the document once and keeps the document for the rest of the request, unless it
+     * was read from a file or stream.
+     */
+    private DocumentContent getDocument() throws AIConnectorException {
+        if (document == null) {
+            String mimeType = getMimeType();
+            long decodeStart = System.nanoTime();
+            try {
+                String base64 = fileMimeType != null ? fileContent
+                        : fileContent.substring(fileContent.indexOf(',') + 1);
+                document = DocumentContent.of(mimeType, Base64.getDecoder().decode(base64));
+                recordStage(Stage.DECODE, decodeStart);
+            } catch (IllegalArgumentException e) {
+                throw new AIConnectorException("Error decoding document: The provided string is not valid Base64.", e);
+            }
+        }
+        return document;
+    }
+
+    /**
+     * Loads the PDF once for the scan. The page count, the page sizes, the text and the first range of every render
+     * come from this document, which the page chunks of the scan take turns to use. Only the further ranges of a
+     * parallel render load their own.
+     */
+    private synchronized PDDocument getPdfDocument() throws AIConnectorException {
+        if (pdfDocument == null) {
+            DocumentContent pdf = getDocument();
+            try {
+                pdfDocument = pdf.loadPdf();
+            } catch (IOException e) {
+                throw new AIConnectorException("Error during I/O operation while reading PDF.", e);
+            }
+        }
+        return pdfDocument;
+    }
+
+    private byte[] getDocumentData() throws AIConnectorException {
+        try {
+            return getDocument().getBytes();
+        } catch (IOException e) {
+            throw new AIConnectorException("Error reading the document.", e);
+        }
+    }
+
+    /**
+     * @return The document as a data URI, built only for documents that were not given as one.
+     */
+    private String getDataUri() throws AIConnectorException {
+        if (document == null && fileMimeType == null) {
+            return fileContent;
+        }
+        String base64 = document == null ? fileContent : Base64.getEncoder().encodeToString(getDocumentData());
+        return "data:" + getMimeType() + ";base64," + base64;
+    }
+
+    /**
+     * Closes the PDF loaded for the scan and deletes the temporary file of a document spooled from a stream. Called
+     * when the request is processed, or by the caller if the request is never processed.
+     */
+    public synchronized void closeDocument() {
+        if (pdfDocument != null) {
+            try {
+                pdfDocument.close();
+            } catch (IOException e) {
+                log.warn("Failed to close the PDF document: " + e.getMessage());
+            }
+            pdfDocument = null;
+        }
+        if (document == null) {
+            return;
+        }
+        try {
+            document.close();
+        } catch (IOException e) {
+            log.warn("Failed to delete the temporary file of the document: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Digest of everything that determines the extraction result, identifying equivalent scans.
+     */
+    private String getFingerprint(String modelName, SchemaCache.Entry schema) throws AIConnectorException {
+        try (InputStream documentStream = getDocument().openStream()) {
+            return ResultCacheKey.compute(documentStream, AIConstants.RESULT_CACHE_KEY_VERSION,
+                    schema.getResponseFormatJson(), modelName,
+                    String.valueOf(maxTokens) + (autoMaxTokens ? "/auto" : ""), getBasePrompt(),
+                    AIConstants.USER_PROMPT_TEMPLATE, AIConstants.PAGE_TEXT_TEMPLATE, AIConstants.PAGE_IMAGE_TEMPLATE,
+                    AIConstants.CHUNK_PROMPT_TEMPLATE, AIConstants.REPAIR_PROMPT_TEMPLATE,
+                    renderProfile.toString(), extractionMode.name(),
+                    String.valueOf(minPageTextLength), pageSelection.toString(), String.valueOf(pagePruner),
+                    String.valueOf(chunkSize), String.valueOf(imageNormalizer), String.valueOf(imageDetail),
+                    validateResult ? "validate/" + repairAttempts : "");
+        } catch (IOException e) {
+            throw new AIConnectorException("Error reading the document.", e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.model.scan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message of a chat completions request.
+ */
+public class ChatMessage {
+
+    private final String role;
+    private final List<ContentPart> content = new ArrayList<>();
+
+    public ChatMessage(String role) {
+        this.role = role;
+    }
+
+    public ChatMessage(String role, String text) {
+        this.role = role;
+        this.content.add(ContentPart.text(text));
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public List<ContentPart> getContent() {
+        return content;
+    }
+
+    public ChatMessage addContent(ContentPart part) {
+        this.content.add(part);
+        return this;
+    }
+}
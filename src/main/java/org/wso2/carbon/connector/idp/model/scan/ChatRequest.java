@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.model.scan;
+
+import org.wso2.carbon.connector.idp.util.TokenEstimator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A chat completions request for extracting a document against a schema. The same request can also be written for
+ * the native chat API of Ollama, which takes the model residency options.
+ */
+public class ChatRequest {
+
+    private String model;
+    private final Integer maxTokens;
+    private final String responseFormatJson;
+    private final List<ChatMessage> messages = new ArrayList<>();
+    private boolean stream = false;
+    private String imageDetail;
+    private boolean ollamaChat = false;
+    private String keepAlive;
+    private int contextLength;
+
+    /**
+     * @param model              Name of the model.
+     * @param maxTokens          Maximum number of tokens to generate.
+     * @param responseFormatJson Serialized response_format of the request.
+     */
+    public ChatRequest(String model, Integer maxTokens, String responseFormatJson) {
+        this.model = model;
+        this.maxTokens = maxTokens;
+        this.responseFormatJson = responseFormatJson;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * @param model Name of the model, set for the engine the request is sent to.
+     */
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public Integer getMaxTokens() {
+        return maxTokens;
+    }
+
+    public String getResponseFormatJson() {
+        return responseFormatJson;
+    }
+
+    public boolean isStream() {
+        return stream;
+    }
+
+    public void setStream(boolean stream) {
+        this.stream = stream;
+    }
+
+    public String getImageDetail() {
+        return imageDetail;
+    }
+
+    /**
+     * @param imageDetail Detail level at which the model looks at the images, low or high, or null for the default.
+     */
+    public void setImageDetail(String imageDetail) {
+        this.imageDetail = imageDetail;
+    }
+
+    public boolean isOllamaChat() {
+        return ollamaChat;
+    }
+
+    /**
+     * @param ollamaChat Whether the request is written for the native chat API of Ollama, set for the engine the
+     *                   request is sent to.
+     */
+    public void setOllamaChat(boolean ollamaChat) {
+        this.ollamaChat = ollamaChat;
+    }
+
+    public String getKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * @param keepAlive How long Ollama keeps the model loaded after the request, or null for the default.
+     */
+    public void setKeepAlive(String keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public int getContextLength() {
+        return contextLength;
+    }
+
+    /**
+     * @param contextLength Context window size in tokens Ollama runs the model with, or 0 for the default.
+     */
+    public void setContextLength(int contextLength) {
+        this.contextLength = contextLength;
+    }
+
+    public List<ChatMessage> getMessages() {
+        return messages;
+    }
+
+    public ChatRequest addMessage(ChatMessage message) {
+        this.messages.add(message);
+        return this;
+    }
+
+    /**
+     * Estimates the number of tokens the request uses, for rate limiting and the token budget: the prompt, and the
+     * completion at its maximum.
+     *
+     * @return Estimated number of tokens.
+     */
+    public long estimateTokens() {
+        return TokenEstimator.estimateInputTokens(this) + (maxTokens != null ? maxTokens : 0);
+    }
+}
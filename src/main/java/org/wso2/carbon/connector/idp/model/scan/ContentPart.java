@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.model.scan;
+
+/**
+ * A part of the content of a chat message: either text or an image. Images are held either as an already encoded
+ * data URI or as the raw bytes of a rendered page, which are Base64 encoded only while the request is written.
+ */
+public class ContentPart {
+
+    private final String text;
+    private final String imageUrl;
+    private final PageImage pageImage;
+
+    private ContentPart(String text, String imageUrl, PageImage pageImage) {
+        this.text = text;
+        this.imageUrl = imageUrl;
+        this.pageImage = pageImage;
+    }
+
+    public static ContentPart text(String text) {
+        return new ContentPart(text, null, null);
+    }
+
+    public static ContentPart imageUrl(String imageUrl) {
+        return new ContentPart(null, imageUrl, null);
+    }
+
+    public static ContentPart image(PageImage pageImage) {
+        return new ContentPart(null, null, pageImage);
+    }
+
+    public boolean isText() {
+        return text != null;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public PageImage getPageImage() {
+        return pageImage;
+    }
+}
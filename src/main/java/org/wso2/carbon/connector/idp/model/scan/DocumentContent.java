@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.model.scan;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The decoded content of a document, held either in memory or in a file. Documents given as a string are decoded
+ * into memory, documents given by path are read from their file, and documents read from a stream are spooled to a
+ * temporary file once they outgrow the memory threshold. PDFs in a file are loaded through a buffered random-access
+ * reader with a temporary file scratch cache, so a large scan is never held in memory as a whole.
+ */
+public class DocumentContent implements Closeable {
+
+    private static final String TEMP_FILE_PREFIX = "idp-document-";
+
+    private final String mimeType;
+    private final byte[] data;
+    private final Path file;
+    private final boolean temporary;
+
+    private DocumentContent(String mimeType, byte[] data, Path file, boolean temporary) {
+        this.mimeType = mimeType;
+        this.data = data;
+        this.file = file;
+        this.temporary = temporary;
+    }
+
+    /**
+     * @param mimeType MIME type of the document.
+     * @param data     Decoded content of the document.
+     * @return The document held in memory.
+     */
+    public static DocumentContent of(String mimeType, byte[] data) {
+        return new DocumentContent(mimeType, data, null, false);
+    }
+
+    /**
+     * @param mimeType MIME type of the document.
+     * @param file     File of the document, which is read when needed and never deleted.
+     * @return The document held in the file.
+     */
+    public static DocumentContent ofFile(String mimeType, Path file) {
+        return new DocumentContent(mimeType, null, file, false);
+    }
+
+    /**
+     * Reads a document from a stream, keeping it in memory if it is no larger than the threshold and in a
+     * temporary file otherwise. The temporary file is deleted when the document is closed. The stream is not closed.
+     *
+     * @param mimeType        MIME type of the document.
+     * @param in              Stream of the document.
+     * @param memoryThreshold Maximum size in bytes of a document held in memory.
+     * @return The document.
+     * @throws IOException if reading the stream or writing the temporary file fails.
+     */
+    public static DocumentContent spool(String mimeType, InputStream in, int memoryThreshold) throws IOException {
+        byte[] head = new byte[memoryThreshold + 1];
+        int headLength = in.readNBytes(head, 0, head.length);
+        if (headLength <= memoryThreshold) {
+            return of(mimeType, Arrays.copyOf(head, headLength));
+        }
+        Path file = Files.createTempFile(TEMP_FILE_PREFIX, null);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(head, 0, headLength);
+            in.transferTo(out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return new DocumentContent(mimeType, null, file, true);
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * @return Size of the document in bytes.
+     * @throws IOException if the size of the file cannot be read.
+     */
+    public long getSize() throws IOException {
+        return data != null ? data.length : Files.size(file);
+    }
+
+    /**
+     * @return The content of the document, read from its file if it is not held in memory.
+     * @throws IOException if reading the file fails.
+     */
+    public byte[] getBytes() throws IOException {
+        return data != null ? data : Files.readAllBytes(file);
+    }
+
+    /**
+     * @return A new stream of the content of the document.
+     * @throws IOException if the file cannot be opened.
+     */
+    public InputStream openStream() throws IOException {
+        return data != null ? new ByteArrayInputStream(data) : Files.newInputStream(file);
+    }
+
+    /**
+     * Loads the document as a PDF. Each call returns a new PDDocument, so that page ranges can be rendered on
+     * separate threads.
+     *
+     * @return The loaded PDF, to be closed by the caller.
+     * @throws IOException if the document is not a readable PDF.
+     */
+    public PDDocument loadPdf() throws IOException {
+        if (data != null) {
+            return Loader.loadPDF(data);
+        }
+        // read through a buffered random-access file reader instead of loading the file into memory
+        return Loader.loadPDF(file.toFile(), IOUtils.createTempFileOnlyStreamCache());
+    }
+
+    /**
+     * Deletes the temporary file the document was spooled to, if any.
+     */
+    @Override
+    public void close() throws IOException {
+        if (temporary) {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.model.scan;
+
+/**
+ * How the pages of a PDF are sent to the LLM.
+ */
+public enum ExtractionMode {
+
+    /**
+     * Pages with an embedded text layer are sent as text, the other pages as rendered images.
+     */
+    AUTO,
+
+    /**
+     * Only the embedded text layer is sent. Pages without text are left out.
+     */
+    TEXT,
+
+    /**
+     * Every page is sent as a rendered image.
+     */
+    IMAGE;
+
+    /**
+     * @param value Name of the mode, case insensitive.
+     * @return The extraction mode, or null if there is no mode with the given name.
+     */
+    public static ExtractionMode fromString(String value) {
+        for (ExtractionMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(value.trim())) {
+                return mode;
+            }
+        }
+        return null;
+    }
+}
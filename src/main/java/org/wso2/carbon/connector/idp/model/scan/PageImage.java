@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.model.scan;
+
+import java.util.Base64;
+
+/**
+ * An encoded image of a document page, ready to be attached to an LLM request.
+ */
+public class PageImage {
+
+    private final int pageNumber;
+    private final String mimeType;
+    private final byte[] data;
+    private final int width;
+    private final int height;
+    private final PageSignature signature;
+
+    public PageImage(int pageNumber, String mimeType, byte[] data) {
+        this(pageNumber, mimeType, data, 0, 0, null);
+    }
+
+    public PageImage(int pageNumber, String mimeType, byte[] data, int width, int height, PageSignature signature) {
+        this.pageNumber = pageNumber;
+        this.mimeType = mimeType;
+        this.data = data;
+        this.width = width;
+        this.height = height;
+        this.signature = signature;
+    }
+
+    /**
+     * @return 1-based number of the page in the source document.
+     */
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return Width of the image in pixels, or 0 if unknown.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return Height of the image in pixels, or 0 if unknown.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return Signature of the rendered page, or null if the page was not analysed.
+     */
+    public PageSignature getSignature() {
+        return signature;
+    }
+
+    public String toBase64() {
+        return Base64.getEncoder().encodeToString(data);
+    }
+
+    public String toDataUri() {
+        return "data:" + mimeType + ";base64," + toBase64();
+    }
+}
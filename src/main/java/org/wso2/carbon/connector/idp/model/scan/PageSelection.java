@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.model.scan;
+
+import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Pages of a document to process, given as a comma separated list of page numbers and ranges such as
+ * {@code 1-3,5,last}. Page numbers start from 1 and {@code last} stands for the last page, so {@code 2-last} selects
+ * every page but the first. Pages beyond the end of the document are ignored.
+ */
+public class PageSelection {
+
+    private static final String LAST = "last";
+    private static final PageSelection ALL = new PageSelection("1-last", new ArrayList<>());
+
+    private final String expression;
+    private final List<int[]> ranges;
+
+    private PageSelection(String expression, List<int[]> ranges) {
+        this.expression = expression;
+        this.ranges = ranges;
+    }
+
+    /**
+     * @return Selection of every page.
+     */
+    public static PageSelection all() {
+        return ALL;
+    }
+
+    /**
+     * Parses a page selection.
+     *
+     * @param expression Comma separated page numbers and ranges.
+     * @return PageSelection.
+     * @throws AIConnectorException if the expression is not valid.
+     */
+    public static PageSelection parse(String expression) throws AIConnectorException {
+        if (expression == null || expression.isBlank()) {
+            return ALL;
+        }
+        List<int[]> ranges = new ArrayList<>();
+        for (String part : expression.split(",")) {
+            String[] bounds = part.trim().split("-", -1);
+            if (bounds.length > 2) {
+                throw new AIConnectorException("Invalid pages: " + expression + ". Expected page numbers and " +
+                        "ranges such as 1-3,5,last.");
+            }
+            int from = parsePage(bounds[0], expression);
+            int to = bounds.length == 2 ? parsePage(bounds[1], expression) : from;
+            ranges.add(new int[]{from, to});
+        }
+        return new PageSelection(expression.replaceAll("\\s", ""), ranges);
+    }
+
+    /**
+     * @return true if every page is selected.
+     */
+    public boolean isAll() {
+        return this == ALL;
+    }
+
+    /**
+     * Resolves the selection against a document.
+     *
+     * @param pageCount Number of pages of the document.
+     * @return Zero-based indexes of the selected pages, in ascending order.
+     */
+    public int[] resolve(int pageCount) {
+        TreeSet<Integer> pages = new TreeSet<>();
+        if (isAll()) {
+            for (int page = 0; page < pageCount; page++) {
+                pages.add(page);
+            }
+        }
+        for (int[] range : ranges) {
+            int from = range[0] == 0 ? pageCount : range[0];
+            int to = range[1] == 0 ? pageCount : range[1];
+            // last is page 0 of a document without pages, which selects nothing
+            for (int page = Math.max(Math.min(from, to), 1); page <= Math.min(Math.max(from, to), pageCount);
+                 page++) {
+                pages.add(page - 1);
+            }
+        }
+        return pages.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return 1-based page number, or 0 for the last page.
+     */
+    private static int parsePage(String page, String expression) throws AIConnectorException {
+        String value = page.trim();
+        if (LAST.equalsIgnoreCase(value)) {
+            return 0;
+        }
+        try {
+            int pageNumber = Integer.parseInt(value);
+            if (pageNumber > 0) {
+                return pageNumber;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new AIConnectorException("Invalid pages: " + expression + ". Page numbers start from 1.");
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
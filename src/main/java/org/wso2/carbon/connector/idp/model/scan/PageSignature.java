@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.model.scan;
+
+/**
+ * Visual summary of a rendered page, used to recognise blank and repeated pages without comparing the images.
+ */
+public class PageSignature {
+
+    private final double inkCoverage;
+    private final long[] hash;
+
+    /**
+     * @param inkCoverage Fraction of the page, from 0 to 1, covered by dark pixels.
+     * @param hash        Difference hash of the page.
+     */
+    public PageSignature(double inkCoverage, long[] hash) {
+        this.inkCoverage = inkCoverage;
+        this.hash = hash;
+    }
+
+    public double getInkCoverage() {
+        return inkCoverage;
+    }
+
+    /**
+     * @param other Signature of another page.
+     * @return Number of hash bits that differ between the two pages.
+     */
+    public int distanceTo(PageSignature other) {
+        int distance = 0;
+        for (int i = 0; i < hash.length; i++) {
+            distance += Long.bitCount(hash[i] ^ other.hash[i]);
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.model.scan;
+
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.wso2.carbon.connector.idp.constants.AIConstants;
+
+/**
+ * Describes how PDF pages are rasterized and encoded before they are sent to the LLM.
+ */
+public class RenderProfile {
+
+    private static final float POINTS_PER_INCH = 72f;
+    private static final float MIN_DPI = 36f;
+
+    public enum ColorMode {
+        RGB(ImageType.RGB),
+        GRAY(ImageType.GRAY),
+        BINARY(ImageType.BINARY);
+
+        private final ImageType imageType;
+
+        ColorMode(ImageType imageType) {
+            this.imageType = imageType;
+        }
+
+        public ImageType getImageType() {
+            return imageType;
+        }
+    }
+
+    public enum ImageFormat {
+        PNG("png", "image/png"),
+        JPEG("jpeg", "image/jpeg");
+
+        private final String formatName;
+        private final String mimeType;
+
+        ImageFormat(String formatName, String mimeType) {
+            this.formatName = formatName;
+            this.mimeType = mimeType;
+        }
+
+        public String getFormatName() {
+            return formatName;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+    }
+
+    private final boolean auto;
+    private final int dpi;
+    private final int maxImageDimension;
+    private final ColorMode colorMode;
+    private final ImageFormat imageFormat;
+    private final int imageQuality;
+
+    private RenderProfile(boolean auto, int dpi, int maxImageDimension, ColorMode colorMode,
+                          ImageFormat imageFormat, int imageQuality) {
+        this.auto = auto;
+        this.dpi = dpi;
+        this.maxImageDimension = maxImageDimension;
+        this.colorMode = colorMode;
+        // JPEG has no 1-bit colour model, and 1-bit PNG images are already compact
+        this.imageFormat = colorMode == ColorMode.BINARY ? ImageFormat.PNG : imageFormat;
+        this.imageQuality = imageQuality;
+    }
+
+    /**
+     * The profile used before render profiles were introduced: 300 DPI, RGB, lossless PNG.
+     *
+     * @return Default render profile.
+     */
+    public static RenderProfile defaultProfile() {
+        return new RenderProfile(false, AIConstants.IMAGE_DPI_DEFAULT, 0, ColorMode.RGB, ImageFormat.PNG,
+                AIConstants.IMAGE_QUALITY_DEFAULT);
+    }
+
+    /**
+     * A profile that lowers the DPI of each page so that its longest side fits within the given number of pixels,
+     * which is the largest image the target model uses without downsampling, and encodes the pages as JPEG.
+     *
+     * @param maxImageDimension Maximum width or height of a page image in pixels.
+     * @return Auto render profile.
+     */
+    public static RenderProfile autoProfile(int maxImageDimension) {
+        return new RenderProfile(true, AIConstants.IMAGE_DPI_DEFAULT, maxImageDimension, ColorMode.RGB,
+                ImageFormat.JPEG, AIConstants.IMAGE_QUALITY_DEFAULT);
+    }
+
+    public static RenderProfile customProfile(int dpi, ColorMode colorMode, ImageFormat imageFormat,
+                                              int imageQuality) {
+        return new RenderProfile(false, dpi, 0, colorMode, imageFormat, imageQuality);
+    }
+
+    /**
+     * Returns the DPI to render the given page with.
+     *
+     * @param page Page to render.
+     * @return Rendering DPI.
+     */
+    public float getDpi(PDPage page) {
+        if (!auto) {
+            return dpi;
+        }
+        PDRectangle cropBox = page.getCropBox();
+        float longestSideInches = Math.max(cropBox.getWidth(), cropBox.getHeight()) / POINTS_PER_INCH;
+        if (longestSideInches <= 0) {
+            return dpi;
+        }
+        return Math.max(MIN_DPI, Math.min(dpi, maxImageDimension / longestSideInches));
+    }
+
+    public boolean isAuto() {
+        return auto;
+    }
+
+    public int getMaxImageDimension() {
+        return maxImageDimension;
+    }
+
+    public ColorMode getColorMode() {
+        return colorMode;
+    }
+
+    public ImageFormat getImageFormat() {
+        return imageFormat;
+    }
+
+    public int getImageQuality() {
+        return imageQuality;
+    }
+
+    @Override
+    public String toString() {
+        return "RenderProfile{auto=" + auto + ", dpi=" + dpi + ", maxImageDimension=" + maxImageDimension +
+                ", colorMode=" + colorMode + ", imageFormat=" + imageFormat + ", imageQuality=" + imageQuality + "}";
+    }
+}
@@ -18,18 +18,34 @@ package org.wso2.carbon.connector.idp.util;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
-import org.apache.pdfbox.Loader;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMNode;
+import org.apache.axiom.om.OMText;
+import org.apache.axiom.soap.SOAPEnvelope;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.rendering.ImageType;
 import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.synapse.MessageContext;
 import org.wso2.integration.connector.core.util.ConnectorUtils;
 import org.wso2.carbon.connector.idp.constants.AIConstants;
 import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+import org.wso2.carbon.connector.idp.metrics.ScanMetrics;
+import org.wso2.carbon.connector.idp.metrics.Stage;
+import org.wso2.carbon.connector.idp.model.scan.AIBatchScannerAgentModel;
 import org.wso2.carbon.connector.idp.model.scan.AIScannerAgentModel;
+import org.wso2.carbon.connector.idp.model.scan.DocumentContent;
+import org.wso2.carbon.connector.idp.model.scan.ExtractionMode;
+import org.wso2.carbon.connector.idp.model.scan.PageImage;
+import org.wso2.carbon.connector.idp.model.scan.PageSelection;
+import org.wso2.carbon.connector.idp.model.scan.PageSignature;
+import org.wso2.carbon.connector.idp.model.scan.RenderProfile;
 import org.wso2.micro.integrator.registry.MicroIntegratorRegistry;
 import org.wso2.micro.integrator.registry.Resource;
 
+import com.google.gson.JsonElement;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
@@ -39,11 +55,26 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import javax.activation.DataHandler;
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
 
 
 public class AIUtils {
@@ -81,18 +112,8 @@ public class AIUtils {
         if (!schemaPath.isEmpty()) {
             try {
                 MicroIntegratorRegistry registry = new MicroIntegratorRegistry();
-                String jsonPath_1 = AIConstants.REGISTRY_PATH + schemaPath + "/" + schemaPath + ".json";
-                String jsonPath_2 = AIConstants.REGISTRY_PATH_BELOW_4_4_0 + schemaPath + "/" + schemaPath + ".json"; // for backward compatibility
-
-                if (registry.isResourceExists(jsonPath_1)) {
-                    Resource resource = registry.getResource(jsonPath_1);
-                    return resource.getContentStream();
-                } else if (registry.isResourceExists(jsonPath_2)) {
-                    Resource resource = registry.getResource(jsonPath_2);
-                    return resource.getContentStream();
-                } else {
-                    throw new AIConnectorException("Schema not found in the registry: " + schemaPath);
-                }
+                Resource resource = registry.getResource(resolveSchemaResourcePath(registry, schemaPath));
+                return resource.getContentStream();
             } catch (IOException e) {
                 throw new AIConnectorException("Error while reading schema from registry", e);
             }
@@ -100,6 +121,30 @@ public class AIUtils {
         return null;
     }
 
+    /**
+     * Resolves the registry resource path of a schema, checking the current location first and then the
+     * location used by MI versions below 4.4.0.
+     *
+     * @param registry   Registry to look up.
+     * @param schemaPath Registry Path of the Schema
+     * @return Registry resource path of the schema JSON file.
+     * @throws AIConnectorException if the schema is not found in the registry.
+     */
+    public static String resolveSchemaResourcePath(MicroIntegratorRegistry registry, String schemaPath)
+            throws AIConnectorException {
+        String jsonPath_1 = AIConstants.REGISTRY_PATH + schemaPath + "/" + schemaPath + ".json";
+        // for backward compatibility
+        String jsonPath_2 = AIConstants.REGISTRY_PATH_BELOW_4_4_0 + schemaPath + "/" + schemaPath + ".json";
+
+        if (registry.isResourceExists(jsonPath_1)) {
+            return jsonPath_1;
+        } else if (registry.isResourceExists(jsonPath_2)) {
+            return jsonPath_2;
+        } else {
+            throw new AIConnectorException("Schema not found in the registry: " + schemaPath);
+        }
+    }
+
     /**
      * Converts a Base64 encoded PDF string into a List of Base64 encoded PNG image strings.
      *
@@ -109,33 +154,298 @@ public class AIUtils {
      */
     public static List<String> pdfToImage(String base64Pdf) throws AIConnectorException {
         List<String> encodedImages = new ArrayList<>();
+        for (PageImage pageImage : pdfToImage(base64Pdf, RenderProfile.defaultProfile(), null, 1)) {
+            encodedImages.add(pageImage.toBase64());
+        }
+        return encodedImages;
+    }
 
+    /**
+     * Converts a Base64 encoded PDF string into a List of page images encoded as described by the render profile,
+     * rendering up to the given number of page ranges in parallel. PDFBox documents are not thread safe, so each
+     * further range is rendered from its own PDDocument; the first range is rendered on the calling thread with the
+     * document that was already loaded. The returned images are always in page order.
+     *
+     * @param base64Pdf      Content of the PDF in Base64.
+     * @param renderProfile  DPI, colour mode and image format to render the pages with.
+     * @param renderExecutor Executor to render the page ranges on, or null to render sequentially.
+     * @param parallelism    Maximum number of page ranges of this document rendered at the same time.
+     * @return A List of page images in page order.
+     * @throws AIConnectorException if there is an error reading or converting the PDF data.
+     */
+    public static List<PageImage> pdfToImage(String base64Pdf, RenderProfile renderProfile,
+                                             ExecutorService renderExecutor, int parallelism)
+            throws AIConnectorException {
+        final byte[] pdfData;
         try {
-            final byte[] pdfData = Base64.getDecoder().decode(base64Pdf);
-            try (PDDocument document = Loader.loadPDF(pdfData)) {
-                PDFRenderer pdfRenderer = new PDFRenderer(document);
-                for (int page = 0; page < document.getNumberOfPages(); ++page) {
-                    BufferedImage bufferedImage = pdfRenderer.renderImageWithDPI(page, 300, ImageType.RGB);
-                    try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-                        ImageIO.write(bufferedImage, "png", baos); 
-                        String base64Image = Base64.getEncoder().encodeToString(baos.toByteArray());
-                        encodedImages.add(base64Image);
-                    }
-                }
-            } 
-            return encodedImages;
+            pdfData = Base64.getDecoder().decode(base64Pdf);
         } catch (IllegalArgumentException e) {
             throw new AIConnectorException("Error converting PDF: The provided string is not valid Base64.", e);
+        }
+        return pdfToImage(pdfData, renderProfile, renderExecutor, parallelism);
+    }
+
+    /**
+     * Converts the bytes of a PDF into a List of page images, as described in
+     * {@link #pdfToImage(String, RenderProfile, ExecutorService, int)}.
+     *
+     * @param pdfData        Content of the PDF.
+     * @param renderProfile  DPI, colour mode and image format to render the pages with.
+     * @param renderExecutor Executor to render the page ranges on, or null to render sequentially.
+     * @param parallelism    Maximum number of page ranges of this document rendered at the same time.
+     * @return A List of page images in page order.
+     * @throws AIConnectorException if there is an error reading or converting the PDF data.
+     */
+    public static List<PageImage> pdfToImage(byte[] pdfData, RenderProfile renderProfile,
+                                             ExecutorService renderExecutor, int parallelism)
+            throws AIConnectorException {
+        DocumentContent pdf = DocumentContent.of("application/pdf", pdfData);
+        try (PDDocument document = pdf.loadPdf()) {
+            return pdfToImage(pdf, document, null, renderProfile, renderExecutor, parallelism, false, null);
         } catch (IOException e) {
             throw new AIConnectorException("Error during I/O operation while converting PDF to image.", e);
         }
     }
 
+    /**
+     * Renders the given pages of a PDF. See {@link #pdfToImage(String, RenderProfile, ExecutorService, int)}.
+     * The loaded document may be shared by the threads of a scan, so it is only used by one of them at a time.
+     * Threads that render the pages of the same PDF concurrently, such as the page chunks of a scan, should pass no
+     * document, so that each of them renders with a document of its own instead of waiting for the shared one.
+     *
+     * @param pdf            The PDF, in memory or in a file, from which the ranges load their documents.
+     * @param document       The PDF loaded from it, which renders the first range and is not closed, or null to load
+     *                       a document for the first range too.
+     * @param pageIndexes    Zero-based indexes of the pages to render in ascending order, or null for all pages of
+     *                       the given document.
+     * @param renderProfile  DPI, colour mode and image format to render the pages with.
+     * @param renderExecutor Executor to render the page ranges on, or null to render sequentially.
+     * @param parallelism    Maximum number of page ranges of this document rendered at the same time.
+     * @param analyzePages   Whether to compute the {@link PageSignature} of each page for pruning.
+     * @param metrics        Metrics to record the rendering and encoding of each page in, or null.
+     * @return A List of page images in page order.
+     * @throws AIConnectorException if there is an error reading or converting the PDF data.
+     */
+    public static List<PageImage> pdfToImage(DocumentContent pdf, PDDocument document, int[] pageIndexes,
+                                             RenderProfile renderProfile, ExecutorService renderExecutor,
+                                             int parallelism, boolean analyzePages, ScanMetrics metrics)
+            throws AIConnectorException {
+        List<Future<List<PageImage>>> pendingRanges = new ArrayList<>();
+        try {
+            int[] pages = pageIndexes != null ? pageIndexes
+                    : IntStream.range(0, getPdfPageCount(document)).toArray();
+            int pageCount = pages.length;
+            if (pageCount == 0) {
+                return new ArrayList<>();
+            }
+            int rangeCount = renderExecutor == null ? 1 : Math.max(1, Math.min(parallelism, pageCount));
+            int rangeSize = Math.max(1, (pageCount + rangeCount - 1) / rangeCount);
+            for (int start = rangeSize; start < pageCount; start += rangeSize) {
+                final int from = start;
+                final int to = Math.min(start + rangeSize, pageCount);
+                pendingRanges.add(renderExecutor.submit(() -> {
+                    try (PDDocument rangeDocument = pdf.loadPdf()) {
+                        return renderPages(rangeDocument, pages, from, to, renderProfile, analyzePages, metrics);
+                    }
+                }));
+            }
+            List<PageImage> pageImages;
+            int firstRangeEnd = Math.min(rangeSize, pageCount);
+            if (document != null) {
+                synchronized (document) {
+                    pageImages = renderPages(document, pages, 0, firstRangeEnd, renderProfile, analyzePages,
+                            metrics);
+                }
+            } else {
+                try (PDDocument rangeDocument = pdf.loadPdf()) {
+                    pageImages = renderPages(rangeDocument, pages, 0, firstRangeEnd, renderProfile, analyzePages,
+                            metrics);
+                }
+            }
+            for (Future<List<PageImage>> pendingRange : pendingRanges) {
+                pageImages.addAll(pendingRange.get());
+            }
+            return pageImages;
+        } catch (IOException e) {
+            throw new AIConnectorException("Error during I/O operation while converting PDF to image.", e);
+        } catch (ExecutionException e) {
+            throw new AIConnectorException("Error during I/O operation while converting PDF to image.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AIConnectorException("Interrupted while converting PDF to image.", e);
+        } finally {
+            for (Future<List<PageImage>> pendingRange : pendingRanges) {
+                pendingRange.cancel(true);
+            }
+        }
+    }
+
+    private static List<PageImage> renderPages(PDDocument document, int[] pages, int from, int to,
+                                               RenderProfile renderProfile, boolean analyzePages,
+                                               ScanMetrics metrics) throws IOException {
+        List<PageImage> pageImages = new ArrayList<>();
+        PDFRenderer pdfRenderer = new PDFRenderer(document);
+        for (int i = from; i < to; ++i) {
+            int page = pages[i];
+            float dpi = renderProfile.getDpi(document.getPage(page));
+            long renderStart = System.nanoTime();
+            BufferedImage bufferedImage =
+                    pdfRenderer.renderImageWithDPI(page, dpi, renderProfile.getColorMode().getImageType());
+            long encodeStart = System.nanoTime();
+            byte[] imageData = encodeImage(bufferedImage, renderProfile.getImageFormat(),
+                    renderProfile.getImageQuality());
+            if (metrics != null) {
+                metrics.recordStage(Stage.RENDER, encodeStart - renderStart);
+                metrics.recordStage(Stage.ENCODE, System.nanoTime() - encodeStart);
+                metrics.recordPagesRendered(1);
+            }
+            pageImages.add(new PageImage(page + 1, renderProfile.getImageFormat().getMimeType(), imageData,
+                    bufferedImage.getWidth(), bufferedImage.getHeight(),
+                    analyzePages ? PagePruner.analyze(bufferedImage) : null));
+        }
+        return pageImages;
+    }
+
+    /**
+     * @param document The loaded PDF.
+     * @return Number of pages of the PDF.
+     */
+    public static int getPdfPageCount(PDDocument document) {
+        synchronized (document) {
+            return document.getNumberOfPages();
+        }
+    }
+
+    /**
+     * Computes the size in pixels the given pages would have when rendered, without rendering them.
+     *
+     * @param document      The loaded PDF.
+     * @param pageIndexes   Zero-based indexes of the pages, or null for all pages.
+     * @param renderProfile DPI to render the pages with.
+     * @return Width and height of each page.
+     */
+    public static List<int[]> getPdfPageSizes(PDDocument document, int[] pageIndexes, RenderProfile renderProfile) {
+        synchronized (document) {
+            int[] pages = pageIndexes != null ? pageIndexes
+                    : IntStream.range(0, document.getNumberOfPages()).toArray();
+            List<int[]> pageSizes = new ArrayList<>();
+            for (int page : pages) {
+                PDPage pdPage = document.getPage(page);
+                float scale = renderProfile.getDpi(pdPage) / 72f;
+                PDRectangle cropBox = pdPage.getCropBox();
+                int width = Math.round(cropBox.getWidth() * scale);
+                int height = Math.round(cropBox.getHeight() * scale);
+                pageSizes.add(pdPage.getRotation() % 180 == 0 ? new int[]{width, height} : new int[]{height, width});
+            }
+            return pageSizes;
+        }
+    }
+
+    /**
+     * Extracts the embedded text layer of each page of a PDF, with the text ordered by its position on the page.
+     * A page counts as having text when it has at least {@code minPageTextLength} non-whitespace characters and
+     * those are mostly readable, which leaves out scanned pages and fonts without a Unicode mapping.
+     *
+     * @param document          The loaded PDF.
+     * @param pageIndexes       Zero-based indexes of the pages to extract.
+     * @param minPageTextLength Minimum number of non-whitespace characters of a text page.
+     * @return The text of each of the given pages, in the order of the indexes, with null for pages without text.
+     * @throws AIConnectorException if the PDF cannot be read.
+     */
+    public static String[] extractPdfText(PDDocument document, int[] pageIndexes, int minPageTextLength)
+            throws AIConnectorException {
+        try {
+            synchronized (document) {
+                String[] pageTexts = new String[pageIndexes.length];
+                PDFTextStripper textStripper = new PDFTextStripper();
+                textStripper.setSortByPosition(true);
+                textStripper.setAddMoreFormatting(true);
+                for (int i = 0; i < pageIndexes.length; i++) {
+                    textStripper.setStartPage(pageIndexes[i] + 1);
+                    textStripper.setEndPage(pageIndexes[i] + 1);
+                    String text = textStripper.getText(document);
+                    if (isReadableText(text, minPageTextLength)) {
+                        pageTexts[i] = text.trim();
+                    }
+                }
+                return pageTexts;
+            }
+        } catch (IOException e) {
+            throw new AIConnectorException("Error during I/O operation while extracting text from PDF.", e);
+        }
+    }
+
+    private static boolean isReadableText(String text, int minLength) {
+        if (text == null) {
+            return false;
+        }
+        int characters = 0;
+        int unmapped = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            characters++;
+            if (c == '\uFFFD' || Character.isISOControl(c)) {
+                unmapped++;
+            }
+        }
+        return characters >= minLength && unmapped * 10 < characters;
+    }
+
+    /**
+     * Encodes an image in the given format. The quality is applied to lossy formats only.
+     *
+     * @param image        Image to encode.
+     * @param imageFormat  Output format.
+     * @param imageQuality Quality of lossy formats, from 1 to 100.
+     * @return Encoded image bytes.
+     * @throws IOException if the image cannot be encoded.
+     */
+    public static byte[] encodeImage(BufferedImage image, RenderProfile.ImageFormat imageFormat, int imageQuality)
+            throws IOException {
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            if (imageFormat == RenderProfile.ImageFormat.JPEG) {
+                ImageWriter writer = ImageIO.getImageWritersByFormatName(imageFormat.getFormatName()).next();
+                ImageWriteParam writeParam = writer.getDefaultWriteParam();
+                writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                writeParam.setCompressionQuality(imageQuality / 100f);
+                try (ImageOutputStream ios = ImageIO.createImageOutputStream(baos)) {
+                    writer.setOutput(ios);
+                    writer.write(null, new IIOImage(image, null, null), writeParam);
+                } finally {
+                    writer.dispose();
+                }
+            } else {
+                ImageIO.write(image, imageFormat.getFormatName(), baos);
+            }
+            return baos.toByteArray();
+        }
+    }
+
     public static JsonObject getSchemaContentAsJsonObject(String schemaRegistryPath) throws AIConnectorException {
         try (InputStream schemaStream = getSchemaFromRegistry(schemaRegistryPath)) { 
-            if (schemaStream == null) {
-                throw new AIConnectorException("Could not find or open schema at path: " + schemaRegistryPath);
-            }
+            return parseSchema(schemaStream, schemaRegistryPath);
+        } catch (IOException e) {
+            throw new AIConnectorException("Error reading content from the schema stream", e);
+        }
+    }
+
+    /**
+     * Parses the content of a schema stream into a JsonObject.
+     *
+     * @param schemaStream       Stream of the schema content.
+     * @param schemaRegistryPath Registry Path of the Schema, used in error messages.
+     * @return Parsed schema.
+     * @throws AIConnectorException if the stream is missing or does not hold a JSON object.
+     */
+    public static JsonObject parseSchema(InputStream schemaStream, String schemaRegistryPath)
+            throws AIConnectorException {
+        if (schemaStream == null) {
+            throw new AIConnectorException("Could not find or open schema at path: " + schemaRegistryPath);
+        }
+        try {
             String schemaContent = IOUtils.toString(schemaStream, String.valueOf(StandardCharsets.UTF_8));
             return JsonParser.parseString(schemaContent).getAsJsonObject();
         } catch (IOException e) {
@@ -143,19 +453,22 @@ public class AIUtils {
         } catch (JsonSyntaxException e) {
             throw new AIConnectorException("Invalid JSON format in schema at path: " + schemaRegistryPath, e);
         } catch (IllegalStateException e) {
-            throw new AIConnectorException("Schema content is not a valid JSON object at path: " + schemaRegistryPath, e);
+            throw new AIConnectorException("Schema content is not a valid JSON object at path: "
+                    + schemaRegistryPath, e);
         }
     }
 
-    public static String constructDataUriIfBase64(String fileContent, String mimeType, String contentFormat) {
-        if (contentFormat != null && contentFormat.trim().equalsIgnoreCase("base64")
-                && StringUtils.isNotBlank(fileContent) && StringUtils.isNotBlank(mimeType)) {
-            return "data:" + mimeType + ";base64," + fileContent;
-        }
-        return fileContent;
-    }
-
-    public static AIScannerAgentModel getAIScannerAgent(MessageContext mc) throws AIConnectorException {
+    /**
+     * Builds the agent of the processDocuments operation.
+     *
+     * @param mc                    MessageContext.
+     * @param documentBaseDirectory Directory that a document given by path must be in, or null if documents cannot
+     *                              be given by path.
+     * @return AIScannerAgentModel.
+     * @throws AIConnectorException if a parameter has an invalid value or the document cannot be read.
+     */
+    public static AIScannerAgentModel getAIScannerAgent(MessageContext mc, String documentBaseDirectory)
+            throws AIConnectorException {
         AIScannerAgentModel agent = new AIScannerAgentModel();
 
         Integer maxTokens = getIntegerParam(mc, AIConstants.MAX_TOKENS).orElse(AIConstants.MAX_TOKENS_DEFAULT);
@@ -164,19 +477,422 @@ public class AIUtils {
         String mimeType = getStringParam(mc, AIConstants.MIME_TYPE).orElse("");
         String contentFormat = getStringParam(mc, AIConstants.CONTENT_FORMAT).orElse("");
 
-        fileContent = constructDataUriIfBase64(fileContent, mimeType, contentFormat);
-        agent.setFileContent(fileContent);
-
         if (!(maxTokens > 0)) {
             throw new AIConnectorException("Invalid number of tokens.");
         }
 
         agent.setMaxTokens(maxTokens);
+        agent.setAutoMaxTokens(Boolean.parseBoolean(getStringParam(mc, AIConstants.AUTO_MAX_TOKENS).orElse("false")));
+        int maxRequestTokens = getIntegerParam(mc, AIConstants.MAX_REQUEST_TOKENS)
+                .orElse(AIConstants.MAX_REQUEST_TOKENS_DEFAULT);
+        if (maxRequestTokens < 0) {
+            throw new AIConnectorException("Invalid maxRequestTokens: " + maxRequestTokens +
+                    ". It must not be negative.");
+        }
+        agent.setMaxRequestTokens(maxRequestTokens);
         agent.setSchemaRegistryPath(schemaFile);
+        agent.setRenderProfile(getRenderProfile(mc));
+        String extractionMode = getStringParam(mc, AIConstants.EXTRACTION_MODE)
+                .orElse(AIConstants.EXTRACTION_MODE_DEFAULT);
+        agent.setExtractionMode(Optional.ofNullable(ExtractionMode.fromString(extractionMode)).orElseThrow(() ->
+                new AIConnectorException("Invalid extractionMode: " + extractionMode + ". Supported values are: " +
+                        "Auto, Text, Image")));
+        int minPageTextLength = getIntegerParam(mc, AIConstants.MIN_PAGE_TEXT_LENGTH)
+                .orElse(AIConstants.MIN_PAGE_TEXT_LENGTH_DEFAULT);
+        if (minPageTextLength <= 0) {
+            throw new AIConnectorException("Invalid minPageTextLength: " + minPageTextLength +
+                    ". It must be greater than 0.");
+        }
+        agent.setMinPageTextLength(minPageTextLength);
+        agent.setPageSelection(PageSelection.parse(getStringParam(mc, AIConstants.PAGES).orElse(null)));
+        int chunkSize = getIntegerParam(mc, AIConstants.CHUNK_SIZE).orElse(AIConstants.CHUNK_SIZE_DEFAULT);
+        int chunkConcurrency = getIntegerParam(mc, AIConstants.CHUNK_CONCURRENCY)
+                .orElse(AIConstants.CHUNK_CONCURRENCY_DEFAULT);
+        if (chunkSize < 0) {
+            throw new AIConnectorException("Invalid chunkSize: " + chunkSize + ". It must not be negative.");
+        }
+        if (chunkConcurrency <= 0) {
+            throw new AIConnectorException("Invalid chunkConcurrency: " + chunkConcurrency +
+                    ". It must be greater than 0.");
+        }
+        agent.setChunkSize(chunkSize);
+        agent.setChunkConcurrency(chunkConcurrency);
+        if (Boolean.parseBoolean(getStringParam(mc, AIConstants.PRUNE_PAGES).orElse("false"))) {
+            String thresholdParam = getStringParam(mc, AIConstants.BLANK_PAGE_THRESHOLD)
+                    .orElse(AIConstants.BLANK_PAGE_THRESHOLD_DEFAULT.toString());
+            double blankPageThreshold;
+            try {
+                blankPageThreshold = Double.parseDouble(thresholdParam.trim());
+            } catch (NumberFormatException e) {
+                blankPageThreshold = -1;
+            }
+            if (blankPageThreshold < 0 || blankPageThreshold > 1) {
+                throw new AIConnectorException("Invalid blankPageThreshold: " + thresholdParam +
+                        ". It must be between 0 and 1.");
+            }
+            agent.setPagePruner(new PagePruner(blankPageThreshold));
+        }
+        agent.setImageNormalizer(getImageNormalizer(mc));
+        String imageDetail = getStringParam(mc, AIConstants.IMAGE_DETAIL).orElse(AIConstants.IMAGE_DETAIL_AUTO);
+        if (AIConstants.IMAGE_DETAIL_LOW.equalsIgnoreCase(imageDetail)
+                || AIConstants.IMAGE_DETAIL_HIGH.equalsIgnoreCase(imageDetail)) {
+            agent.setImageDetail(imageDetail.toLowerCase());
+        } else if (!AIConstants.IMAGE_DETAIL_AUTO.equalsIgnoreCase(imageDetail)) {
+            throw new AIConnectorException("Invalid imageDetail: " + imageDetail + ". Supported values are: Auto, " +
+                    "Low, High");
+        }
+        agent.setStream(Boolean.parseBoolean(getStringParam(mc, AIConstants.STREAM).orElse("false")));
+        agent.setBypassCache(Boolean.parseBoolean(getStringParam(mc, AIConstants.BYPASS_CACHE).orElse("false")));
+        agent.setValidateResult(Boolean.parseBoolean(getStringParam(mc, AIConstants.VALIDATE_RESULT)
+                .orElse("true")));
+        int repairAttempts = getIntegerParam(mc, AIConstants.REPAIR_ATTEMPTS)
+                .orElse(AIConstants.REPAIR_ATTEMPTS_DEFAULT);
+        if (repairAttempts < 0) {
+            throw new AIConnectorException("Invalid repairAttempts: " + repairAttempts + ". It must not be negative.");
+        }
+        agent.setRepairAttempts(repairAttempts);
+        // read last, so that a document spooled to a temporary file is only created for a valid request
+        setDocument(mc, agent, fileContent, mimeType, contentFormat, documentBaseDirectory);
 
         return agent;
     }
 
+    /**
+     * Sets the document of the agent given in the content format. Data URI and Base64 content is decoded when the
+     * document is processed and a file path is read from its file. The binary payload of the message is read right
+     * away, into a temporary file if it is large, so that the document outlives the message flow in the Non-Blocking
+     * execution mode.
+     */
+    private static void setDocument(MessageContext mc, AIScannerAgentModel agent, String fileContent,
+                                    String mimeType, String contentFormat, String documentBaseDirectory)
+            throws AIConnectorException {
+        String format = contentFormat.trim();
+        if (AIConstants.CONTENT_FORMAT_FILE_PATH.equalsIgnoreCase(format)) {
+            agent.setDocument(getFileDocument(fileContent, mimeType, documentBaseDirectory));
+        } else if (AIConstants.CONTENT_FORMAT_MESSAGE_BODY.equalsIgnoreCase(format)) {
+            agent.setDocument(getMessageBodyDocument(mc, mimeType));
+        } else if (AIConstants.CONTENT_FORMAT_BASE64.equalsIgnoreCase(format) && StringUtils.isNotBlank(fileContent)
+                && StringUtils.isNotBlank(mimeType)) {
+            agent.setFileContent(fileContent, mimeType.trim());
+        } else {
+            agent.setFileContent(fileContent);
+        }
+    }
+
+    /**
+     * Resolves a document given by path. The path, relative to the base directory or absolute, must lead to a file
+     * inside the base directory once normalized and with symbolic links followed, so that a message cannot make the
+     * connector read, and send to the AI service, any other file the server can read.
+     *
+     * @param filePath              Path of a document on the local file system.
+     * @param mimeType              MIME type of the document, or blank to determine it from the file extension.
+     * @param documentBaseDirectory Directory that the document must be in, or null if documents cannot be given
+     *                              by path.
+     * @return The document, read from its file when it is processed.
+     * @throws AIConnectorException if no base directory is set, the file is outside of it or cannot be read, or
+     *                              its MIME type is not known.
+     */
+    public static DocumentContent getFileDocument(String filePath, String mimeType, String documentBaseDirectory)
+            throws AIConnectorException {
+        if (StringUtils.isBlank(documentBaseDirectory)) {
+            throw new AIConnectorException("Documents cannot be given by path, since the " +
+                    AIConstants.DOCUMENT_BASE_DIRECTORY + " of the connection is not set.");
+        }
+        if (StringUtils.isBlank(filePath)) {
+            throw new AIConnectorException("The path of the document is not provided.");
+        }
+        Path baseDirectory;
+        try {
+            baseDirectory = Paths.get(documentBaseDirectory).toRealPath();
+        } catch (InvalidPathException | IOException e) {
+            throw new AIConnectorException("The " + AIConstants.DOCUMENT_BASE_DIRECTORY + " " +
+                    documentBaseDirectory + " of the connection does not exist.", e);
+        }
+        Path path;
+        try {
+            path = baseDirectory.resolve(filePath.trim()).normalize();
+        } catch (InvalidPathException e) {
+            throw new AIConnectorException("Invalid document path: " + filePath, e);
+        }
+        if (!path.startsWith(baseDirectory)) {
+            throw new AIConnectorException("The document " + filePath + " is outside of the " +
+                    AIConstants.DOCUMENT_BASE_DIRECTORY + " of the connection.");
+        }
+        try {
+            path = path.toRealPath();
+        } catch (IOException e) {
+            throw new AIConnectorException("The document " + filePath + " does not exist or cannot be read.", e);
+        }
+        // checked again, since a symbolic link inside the base directory may lead out of it
+        if (!path.startsWith(baseDirectory)) {
+            throw new AIConnectorException("The document " + filePath + " is outside of the " +
+                    AIConstants.DOCUMENT_BASE_DIRECTORY + " of the connection.");
+        }
+        if (!Files.isRegularFile(path) || !Files.isReadable(path)) {
+            throw new AIConnectorException("The document " + filePath + " does not exist or cannot be read.");
+        }
+        String type = StringUtils.isNotBlank(mimeType) ? mimeType.trim()
+                : getMimeTypeOfExtension(path.getFileName().toString());
+        if (type == null) {
+            throw new AIConnectorException("The MIME type of the document " + filePath + " cannot be determined " +
+                    "from its extension. Set the mimeType.");
+        }
+        return DocumentContent.ofFile(type, path);
+    }
+
+    private static String getMimeTypeOfExtension(String fileName) {
+        String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
+        switch (extension) {
+            case "pdf":
+                return "application/pdf";
+            case "png":
+                return "image/png";
+            case "jpg":
+            case "jpeg":
+                return "image/jpeg";
+            case "gif":
+                return "image/gif";
+            case "webp":
+                return "image/webp";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Reads the binary payload of the message, as built for the file and VFS transports or from an MTOM
+     * attachment, streaming it into a document that is kept in memory if it is small and spooled to a temporary
+     * file otherwise.
+     *
+     * @param mc       MessageContext.
+     * @param mimeType MIME type of the document, or blank to take the content type of the payload.
+     * @return The document.
+     * @throws AIConnectorException if the message has no binary payload, its MIME type is not known or it cannot
+     *                              be read.
+     */
+    private static DocumentContent getMessageBodyDocument(MessageContext mc, String mimeType)
+            throws AIConnectorException {
+        SOAPEnvelope envelope = mc.getEnvelope();
+        OMElement payload = envelope != null && envelope.getBody() != null ? envelope.getBody().getFirstElement()
+                : null;
+        DataHandler dataHandler = payload != null ? findDataHandler(payload) : null;
+        if (dataHandler == null) {
+            throw new AIConnectorException("The message body has no binary content. Use a binary message builder " +
+                    "for the content type of the documents, or another content format.");
+        }
+        String type = StringUtils.isNotBlank(mimeType) ? mimeType.trim() : dataHandler.getContentType();
+        if (type != null && type.indexOf(';') >= 0) {
+            type = type.substring(0, type.indexOf(';')).trim();
+        }
+        if (StringUtils.isBlank(type) || "application/octet-stream".equalsIgnoreCase(type)) {
+            throw new AIConnectorException("The MIME type of the binary message body is not known. Set the mimeType.");
+        }
+        try (InputStream payloadStream = dataHandler.getInputStream()) {
+            return DocumentContent.spool(type, payloadStream, AIConstants.DOCUMENT_MEMORY_THRESHOLD);
+        } catch (IOException e) {
+            throw new AIConnectorException("Error reading the binary message body.", e);
+        }
+    }
+
+    private static DataHandler findDataHandler(OMElement element) {
+        for (OMNode node = element.getFirstOMChild(); node != null; node = node.getNextOMSibling()) {
+            if (node instanceof OMText && ((OMText) node).isBinary()) {
+                return (DataHandler) ((OMText) node).getDataHandler();
+            }
+            if (node instanceof OMElement) {
+                DataHandler dataHandler = findDataHandler((OMElement) node);
+                if (dataHandler != null) {
+                    return dataHandler;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds the batch agent of the processDocumentsBatch operation. The operation parameters that are not part of
+     * a batch item, such as maxTokens and the render profile, apply to every item.
+     *
+     * @param mc                    MessageContext.
+     * @param documentBaseDirectory Directory that the documents given by path must be in, or null if documents
+     *                              cannot be given by path.
+     * @return AIBatchScannerAgentModel.
+     * @throws AIConnectorException if a parameter has an invalid value or documents is not a JSON array.
+     */
+    public static AIBatchScannerAgentModel getAIBatchScannerAgent(MessageContext mc, String documentBaseDirectory)
+            throws AIConnectorException {
+        String documents = getStringParam(mc, AIConstants.DOCUMENTS)
+                .orElseThrow(() -> new AIConnectorException("The documents to process are not provided."));
+        JsonElement items;
+        try {
+            items = JsonParser.parseString(documents);
+        } catch (JsonSyntaxException e) {
+            throw new AIConnectorException("Invalid documents: " + e.getMessage(), e);
+        }
+        if (!items.isJsonArray()) {
+            throw new AIConnectorException("Invalid documents: a JSON array is expected.");
+        }
+        int concurrency = getIntegerParam(mc, AIConstants.CONCURRENCY).orElse(AIConstants.CONCURRENCY_DEFAULT);
+        if (concurrency <= 0) {
+            throw new AIConnectorException("Invalid concurrency: " + concurrency + ". It must be greater than 0.");
+        }
+
+        AIBatchScannerAgentModel batchAgent = new AIBatchScannerAgentModel(
+                getAIScannerAgent(mc, documentBaseDirectory));
+        batchAgent.setDocuments(items.getAsJsonArray());
+        batchAgent.setConcurrency(concurrency);
+        return batchAgent;
+    }
+
+    /**
+     * Builds the agent of one batch item. An item is a JSON object with the document content, given as a data URI,
+     * or as Base64 together with its mimeType, or the path of a document file in the document base directory, and
+     * an optional schema replacing the schema of the operation.
+     *
+     * @param batchAgent            Agent holding the settings shared by all items.
+     * @param item                  Batch item.
+     * @param documentBaseDirectory Directory that a document given by path must be in, or null if documents cannot
+     *                              be given by path.
+     * @return AIScannerAgentModel.
+     * @throws AIConnectorException if the item is not valid.
+     */
+    public static AIScannerAgentModel getBatchItemAgent(AIScannerAgentModel batchAgent, JsonElement item,
+                                                        String documentBaseDirectory) throws AIConnectorException {
+        if (item == null || !item.isJsonObject()) {
+            throw new AIConnectorException("Invalid document: a JSON object is expected.");
+        }
+        JsonObject document = item.getAsJsonObject();
+        String content = getMemberAsString(document, AIConstants.BATCH_ITEM_CONTENT);
+        String path = getMemberAsString(document, AIConstants.BATCH_ITEM_PATH);
+        String mimeType = getMemberAsString(document, AIConstants.MIME_TYPE);
+        AIScannerAgentModel agent = new AIScannerAgentModel();
+        if (StringUtils.isNotBlank(path)) {
+            agent.setDocument(getFileDocument(path, mimeType, documentBaseDirectory));
+        } else if (StringUtils.isBlank(content)) {
+            throw new AIConnectorException("The content of the document is not provided.");
+        } else if (content.startsWith("data:")) {
+            agent.setFileContent(content);
+        } else if (StringUtils.isBlank(mimeType)) {
+            throw new AIConnectorException("The mimeType of a Base64 encoded document is not provided.");
+        } else {
+            agent.setFileContent(content, mimeType);
+        }
+        String schema = getMemberAsString(document, AIConstants.BATCH_ITEM_SCHEMA);
+
+        agent.setMaxTokens(batchAgent.getMaxTokens());
+        agent.setAutoMaxTokens(batchAgent.isAutoMaxTokens());
+        agent.setMaxRequestTokens(batchAgent.getMaxRequestTokens());
+        agent.setSchemaRegistryPath(StringUtils.isNotBlank(schema) ? schema : batchAgent.getSchemaRegistryPath());
+        agent.setRenderProfile(batchAgent.getRenderProfile());
+        agent.setExtractionMode(batchAgent.getExtractionMode());
+        agent.setMinPageTextLength(batchAgent.getMinPageTextLength());
+        agent.setPageSelection(batchAgent.getPageSelection());
+        agent.setPagePruner(batchAgent.getPagePruner());
+        agent.setImageNormalizer(batchAgent.getImageNormalizer());
+        agent.setImageDetail(batchAgent.getImageDetail());
+        agent.setChunkSize(batchAgent.getChunkSize());
+        agent.setChunkConcurrency(batchAgent.getChunkConcurrency());
+        agent.setStream(batchAgent.isStream());
+        agent.setBypassCache(batchAgent.isBypassCache());
+        agent.setValidateResult(batchAgent.isValidateResult());
+        agent.setRepairAttempts(batchAgent.getRepairAttempts());
+        return agent;
+    }
+
+    private static String getMemberAsString(JsonObject object, String name) {
+        JsonElement member = object.get(name);
+        return member != null && member.isJsonPrimitive() ? member.getAsString() : null;
+    }
+
+    /**
+     * Creates a thread factory producing daemon threads with the given name prefix, so that connector worker
+     * threads are identifiable in thread dumps and never keep the server from shutting down.
+     *
+     * @param namePrefix Prefix of the thread names.
+     * @return ThreadFactory.
+     */
+    public static ThreadFactory createThreadFactory(String namePrefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Builds the render profile for PDF pages from the operation parameters.
+     *
+     * @param mc MessageContext.
+     * @return RenderProfile.
+     * @throws AIConnectorException if a render parameter has an invalid value.
+     */
+    public static RenderProfile getRenderProfile(MessageContext mc) throws AIConnectorException {
+        String profile = getStringParam(mc, AIConstants.RENDER_PROFILE).orElse(AIConstants.RENDER_PROFILE_DEFAULT);
+        if (AIConstants.RENDER_PROFILE_DEFAULT.equalsIgnoreCase(profile)) {
+            return RenderProfile.defaultProfile();
+        }
+        if (AIConstants.RENDER_PROFILE_AUTO.equalsIgnoreCase(profile)) {
+            int maxImageDimension = getIntegerParam(mc, AIConstants.MAX_IMAGE_DIMENSION)
+                    .orElse(AIConstants.MAX_IMAGE_DIMENSION_DEFAULT);
+            if (maxImageDimension <= 0) {
+                throw new AIConnectorException("Invalid maxImageDimension: " + maxImageDimension +
+                        ". It must be greater than 0.");
+            }
+            return RenderProfile.autoProfile(maxImageDimension);
+        }
+        if (!AIConstants.RENDER_PROFILE_CUSTOM.equalsIgnoreCase(profile)) {
+            throw new AIConnectorException("Invalid renderProfile: " + profile + ". Supported profiles are: " +
+                    AIConstants.RENDER_PROFILE_DEFAULT + ", " + AIConstants.RENDER_PROFILE_AUTO + ", " +
+                    AIConstants.RENDER_PROFILE_CUSTOM);
+        }
+        int dpi = getIntegerParam(mc, AIConstants.RENDER_DPI).orElse(AIConstants.IMAGE_DPI_DEFAULT);
+        int imageQuality = getIntegerParam(mc, AIConstants.IMAGE_QUALITY).orElse(AIConstants.IMAGE_QUALITY_DEFAULT);
+        String colorMode = getStringParam(mc, AIConstants.COLOR_MODE).orElse(RenderProfile.ColorMode.RGB.name());
+        String imageFormat = getStringParam(mc, AIConstants.IMAGE_FORMAT)
+                .orElse(RenderProfile.ImageFormat.PNG.name());
+        if (dpi <= 0) {
+            throw new AIConnectorException("Invalid renderDpi: " + dpi + ". It must be greater than 0.");
+        }
+        if (imageQuality < 1 || imageQuality > 100) {
+            throw new AIConnectorException("Invalid imageQuality: " + imageQuality + ". It must be between 1 and 100.");
+        }
+        try {
+            return RenderProfile.customProfile(dpi, RenderProfile.ColorMode.valueOf(colorMode.trim().toUpperCase()),
+                    RenderProfile.ImageFormat.valueOf(imageFormat.trim().toUpperCase()), imageQuality);
+        } catch (IllegalArgumentException e) {
+            throw new AIConnectorException("Invalid colorMode or imageFormat. Supported colour modes are: RGB, " +
+                    "GRAY, BINARY and supported image formats are: PNG, JPEG", e);
+        }
+    }
+
+    /**
+     * Builds the normalizer of uploaded images from the operation parameters. The images are scaled to the maximum
+     * image dimension and encoded with the image quality used for rendered PDF pages.
+     *
+     * @param mc MessageContext.
+     * @return ImageNormalizer, or null if uploaded images are sent as they are.
+     * @throws AIConnectorException if a parameter has an invalid value.
+     */
+    public static ImageNormalizer getImageNormalizer(MessageContext mc) throws AIConnectorException {
+        if (!Boolean.parseBoolean(getStringParam(mc, AIConstants.NORMALIZE_IMAGES).orElse("false"))) {
+            return null;
+        }
+        int maxImageDimension = getIntegerParam(mc, AIConstants.MAX_IMAGE_DIMENSION)
+                .orElse(AIConstants.MAX_IMAGE_DIMENSION_DEFAULT);
+        int imageQuality = getIntegerParam(mc, AIConstants.IMAGE_QUALITY).orElse(AIConstants.IMAGE_QUALITY_DEFAULT);
+        if (maxImageDimension <= 0) {
+            throw new AIConnectorException("Invalid maxImageDimension: " + maxImageDimension +
+                    ". It must be greater than 0.");
+        }
+        if (imageQuality < 1 || imageQuality > 100) {
+            throw new AIConnectorException("Invalid imageQuality: " + imageQuality + ". It must be between 1 and 100.");
+        }
+        return new ImageNormalizer(maxImageDimension,
+                Boolean.parseBoolean(getStringParam(mc, AIConstants.TRIM_MARGINS).orElse("true")),
+                Boolean.parseBoolean(getStringParam(mc, AIConstants.GRAYSCALE).orElse("false")), imageQuality);
+    }
+
     /**
      * Read a String parameter
      * @param mc MessageContext.
@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+import org.wso2.carbon.connector.idp.constants.AIConstants;
+import org.wso2.carbon.connector.idp.metrics.ScanMetrics;
+import org.wso2.carbon.connector.idp.metrics.Stage;
+import org.wso2.carbon.connector.idp.model.scan.ChatMessage;
+import org.wso2.carbon.connector.idp.model.scan.ChatRequest;
+import org.wso2.carbon.connector.idp.model.scan.ContentPart;
+import org.wso2.carbon.connector.idp.model.scan.PageImage;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes chat completions requests as a stream. Page images are Base64 encoded straight into the output instead of
+ * being turned into data URI strings first, and a request body larger than the memory threshold is spooled to a
+ * temporary file, so the request never exists in memory as a whole. Requests for the native chat API of Ollama are
+ * written in their own format, with the images as raw Base64 strings.
+ */
+public class ChatRequestWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String TEMP_FILE_PREFIX = "idp-request-";
+
+    private ChatRequestWriter() {
+    }
+
+    /**
+     * A request body that is written once and replayed for every attempt. It is written when it is first sent in a
+     * format, the model and the API of the engine, and every later request in that format, a retry or a request to
+     * another engine of the same model, sends the same bytes instead of serializing the request and encoding its
+     * page images again. A body no larger than the memory threshold is held in memory and a larger one in a
+     * temporary file, which is deleted when the body is closed. Either way its length is known, so it is sent with
+     * a Content-Length header.
+     */
+    public static class SpooledBody implements Closeable {
+
+        private final ChatRequest request;
+        private final int memoryThreshold;
+        private final ScanMetrics metrics;
+        private final Map<String, Spool> spools = new HashMap<>();
+
+        private SpooledBody(ChatRequest request, int memoryThreshold, ScanMetrics metrics) {
+            this.request = request;
+            this.memoryThreshold = memoryThreshold;
+            this.metrics = metrics;
+        }
+
+        /**
+         * Returns a publisher of the body in the current format of the request, writing the body if it was not
+         * written in that format yet.
+         *
+         * @return Body publisher with the length of the body.
+         * @throws IOException if writing the body or opening its temporary file fails.
+         */
+        public synchronized HttpRequest.BodyPublisher getPublisher() throws IOException {
+            String format = request.getModel() + (request.isOllamaChat() ? " " + AIConstants.OLLAMA_CHAT_PATH : "");
+            Spool spool = spools.get(format);
+            if (spool == null) {
+                long writeStart = System.nanoTime();
+                spool = new Spool(memoryThreshold);
+                try {
+                    write(request, spool);
+                    spool.close();
+                } catch (IOException | RuntimeException e) {
+                    spool.delete();
+                    throw e;
+                }
+                spools.put(format, spool);
+                if (metrics != null) {
+                    metrics.recordStage(Stage.WRITE, System.nanoTime() - writeStart);
+                }
+            }
+            if (metrics != null) {
+                metrics.recordBytesUploaded(spool.length);
+            }
+            return spool.getPublisher();
+        }
+
+        /**
+         * Deletes the temporary files of the body.
+         */
+        @Override
+        public synchronized void close() {
+            for (Spool spool : spools.values()) {
+                spool.delete();
+            }
+            spools.clear();
+        }
+    }
+
+    /**
+     * The bytes of a request body, kept in memory until they outgrow the threshold and moved to a temporary file
+     * from then on.
+     */
+    private static class Spool extends OutputStream {
+
+        private final int memoryThreshold;
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private Path file;
+        private OutputStream fileOut;
+        private long length;
+
+        private Spool(int memoryThreshold) {
+            this.memoryThreshold = memoryThreshold;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (fileOut == null && memory.size() + len > memoryThreshold) {
+                file = Files.createTempFile(TEMP_FILE_PREFIX, ".json");
+                fileOut = Files.newOutputStream(file);
+                memory.writeTo(fileOut);
+                memory = null;
+            }
+            if (fileOut != null) {
+                fileOut.write(b, off, len);
+            } else {
+                memory.write(b, off, len);
+            }
+            length += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fileOut != null) {
+                fileOut.close();
+            }
+        }
+
+        HttpRequest.BodyPublisher getPublisher() throws IOException {
+            return file != null ? HttpRequest.BodyPublishers.ofFile(file)
+                    : HttpRequest.BodyPublishers.ofByteArray(memory.toByteArray());
+        }
+
+        void delete() {
+            if (file != null) {
+                closeQuietly(this);
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // nothing to do, the file is in the temporary directory
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a body for the given request that records the time spent writing it and the bytes sent.
+     *
+     * @param request Request to write.
+     * @param metrics Metrics to record in, or null.
+     * @return Request body, to be closed once the request got its final response.
+     */
+    public static SpooledBody spool(ChatRequest request, ScanMetrics metrics) {
+        return new SpooledBody(request, AIConstants.REQUEST_BODY_MEMORY_THRESHOLD, metrics);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // nothing to do, the stream is discarded
+        }
+    }
+
+    /**
+     * Writes the request as JSON to the given stream. The stream is flushed but not closed.
+     *
+     * @param request Request to write.
+     * @param out     Stream to write to.
+     * @throws IOException if writing to the stream fails.
+     */
+    public static void write(ChatRequest request, OutputStream out) throws IOException {
+        Writer textOut = new OutputStreamWriter(new BufferedOutputStream(out, BUFFER_SIZE), StandardCharsets.UTF_8);
+        JsonWriter writer = new JsonWriter(textOut);
+        if (request.isOllamaChat()) {
+            writeOllamaChat(request, writer, textOut);
+            return;
+        }
+        writer.beginObject();
+        writer.name("model").value(request.getModel());
+        writer.name("messages").beginArray();
+        for (ChatMessage message : request.getMessages()) {
+            writeMessage(writer, textOut, message, request.getImageDetail());
+        }
+        writer.endArray();
+        writer.name("max_tokens").value(request.getMaxTokens());
+        writer.name("temperature").value(0.0);
+        if (request.isStream()) {
+            writer.name("stream").value(true);
+        }
+        writer.name("response_format").jsonValue(request.getResponseFormatJson());
+        writer.endObject();
+        writer.flush();
+    }
+
+    /**
+     * Writes the request for the native chat API of Ollama. The schema is the format of the request, the generation
+     * settings and the context length are options, and the model residency is the keep_alive of the request.
+     */
+    private static void writeOllamaChat(ChatRequest request, JsonWriter writer, Writer textOut)
+            throws IOException {
+        writer.beginObject();
+        writer.name("model").value(request.getModel());
+        writer.name("messages").beginArray();
+        for (ChatMessage message : request.getMessages()) {
+            writeOllamaMessages(writer, textOut, message);
+        }
+        writer.endArray();
+        // Ollama streams unless told otherwise
+        writer.name("stream").value(request.isStream());
+        writer.name("format").jsonValue(getOllamaFormat(request.getResponseFormatJson()));
+        if (request.getKeepAlive() != null) {
+            writer.name("keep_alive").jsonValue(getKeepAliveValue(request.getKeepAlive()).toString());
+        }
+        writer.name("options").beginObject();
+        writer.name("temperature").value(0.0);
+        if (request.getMaxTokens() != null) {
+            writer.name("num_predict").value(request.getMaxTokens());
+        }
+        if (request.getContextLength() > 0) {
+            writer.name("num_ctx").value(request.getContextLength());
+        }
+        writer.endObject();
+        writer.endObject();
+        writer.flush();
+    }
+
+    /**
+     * Writes a message as Ollama messages, which hold a text and the images that go with it. The text parts up to
+     * an image and the images that follow them make up one message, so that the pages keep their order and every
+     * page label stays with its image.
+     */
+    private static void writeOllamaMessages(JsonWriter writer, Writer textOut, ChatMessage message)
+            throws IOException {
+        StringBuilder text = new StringBuilder();
+        List<ContentPart> images = new ArrayList<>();
+        for (ContentPart part : message.getContent()) {
+            if (part.isText()) {
+                if (!images.isEmpty()) {
+                    writeOllamaMessage(writer, textOut, message.getRole(), text, images);
+                    text.setLength(0);
+                    images.clear();
+                }
+                if (text.length() > 0) {
+                    text.append("\n\n");
+                }
+                text.append(part.getText());
+            } else {
+                images.add(part);
+            }
+        }
+        writeOllamaMessage(writer, textOut, message.getRole(), text, images);
+    }
+
+    private static void writeOllamaMessage(JsonWriter writer, Writer textOut, String role, CharSequence text,
+                                           List<ContentPart> images) throws IOException {
+        writer.beginObject();
+        writer.name("role").value(role);
+        writer.name("content").value(text.toString());
+        if (!images.isEmpty()) {
+            writer.name("images").beginArray();
+            for (ContentPart image : images) {
+                if (image.getPageImage() != null) {
+                    writeBase64(writer, textOut, "", image.getPageImage().getData());
+                } else {
+                    // an image that was not normalized is a data URI, whose data is the raw Base64 string
+                    String imageUrl = image.getImageUrl();
+                    writer.value(imageUrl.substring(imageUrl.indexOf(',') + 1));
+                }
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+    }
+
+    /**
+     * @return The JSON schema of a json_schema response format, which is the format of an Ollama request, or "json"
+     * for any other response format.
+     */
+    private static String getOllamaFormat(String responseFormatJson) {
+        JsonObject jsonSchema = JsonParser.parseString(responseFormatJson).getAsJsonObject()
+                .getAsJsonObject("json_schema");
+        return jsonSchema != null && jsonSchema.has("schema") ? jsonSchema.get("schema").toString() : "\"json\"";
+    }
+
+    /**
+     * Converts a keep alive setting to its JSON value for Ollama: a number of seconds is sent as a number and a
+     * duration such as 10m as a string.
+     *
+     * @param keepAlive Keep alive setting.
+     * @return The keep_alive value.
+     */
+    public static JsonPrimitive getKeepAliveValue(String keepAlive) {
+        try {
+            return new JsonPrimitive(Long.parseLong(keepAlive));
+        } catch (NumberFormatException e) {
+            return new JsonPrimitive(keepAlive);
+        }
+    }
+
+    private static void writeMessage(JsonWriter writer, Writer textOut, ChatMessage message, String imageDetail)
+            throws IOException {
+        writer.beginObject();
+        writer.name("role").value(message.getRole());
+        writer.name("content");
+        List<ContentPart> parts = message.getContent();
+        if (parts.size() == 1 && parts.get(0).isText()) {
+            writer.value(parts.get(0).getText());
+        } else {
+            writer.beginArray();
+            for (ContentPart part : parts) {
+                writer.beginObject();
+                if (part.isText()) {
+                    writer.name("type").value("text");
+                    writer.name("text").value(part.getText());
+                } else {
+                    writer.name("type").value("image_url");
+                    writer.name("image_url").beginObject();
+                    writer.name("url");
+                    if (part.getPageImage() != null) {
+                        writeDataUri(writer, textOut, part.getPageImage());
+                    } else {
+                        writer.value(part.getImageUrl());
+                    }
+                    if (imageDetail != null) {
+                        writer.name("detail").value(imageDetail);
+                    }
+                    writer.endObject();
+                }
+                writer.endObject();
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Writes the data URI of a page image as a JSON string value.
+     */
+    private static void writeDataUri(JsonWriter writer, Writer textOut, PageImage pageImage) throws IOException {
+        writeBase64(writer, textOut, "data:" + pageImage.getMimeType() + ";base64,", pageImage.getData());
+    }
+
+    /**
+     * Writes a JSON string value of the given prefix followed by the Base64 encoding of the given data, encoding the
+     * data straight into the output. JsonWriter cannot stream a string value, so the value is written as a raw JSON
+     * value in two steps, both through public API: an empty raw value makes JsonWriter write the separator before
+     * the value and count the value as written, and once it is flushed, the complete string, quotes included, is
+     * written to the Writer it writes to. This is safe because neither the prefix, a data URI prefix or nothing,
+     * nor the Base64 alphabet contains a character that JSON requires to be escaped.
+     */
+    private static void writeBase64(JsonWriter writer, Writer textOut, String prefix, byte[] data)
+            throws IOException {
+        writer.jsonValue("");
+        writer.flush();
+        textOut.write('"');
+        textOut.write(prefix);
+        try (OutputStream base64Out = Base64.getEncoder().wrap(new OutputStream() {
+            private final char[] chars = new char[BUFFER_SIZE];
+
+            @Override
+            public void write(int b) throws IOException {
+                textOut.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                // the Base64 alphabet is ASCII, so every byte is one character
+                while (len > 0) {
+                    int count = Math.min(len, chars.length);
+                    for (int i = 0; i < count; i++) {
+                        chars[i] = (char) b[off + i];
+                    }
+                    textOut.write(chars, 0, count);
+                    off += count;
+                    len -= count;
+                }
+            }
+        })) {
+            base64Out.write(data);
+        }
+        textOut.write('"');
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the content generated by the LLM from chat completions responses and from responses of the native chat API
+ * of Ollama.
+ * <p>
+ * Responses are read with a streaming {@link JsonReader} that pulls only the content of the first choice and skips
+ * every other value, so the body is never held as a String or mapped into objects, and the content is copied once.
+ */
+public class ChatResponseReader {
+
+    private static final String SSE_DATA_PREFIX = "data:";
+    private static final String SSE_DONE = "[DONE]";
+    private static final TypeAdapter<JsonObject> jsonObjectAdapter = new Gson().getAdapter(JsonObject.class);
+    private static final String MALFORMED_RESPONSE = "Failed to process document: LLM response was empty or malformed.";
+
+    /**
+     * The content read from a response, with the time at which its first token arrived.
+     */
+    public static class Content {
+        private final String text;
+        private final long firstTokenNanos;
+
+        public Content(String text, long firstTokenNanos) {
+            this.text = text;
+            this.firstTokenNanos = firstTokenNanos;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return System.nanoTime() at which the first token arrived, or 0 if it is not known.
+         */
+        public long getFirstTokenNanos() {
+            return firstTokenNanos;
+        }
+    }
+
+    private ChatResponseReader() {
+    }
+
+    /**
+     * Reads a chat completions response and returns the message content of its first choice. The stream is closed.
+     *
+     * @param body Body of the response.
+     * @return The message content, or null if the first choice has no content.
+     * @throws AIConnectorException if the response reports an error, has no choices or is not valid JSON.
+     * @throws IOException if reading the stream fails.
+     */
+    public static String readCompletion(InputStream body) throws AIConnectorException, IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            ChoiceContent choice = readChoiceContent(reader, "message");
+            if (choice == null) {
+                throw new AIConnectorException(MALFORMED_RESPONSE);
+            }
+            return choice.content;
+        } catch (MalformedJsonException | EOFException | IllegalStateException | JsonParseException e) {
+            throw new AIConnectorException(MALFORMED_RESPONSE, e);
+        }
+    }
+
+    /**
+     * Reads a streamed (server-sent events) chat completions response, concatenating the content deltas of the
+     * first choice. Reading stops as soon as the first JSON object in the content is complete, without waiting for
+     * the remaining events, and the stream is closed.
+     *
+     * @param eventStream Body of the response.
+     * @return The content read from the stream.
+     * @throws AIConnectorException if the stream reports an error or an event is not valid JSON.
+     * @throws IOException if reading the stream fails.
+     */
+    public static Content readEventStream(InputStream eventStream) throws AIConnectorException, IOException {
+        JsonObjectScanner scanner = new JsonObjectScanner();
+        long firstTokenNanos = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(eventStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith(SSE_DATA_PREFIX)) {
+                    continue;
+                }
+                String data = line.substring(SSE_DATA_PREFIX.length()).trim();
+                if (SSE_DONE.equals(data)) {
+                    break;
+                }
+                String delta = getDeltaContent(data);
+                if (delta == null || delta.isEmpty()) {
+                    continue;
+                }
+                if (firstTokenNanos == 0) {
+                    firstTokenNanos = System.nanoTime();
+                }
+                if (scanner.append(delta)) {
+                    return new Content(scanner.getJson(), firstTokenNanos);
+                }
+            }
+        }
+        return new Content(scanner.getText(), firstTokenNanos);
+    }
+
+    /**
+     * Reads a response of the native chat API of Ollama and returns the content of its message. The stream is
+     * closed.
+     *
+     * @param body Body of the response.
+     * @return The message content, or null if the message has no content.
+     * @throws AIConnectorException if the response reports an error, has no message or is not valid JSON.
+     * @throws IOException if reading the stream fails.
+     */
+    public static String readOllamaChat(InputStream body) throws AIConnectorException, IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            ChoiceContent message = readOllamaMessage(reader);
+            if (message == null) {
+                throw new AIConnectorException(MALFORMED_RESPONSE);
+            }
+            return message.content;
+        } catch (MalformedJsonException | EOFException | IllegalStateException | JsonParseException e) {
+            throw new AIConnectorException(MALFORMED_RESPONSE, e);
+        }
+    }
+
+    /**
+     * Reads a streamed response of the native chat API of Ollama, a JSON object per line, concatenating the content
+     * of the messages. Reading stops as soon as the first JSON object in the content is complete, and the stream is
+     * closed.
+     *
+     * @param body Body of the response.
+     * @return The content read from the stream.
+     * @throws AIConnectorException if the stream reports an error or a line is not valid JSON.
+     * @throws IOException if reading the stream fails.
+     */
+    public static Content readOllamaStream(InputStream body) throws AIConnectorException, IOException {
+        JsonObjectScanner scanner = new JsonObjectScanner();
+        long firstTokenNanos = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String delta;
+                try (JsonReader lineReader = new JsonReader(new StringReader(line))) {
+                    ChoiceContent message = readOllamaMessage(lineReader);
+                    delta = message == null ? null : message.content;
+                } catch (IOException | IllegalStateException | JsonParseException e) {
+                    throw new AIConnectorException("Failed to parse LLM stream event: " + line, e);
+                }
+                if (delta == null || delta.isEmpty()) {
+                    continue;
+                }
+                if (firstTokenNanos == 0) {
+                    firstTokenNanos = System.nanoTime();
+                }
+                if (scanner.append(delta)) {
+                    return new Content(scanner.getJson(), firstTokenNanos);
+                }
+            }
+        }
+        return new Content(scanner.getText(), firstTokenNanos);
+    }
+
+    /**
+     * Extracts a valid JSON object from the raw string content of an LLM response. Some open source LLMs wrap the
+     * object in markdown code fences or add a short preamble, so parsing starts at the first opening brace and
+     * stops at the brace that closes it; the closing fence and any text after the object are never read. The
+     * object itself is parsed strictly, and the content is parsed in place, without cleaning it into a copy first.
+     *
+     * @param content The raw string content from the LLM.
+     * @return A validated JsonObject.
+     * @throws AIConnectorException if the content is empty, no JSON object is found, or parsing fails.
+     */
+    public static JsonObject extractJson(String content) throws AIConnectorException {
+        if (content == null || content.isBlank()) {
+            throw new AIConnectorException("LLM response content is empty or not a string");
+        }
+        int start = content.indexOf('{');
+        if (start < 0) {
+            throw new AIConnectorException("No valid JSON object found in the LLM response content.");
+        }
+        StringReader in = new StringReader(content);
+        try (JsonReader reader = new JsonReader(in)) {
+            in.skip(start);
+            // JsonParser.parseReader would switch the reader to lenient mode and accept unquoted names, single
+            // quotes and comments, so the object is read through the adapter with the reader kept strict.
+            reader.setLenient(false);
+            // Reading stops at the brace that closes the top-level object. Whatever follows it, such as a closing
+            // markdown fence or a trailing remark, is ignored on purpose and is not parsed as part of the value.
+            return jsonObjectAdapter.read(reader);
+        } catch (JsonParseException | IOException | IllegalStateException e) {
+            throw new AIConnectorException("Failed to parse extracted content as JSON. Syntax error.", e);
+        }
+    }
+
+    private static String getDeltaContent(String data) throws AIConnectorException {
+        try (JsonReader reader = new JsonReader(new StringReader(data))) {
+            ChoiceContent choice = readChoiceContent(reader, "delta");
+            return choice == null ? null : choice.content;
+        } catch (IOException | IllegalStateException | JsonParseException e) {
+            throw new AIConnectorException("Failed to parse LLM stream event: " + data, e);
+        }
+    }
+
+    /**
+     * The content of the first choice of a response, or of the message of an Ollama response, which is null if the
+     * choice or message has no content.
+     */
+    private static class ChoiceContent {
+        private String content;
+    }
+
+    /**
+     * Reads a chat completions response object or stream event, returning the content of the given member of its
+     * first choice: the message of a response or the delta of an event.
+     *
+     * @return The content of the first choice, or null if there are no choices.
+     * @throws AIConnectorException if the response reports an error.
+     */
+    private static ChoiceContent readChoiceContent(JsonReader reader, String memberName)
+            throws AIConnectorException, IOException {
+        ChoiceContent choice = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("error".equals(name)) {
+                throw new AIConnectorException("LLM returned an error: " + JsonParser.parseReader(reader));
+            } else if ("choices".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                if (reader.hasNext()) {
+                    choice = new ChoiceContent();
+                    choice.content = readMemberContent(reader, memberName);
+                }
+                while (reader.hasNext()) {
+                    reader.skipValue();
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return choice;
+    }
+
+    /**
+     * Reads a response object or stream line of the native chat API of Ollama, returning the content of its message.
+     *
+     * @return The content of the message, or null if there is no message.
+     * @throws AIConnectorException if the response reports an error.
+     */
+    private static ChoiceContent readOllamaMessage(JsonReader reader) throws AIConnectorException, IOException {
+        ChoiceContent message = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("error".equals(name)) {
+                throw new AIConnectorException("LLM returned an error: " + JsonParser.parseReader(reader));
+            } else if ("message".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                message = new ChoiceContent();
+                message.content = readContent(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return message;
+    }
+
+    private static String readMemberContent(JsonReader reader, String memberName) throws IOException {
+        String content = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (memberName.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                content = readContent(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return content;
+    }
+
+    /**
+     * Reads a message object, returning its content.
+     */
+    private static String readContent(JsonReader reader) throws IOException {
+        String content = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("content".equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                content = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return content;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a number of indexed tasks with bounded concurrency. Each worker takes the next task that has not started, so
+ * a slow task never holds up the others, and the calling thread is one of the workers.
+ */
+public final class ConcurrentTasks {
+
+    /**
+     * A task identified by its index.
+     */
+    public interface Task {
+        void run(int index) throws Exception;
+    }
+
+    private ConcurrentTasks() {
+    }
+
+    /**
+     * Runs the tasks 0 to {@code taskCount - 1} and waits for all of them. When a task fails, the tasks that have not
+     * started are skipped and the failure is thrown.
+     *
+     * @param executor    Executor running the workers other than the calling thread.
+     * @param taskCount   Number of tasks.
+     * @param concurrency Maximum number of tasks running at the same time.
+     * @param task        Task to run for each index.
+     * @throws AIConnectorException if a task fails or the thread is interrupted.
+     */
+    public static void run(ExecutorService executor, int taskCount, int concurrency, Task task)
+            throws AIConnectorException {
+        AtomicInteger nextIndex = new AtomicInteger();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Runnable worker = () -> {
+            int index;
+            while (failure.get() == null && (index = nextIndex.getAndIncrement()) < taskCount) {
+                try {
+                    task.run(index);
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        };
+
+        List<Future<?>> workers = new ArrayList<>();
+        try {
+            for (int i = 1; i < Math.min(concurrency, taskCount); i++) {
+                workers.add(executor.submit(worker));
+            }
+            worker.run();
+            for (Future<?> future : workers) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AIConnectorException("Interrupted while waiting for concurrent tasks.", e);
+        } catch (ExecutionException e) {
+            throw new AIConnectorException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            for (Future<?> future : workers) {
+                future.cancel(true);
+            }
+        }
+        Exception taskFailure = failure.get();
+        if (taskFailure instanceof AIConnectorException) {
+            throw (AIConnectorException) taskFailure;
+        } else if (taskFailure != null) {
+            throw new AIConnectorException(taskFailure.getMessage(), taskFailure);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+import org.wso2.carbon.connector.idp.model.scan.PageImage;
+import org.wso2.carbon.connector.idp.model.scan.RenderProfile;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+
+/**
+ * Prepares an uploaded image for the LLM: crops uniform margins, scales it down to the largest size the model uses,
+ * optionally converts it to grayscale and re-encodes it as JPEG, or as PNG if that is smaller for a lossless source.
+ * Phone photos of a few megabytes become a few hundred kilobytes, which the AI service would otherwise downsample on
+ * its side after receiving them.
+ */
+public class ImageNormalizer {
+
+    // largest difference of a colour channel from the margin colour still considered part of the margin
+    private static final int MARGIN_TOLERANCE = 24;
+    // pixels of margin kept around the content, so that text at the edge is not cut
+    private static final int MARGIN_PADDING = 8;
+    private static final int MAX_MARGIN_SAMPLES = 1024;
+
+    private final int maxImageDimension;
+    private final boolean trimMargins;
+    private final boolean grayscale;
+    private final int imageQuality;
+
+    /**
+     * @param maxImageDimension Maximum width or height of the normalized image in pixels.
+     * @param trimMargins       Whether to crop uniform margins.
+     * @param grayscale         Whether to convert the image to grayscale.
+     * @param imageQuality      JPEG quality, from 1 to 100.
+     */
+    public ImageNormalizer(int maxImageDimension, boolean trimMargins, boolean grayscale, int imageQuality) {
+        this.maxImageDimension = maxImageDimension;
+        this.trimMargins = trimMargins;
+        this.grayscale = grayscale;
+        this.imageQuality = imageQuality;
+    }
+
+    /**
+     * Normalizes an image. The original is kept if it is already at most the maximum size and smaller than the
+     * re-encoded image.
+     *
+     * @param imageData Content of the image.
+     * @param mimeType  MIME type of the image.
+     * @return Normalized image, or null if the image format cannot be decoded, such as WebP.
+     * @throws AIConnectorException if the image cannot be read.
+     */
+    public PageImage normalize(byte[] imageData, String mimeType) throws AIConnectorException {
+        BufferedImage image;
+        try {
+            image = ImageIO.read(new ByteArrayInputStream(imageData));
+        } catch (IOException e) {
+            throw new AIConnectorException("Error reading the image: " + e.getMessage(), e);
+        }
+        if (image == null) {
+            return null;
+        }
+        BufferedImage normalized = trimMargins ? trim(image) : image;
+        normalized = scale(normalized);
+        boolean changed = normalized != image;
+        normalized = toOutputImage(normalized);
+        RenderProfile.ImageFormat format = RenderProfile.ImageFormat.JPEG;
+        byte[] encoded;
+        try {
+            encoded = AIUtils.encodeImage(normalized, format, imageQuality);
+            if (!"image/jpeg".equals(mimeType)) {
+                // screenshots and generated documents with flat colours are often smaller as PNG
+                byte[] lossless = AIUtils.encodeImage(normalized, RenderProfile.ImageFormat.PNG, imageQuality);
+                if (lossless.length < encoded.length) {
+                    format = RenderProfile.ImageFormat.PNG;
+                    encoded = lossless;
+                }
+            }
+        } catch (IOException e) {
+            throw new AIConnectorException("Error encoding the image: " + e.getMessage(), e);
+        }
+        if (!changed && !grayscale && encoded.length >= imageData.length) {
+            return new PageImage(1, mimeType, imageData, image.getWidth(), image.getHeight(), null);
+        }
+        return new PageImage(1, format.getMimeType(), encoded, normalized.getWidth(), normalized.getHeight(), null);
+    }
+
+    /**
+     * Crops the rows and columns at the edges that have the colour of the top left corner.
+     */
+    private static BufferedImage trim(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int margin = image.getRGB(0, 0);
+        int top = 0;
+        while (top < height && isMarginRow(image, top, margin)) {
+            top++;
+        }
+        if (top == height) {
+            // the image is a single colour
+            return image;
+        }
+        int bottom = height - 1;
+        while (bottom > top && isMarginRow(image, bottom, margin)) {
+            bottom--;
+        }
+        int left = 0;
+        while (left < width && isMarginColumn(image, left, top, bottom, margin)) {
+            left++;
+        }
+        int right = width - 1;
+        while (right > left && isMarginColumn(image, right, top, bottom, margin)) {
+            right--;
+        }
+        top = Math.max(0, top - MARGIN_PADDING);
+        left = Math.max(0, left - MARGIN_PADDING);
+        bottom = Math.min(height - 1, bottom + MARGIN_PADDING);
+        right = Math.min(width - 1, right + MARGIN_PADDING);
+        if (top == 0 && left == 0 && bottom == height - 1 && right == width - 1) {
+            return image;
+        }
+        return image.getSubimage(left, top, right - left + 1, bottom - top + 1);
+    }
+
+    private static boolean isMarginRow(BufferedImage image, int y, int margin) {
+        int step = Math.max(1, image.getWidth() / MAX_MARGIN_SAMPLES);
+        for (int x = 0; x < image.getWidth(); x += step) {
+            if (!isMarginColor(image.getRGB(x, y), margin)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isMarginColumn(BufferedImage image, int x, int top, int bottom, int margin) {
+        int step = Math.max(1, (bottom - top + 1) / MAX_MARGIN_SAMPLES);
+        for (int y = top; y <= bottom; y += step) {
+            if (!isMarginColor(image.getRGB(x, y), margin)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isMarginColor(int rgb, int margin) {
+        return Math.abs(((rgb >> 16) & 0xff) - ((margin >> 16) & 0xff)) <= MARGIN_TOLERANCE
+                && Math.abs(((rgb >> 8) & 0xff) - ((margin >> 8) & 0xff)) <= MARGIN_TOLERANCE
+                && Math.abs((rgb & 0xff) - (margin & 0xff)) <= MARGIN_TOLERANCE;
+    }
+
+    /**
+     * Scales the image down so that its longest side fits within the maximum dimension. Large reductions are done in
+     * halving steps, as a single bilinear step skips most of the source pixels and loses fine print.
+     */
+    private BufferedImage scale(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double factor = (double) maxImageDimension / Math.max(width, height);
+        if (factor >= 1) {
+            return image;
+        }
+        int targetWidth = Math.max(1, (int) Math.round(width * factor));
+        int targetHeight = Math.max(1, (int) Math.round(height * factor));
+        BufferedImage scaled = image;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            scaled = draw(scaled, width, height, BufferedImage.TYPE_INT_RGB);
+        } while (width != targetWidth || height != targetHeight);
+        return scaled;
+    }
+
+    /**
+     * Converts the image to the colour model written as JPEG, which has no alpha channel: transparent areas become
+     * white.
+     */
+    private BufferedImage toOutputImage(BufferedImage image) {
+        int type = grayscale ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB;
+        if (image.getType() == type) {
+            return image;
+        }
+        return draw(image, image.getWidth(), image.getHeight(), type);
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height, int type) {
+        BufferedImage target = new BufferedImage(width, height, type);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    @Override
+    public String toString() {
+        return "ImageNormalizer{maxImageDimension=" + maxImageDimension + ", trimMargins=" + trimMargins +
+                ", grayscale=" + grayscale + ", imageQuality=" + imageQuality + "}";
+    }
+}
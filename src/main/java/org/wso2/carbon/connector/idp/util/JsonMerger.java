@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.Map;
+
+/**
+ * Merges partial extraction results of the same schema, such as the results of the page chunks of a document.
+ * Scalars keep the first non-null value, objects are merged member by member and arrays, such as line items, are
+ * concatenated in the order of the parts.
+ */
+public final class JsonMerger {
+
+    private JsonMerger() {
+    }
+
+    /**
+     * Merges a partial result into a result.
+     *
+     * @param target Result to merge into. It is modified.
+     * @param part   Partial result merged after the parts already in the target.
+     */
+    public static void merge(JsonObject target, JsonObject part) {
+        for (Map.Entry<String, JsonElement> member : part.entrySet()) {
+            JsonElement value = member.getValue();
+            JsonElement existing = target.get(member.getKey());
+            if (existing == null || existing.isJsonNull()) {
+                target.add(member.getKey(), value.deepCopy());
+            } else if (existing.isJsonObject() && value.isJsonObject()) {
+                merge(existing.getAsJsonObject(), value.getAsJsonObject());
+            } else if (existing.isJsonArray() && value.isJsonArray()) {
+                existing.getAsJsonArray().addAll(value.getAsJsonArray().deepCopy());
+            }
+        }
+    }
+}
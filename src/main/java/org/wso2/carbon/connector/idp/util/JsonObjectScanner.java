@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+/**
+ * Finds the first complete JSON object in text that arrives in pieces, such as the content of a streamed LLM
+ * response. Text before the opening brace, like markdown code fences or a short preamble, is skipped, and braces
+ * inside JSON strings are ignored, so the object is known to be complete as soon as its closing brace arrives.
+ * <p>
+ * The text is scanned once, as it arrives, and kept in a single buffer; the object is located by its offsets in the
+ * buffer instead of being copied as it is scanned.
+ */
+public class JsonObjectScanner {
+
+    private final StringBuilder text = new StringBuilder();
+    private int start = -1;
+    private int end = -1;
+    private int depth = 0;
+    private boolean inString = false;
+    private boolean escaped = false;
+
+    /**
+     * Scans the next piece of text.
+     *
+     * @param chunk Next piece of text.
+     * @return true once the first JSON object is complete; the rest of the text is then ignored.
+     */
+    public boolean append(CharSequence chunk) {
+        if (end >= 0) {
+            return true;
+        }
+        int offset = text.length();
+        text.append(chunk);
+        for (int i = offset; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (depth == 0) {
+                if (c == '{') {
+                    start = i;
+                    depth = 1;
+                }
+                continue;
+            }
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                end = i + 1;
+                text.setLength(end);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isComplete() {
+        return end >= 0;
+    }
+
+    /**
+     * @return The text of the first JSON object, which is complete only if {@link #isComplete()} is true, or an
+     * empty string if no object has started.
+     */
+    public String getJson() {
+        return start < 0 ? "" : text.substring(start);
+    }
+
+    /**
+     * @return All the text scanned, up to the end of the first JSON object if it is complete.
+     */
+    public String getText() {
+        return text.toString();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import org.wso2.carbon.connector.idp.constants.AIConstants;
+import org.wso2.carbon.connector.idp.model.scan.PageImage;
+import org.wso2.carbon.connector.idp.model.scan.PageSignature;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drops rendered pages that add nothing to an extraction: near-blank pages, such as separator sheets, and pages that
+ * look the same as a page already kept, such as repeated terms and conditions.
+ */
+public class PagePruner {
+
+    private static final int HASH_WIDTH = 16;
+    private static final int HASH_HEIGHT = 16;
+    private static final int MAX_SAMPLES = 250000;
+    private static final int INK_LUMINANCE = 128;
+
+    private final double blankPageThreshold;
+
+    /**
+     * @param blankPageThreshold Ink coverage, from 0 to 1, below which a page is considered blank.
+     */
+    public PagePruner(double blankPageThreshold) {
+        this.blankPageThreshold = blankPageThreshold;
+    }
+
+    /**
+     * Removes the blank and duplicate pages from a list of analysed page images.
+     *
+     * @param pageImages   Page images in page order.
+     * @param skippedPages Receives the numbers of the removed pages.
+     * @return The page images to send, in page order.
+     */
+    public List<PageImage> prune(List<PageImage> pageImages, List<Integer> skippedPages) {
+        List<PageImage> keptPages = new ArrayList<>();
+        for (PageImage pageImage : pageImages) {
+            PageSignature signature = pageImage.getSignature();
+            if (signature != null && (signature.getInkCoverage() < blankPageThreshold || isDuplicate(signature,
+                    keptPages))) {
+                skippedPages.add(pageImage.getPageNumber());
+            } else {
+                keptPages.add(pageImage);
+            }
+        }
+        return keptPages;
+    }
+
+    @Override
+    public String toString() {
+        return "PagePruner{blankPageThreshold=" + blankPageThreshold + "}";
+    }
+
+    private static boolean isDuplicate(PageSignature signature, List<PageImage> keptPages) {
+        for (PageImage keptPage : keptPages) {
+            if (keptPage.getSignature() != null
+                    && signature.distanceTo(keptPage.getSignature()) <= AIConstants.DUPLICATE_PAGE_MAX_DISTANCE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the signature of a rendered page in a single pass over a grid of sampled pixels. The ink coverage is
+     * the share of dark samples, and the hash is a difference hash of the mean luminance of a 17x16 grid of cells:
+     * one bit per pair of horizontally adjacent cells, set when the left one is brighter.
+     *
+     * @param image Rendered page.
+     * @return PageSignature.
+     */
+    public static PageSignature analyze(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int step = Math.max(1, (int) Math.sqrt((double) width * height / MAX_SAMPLES));
+        int columns = HASH_WIDTH + 1;
+        long[] cellLuminance = new long[columns * HASH_HEIGHT];
+        int[] cellSamples = new int[columns * HASH_HEIGHT];
+        long samples = 0;
+        long inkSamples = 0;
+        for (int y = 0; y < height; y += step) {
+            int row = (int) ((long) y * HASH_HEIGHT / height);
+            for (int x = 0; x < width; x += step) {
+                int rgb = image.getRGB(x, y);
+                int luminance = (((rgb >> 16) & 0xFF) * 299 + ((rgb >> 8) & 0xFF) * 587 + (rgb & 0xFF) * 114) / 1000;
+                int cell = row * columns + (int) ((long) x * columns / width);
+                cellLuminance[cell] += luminance;
+                cellSamples[cell]++;
+                samples++;
+                if (luminance < INK_LUMINANCE) {
+                    inkSamples++;
+                }
+            }
+        }
+
+        long[] hash = new long[HASH_WIDTH * HASH_HEIGHT / Long.SIZE];
+        int bit = 0;
+        for (int row = 0; row < HASH_HEIGHT; row++) {
+            for (int column = 0; column < HASH_WIDTH; column++, bit++) {
+                int left = row * columns + column;
+                if (meanOf(cellLuminance, cellSamples, left) > meanOf(cellLuminance, cellSamples, left + 1)) {
+                    hash[bit / Long.SIZE] |= 1L << (bit % Long.SIZE);
+                }
+            }
+        }
+        return new PageSignature(samples == 0 ? 0 : (double) inkSamples / samples, hash);
+    }
+
+    private static double meanOf(long[] sums, int[] counts, int cell) {
+        return counts[cell] == 0 ? 0 : (double) sums[cell] / counts[cell];
+    }
+}
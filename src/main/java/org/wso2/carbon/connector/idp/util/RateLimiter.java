@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+
+import java.net.http.HttpHeaders;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Requests-per-minute and tokens-per-minute limiter of a connection.
+ * <p>
+ * Each budget is a token bucket that refills continuously. A request reserves one request and its estimated token
+ * cost up front and waits until both buckets cover the reservation, so that concurrent requests queue in arrival order
+ * instead of being sent together and rejected by the provider. The buckets follow the x-ratelimit-* headers of the
+ * responses, and a 429 response with Retry-After pauses all requests of the connection until the given time.
+ */
+public class RateLimiter {
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+    private static final long DEFAULT_RETRY_AFTER_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private final Bucket requests;
+    private final Bucket tokens;
+    private long blockedUntilNanos = System.nanoTime();
+
+    /**
+     * @param requestsPerMinute Request budget, or 0 to only follow the limits reported by the provider.
+     * @param tokensPerMinute   Token budget, or 0 to only follow the limits reported by the provider.
+     */
+    public RateLimiter(int requestsPerMinute, int tokensPerMinute) {
+        this.requests = new Bucket(requestsPerMinute);
+        this.tokens = new Bucket(tokensPerMinute);
+    }
+
+    /**
+     * Reserves a request and its token cost, waiting until the budgets allow it to be sent.
+     *
+     * @param tokenCost     Estimated number of tokens of the request, prompt and completion.
+     * @param maxWaitMillis Longest time to wait.
+     * @return Time waited in milliseconds.
+     * @throws AIConnectorException if the request could not be sent within the maximum wait.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public long acquire(long tokenCost, long maxWaitMillis) throws AIConnectorException, InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            requests.refill(now);
+            tokens.refill(now);
+            waitNanos = Math.max(blockedUntilNanos - now, Math.max(requests.nanosUntilAvailable(1),
+                    tokens.nanosUntilAvailable(tokenCost)));
+            if (waitNanos > TimeUnit.MILLISECONDS.toNanos(maxWaitMillis)) {
+                throw new AIConnectorException("Rate limit of the AI service reached. The request could not be sent " +
+                        "within " + maxWaitMillis + " ms.");
+            }
+            // the buckets may go negative, which makes the requests that come next wait behind this one
+            requests.take(1);
+            tokens.take(tokenCost);
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(Math.max(waitNanos, 0));
+    }
+
+    /**
+     * Adjusts the limiter to a response of the AI service.
+     *
+     * @param statusCode Status code of the response.
+     * @param headers    Headers of the response.
+     */
+    public synchronized void update(int statusCode, HttpHeaders headers) {
+        long now = System.nanoTime();
+        requests.refill(now);
+        tokens.refill(now);
+        updateBucket(requests, headers, "requests", now);
+        updateBucket(tokens, headers, "tokens", now);
+        if (statusCode == 429) {
+            long retryAfterNanos = parseRetryAfter(headers.firstValue("Retry-After")).orElse(DEFAULT_RETRY_AFTER_NANOS);
+            blockedUntilNanos = Math.max(blockedUntilNanos, now + retryAfterNanos);
+        }
+    }
+
+    /**
+     * @return Time in milliseconds until requests are allowed again after a 429 response.
+     */
+    public synchronized long getBlockedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(Math.max(blockedUntilNanos - System.nanoTime(), 0));
+    }
+
+    private void updateBucket(Bucket bucket, HttpHeaders headers, String name, long now) {
+        OptionalLong limit = parseLong(headers.firstValue("x-ratelimit-limit-" + name));
+        if (limit.isPresent()) {
+            bucket.applyProviderLimit(limit.getAsLong());
+        }
+        OptionalLong remaining = parseLong(headers.firstValue("x-ratelimit-remaining-" + name));
+        if (remaining.isPresent()) {
+            bucket.applyRemaining(remaining.getAsLong());
+            if (remaining.getAsLong() <= 0) {
+                OptionalLong resetNanos = parseDuration(headers.firstValue("x-ratelimit-reset-" + name));
+                if (resetNanos.isPresent()) {
+                    blockedUntilNanos = Math.max(blockedUntilNanos, now + resetNanos.getAsLong());
+                }
+            }
+        }
+    }
+
+    private static OptionalLong parseLong(Optional<String> value) {
+        if (value.isPresent()) {
+            try {
+                return OptionalLong.of(Long.parseLong(value.get().trim()));
+            } catch (NumberFormatException e) {
+                return OptionalLong.empty();
+            }
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Parses a reset duration such as 20ms, 1s or 6m0s.
+     */
+    static OptionalLong parseDuration(Optional<String> value) {
+        if (!value.isPresent()) {
+            return OptionalLong.empty();
+        }
+        Matcher matcher = DURATION_PART.matcher(value.get().trim());
+        double nanos = 0;
+        boolean found = false;
+        while (matcher.find()) {
+            found = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            switch (matcher.group(2)) {
+                case "h":
+                    nanos += amount * TimeUnit.HOURS.toNanos(1);
+                    break;
+                case "m":
+                    nanos += amount * TimeUnit.MINUTES.toNanos(1);
+                    break;
+                case "s":
+                    nanos += amount * TimeUnit.SECONDS.toNanos(1);
+                    break;
+                default:
+                    nanos += amount * TimeUnit.MILLISECONDS.toNanos(1);
+            }
+        }
+        return found ? OptionalLong.of((long) nanos) : OptionalLong.empty();
+    }
+
+    /**
+     * Parses a Retry-After value, given either in seconds or as an HTTP date.
+     */
+    static OptionalLong parseRetryAfter(Optional<String> value) {
+        if (!value.isPresent()) {
+            return OptionalLong.empty();
+        }
+        String retryAfter = value.get().trim();
+        try {
+            return OptionalLong.of((long) (Double.parseDouble(retryAfter) * TimeUnit.SECONDS.toNanos(1)));
+        } catch (NumberFormatException e) {
+            try {
+                long millis = ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant()
+                        .toEpochMilli() - System.currentTimeMillis();
+                return OptionalLong.of(TimeUnit.MILLISECONDS.toNanos(Math.max(millis, 0)));
+            } catch (DateTimeParseException ex) {
+                return OptionalLong.empty();
+            }
+        }
+    }
+
+    /**
+     * Token bucket holding at most one minute of budget. A bucket without a configured or reported limit never
+     * holds a request back.
+     */
+    private static class Bucket {
+
+        private final long configuredLimit;
+        private long limit;
+        private double level;
+        private long lastRefillNanos = System.nanoTime();
+
+        Bucket(long configuredLimit) {
+            this.configuredLimit = configuredLimit;
+            this.limit = configuredLimit;
+            this.level = configuredLimit;
+        }
+
+        void refill(long now) {
+            if (limit > 0) {
+                level = Math.min(limit, level + (now - lastRefillNanos) * ((double) limit / NANOS_PER_MINUTE));
+            }
+            lastRefillNanos = now;
+        }
+
+        long nanosUntilAvailable(long amount) {
+            if (limit <= 0) {
+                return 0;
+            }
+            // a request larger than the whole budget waits for a full bucket instead of forever
+            double missing = Math.min(amount, limit) - level;
+            return missing <= 0 ? 0 : (long) (missing * NANOS_PER_MINUTE / limit);
+        }
+
+        void take(long amount) {
+            if (limit > 0) {
+                level -= amount;
+            }
+        }
+
+        void applyProviderLimit(long providerLimit) {
+            long newLimit = configuredLimit > 0 ? Math.min(configuredLimit, providerLimit) : providerLimit;
+            if (newLimit > 0 && newLimit != limit) {
+                level = limit > 0 ? Math.min(level, newLimit) : newLimit;
+                limit = newLimit;
+            }
+        }
+
+        void applyRemaining(long remaining) {
+            if (limit > 0) {
+                level = Math.min(level, remaining);
+            }
+        }
+    }
+}
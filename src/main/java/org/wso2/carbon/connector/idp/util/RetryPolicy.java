@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2024, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import org.wso2.carbon.connector.idp.constants.AIConstants;
+import org.wso2.carbon.connector.idp.exception.AIServiceException;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy for requests to the AI service. I/O errors and the configured status codes are retried with an
+ * exponential backoff, reduced by a random jitter so that requests failing together do not retry together.
+ */
+public final class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final double jitter;
+    private final Set<Integer> retryableStatusCodes;
+
+    /**
+     * @param maxAttempts          Maximum number of attempts, including the first one.
+     * @param baseDelayMillis      Delay before the first retry. Each further retry doubles it.
+     * @param jitter               Fraction of the delay, from 0 to 1, that is randomly taken off.
+     * @param retryableStatusCodes Status codes that are retried.
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, double jitter, Set<Integer> retryableStatusCodes) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.jitter = jitter;
+        this.retryableStatusCodes = Collections.unmodifiableSet(new TreeSet<>(retryableStatusCodes));
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getBaseDelayMillis() {
+        return baseDelayMillis;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    public Set<Integer> getRetryableStatusCodes() {
+        return retryableStatusCodes;
+    }
+
+    /**
+     * Checks whether a failed attempt is retried.
+     *
+     * @param attempt Number of the failed attempt, starting from 1.
+     * @param failure Failure of the attempt.
+     * @return true if another attempt is made.
+     */
+    public boolean shouldRetry(int attempt, Exception failure) {
+        if (attempt >= maxAttempts) {
+            return false;
+        }
+        if (failure instanceof AIServiceException) {
+            return retryableStatusCodes.contains(((AIServiceException) failure).getStatusCode());
+        }
+        return failure instanceof IOException;
+    }
+
+    /**
+     * @param attempt Number of the failed attempt, starting from 1.
+     * @return Time in milliseconds to wait before the next attempt.
+     */
+    public long getDelayMillis(int attempt) {
+        long delay = Math.min(baseDelayMillis << Math.min(attempt - 1, 20), AIConstants.RETRY_MAX_DELAY);
+        return (long) (delay * (1 - jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        RetryPolicy that = (RetryPolicy) o;
+        return maxAttempts == that.maxAttempts
+                && baseDelayMillis == that.baseDelayMillis
+                && Double.compare(jitter, that.jitter) == 0
+                && retryableStatusCodes.equals(that.retryableStatusCodes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxAttempts, baseDelayMillis, jitter, retryableStatusCodes);
+    }
+}
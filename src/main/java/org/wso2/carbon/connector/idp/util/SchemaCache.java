@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.registry.RegistryEntry;
+import org.wso2.carbon.connector.idp.constants.AIConstants;
+import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+import org.wso2.carbon.connector.idp.metrics.ScanMetrics;
+import org.wso2.micro.integrator.registry.MicroIntegratorRegistry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, least recently used cache of the IDP schemas read from the registry, keyed by the schema registry path.
+ * Besides the parsed schema, each entry holds the response_format fragment of the chat completions request, so
+ * that neither the registry nor the schema JSON is touched for requests using an already loaded schema.
+ * Entries are revalidated against the last modified time of the registry resource once their TTL has elapsed.
+ */
+public class SchemaCache {
+
+    private static final Log log = LogFactory.getLog(SchemaCache.class);
+    private static final Gson gson = new Gson();
+    private static final SchemaCache INSTANCE =
+            new SchemaCache(AIConstants.SCHEMA_CACHE_MAX_ENTRIES, AIConstants.SCHEMA_CACHE_TTL_DEFAULT);
+
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+
+    /**
+     * A cached schema. The JSON objects are shared between requests and must not be modified.
+     */
+    public static class Entry {
+        private final String resourcePath;
+        private final JsonObject schema;
+        private final JsonObject responseFormat;
+        private final String responseFormatJson;
+        private final long outputTokenEstimate;
+        private final SchemaValidator validator;
+        private final long lastModified;
+        private volatile long validatedAt;
+
+        private Entry(String resourcePath, JsonObject schema, long lastModified) {
+            this.resourcePath = resourcePath;
+            this.schema = schema;
+            this.lastModified = lastModified;
+            this.validatedAt = System.currentTimeMillis();
+
+            this.responseFormat = createResponseFormat(schema);
+            this.responseFormatJson = gson.toJson(responseFormat);
+            this.outputTokenEstimate = TokenEstimator.estimateOutputTokens(schema);
+            this.validator = new SchemaValidator(schema);
+        }
+
+        public JsonObject getSchema() {
+            return schema;
+        }
+
+        public JsonObject getResponseFormat() {
+            return responseFormat;
+        }
+
+        public String getResponseFormatJson() {
+            return responseFormatJson;
+        }
+
+        /**
+         * @return Estimated tokens of a result conforming to the schema.
+         */
+        public long getOutputTokenEstimate() {
+            return outputTokenEstimate;
+        }
+
+        /**
+         * @return Validator of results against the schema, compiled when the schema was loaded.
+         */
+        public SchemaValidator getValidator() {
+            return validator;
+        }
+    }
+
+    /**
+     * Creates the strict json_schema response format of a schema.
+     *
+     * @param schema JSON schema of the result.
+     * @return Response format of chat completions requests.
+     */
+    public static JsonObject createResponseFormat(JsonObject schema) {
+        JsonObject jsonSchemaPayload = new JsonObject();
+        jsonSchemaPayload.addProperty("name", "document_extraction_schema");
+        jsonSchemaPayload.add("schema", schema);
+        jsonSchemaPayload.addProperty("strict", true); // Set to true for strict validation
+        JsonObject responseFormat = new JsonObject();
+        responseFormat.addProperty("type", "json_schema");
+        responseFormat.add("json_schema", jsonSchemaPayload);
+        return responseFormat;
+    }
+
+    public SchemaCache(int maxEntries, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static SchemaCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the cached schema of the given registry path, loading it from the registry if it is not cached or
+     * if the registry resource has changed since it was loaded. The hit or miss is counted in the metrics of the
+     * connection the schema is looked up for.
+     *
+     * @param schemaRegistryPath Registry Path of the Schema
+     * @param metrics            Scan metrics of the connection.
+     * @return Cached schema entry.
+     * @throws AIConnectorException if the schema cannot be read from the registry.
+     */
+    public Entry get(String schemaRegistryPath, ScanMetrics metrics) throws AIConnectorException {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(schemaRegistryPath);
+        }
+        if (entry != null && isValid(entry)) {
+            metrics.recordSchemaCacheHit();
+            return entry;
+        }
+        metrics.recordSchemaCacheMiss();
+        entry = load(schemaRegistryPath);
+        synchronized (entries) {
+            entries.put(schemaRegistryPath, entry);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Loaded IDP schema " + schemaRegistryPath + " into the schema cache.");
+        }
+        return entry;
+    }
+
+    /**
+     * Adds a schema that is not read from the registry, such as a schema of an application embedding the connector
+     * or of a load test run outside MI. The schema stays in the cache until it is invalidated or evicted.
+     *
+     * @param schemaRegistryPath Registry Path the schema is looked up with.
+     * @param schema             JSON schema.
+     * @return Cached schema entry.
+     */
+    public Entry put(String schemaRegistryPath, JsonObject schema) {
+        Entry entry = new Entry(null, schema, 0L);
+        synchronized (entries) {
+            entries.put(schemaRegistryPath, entry);
+        }
+        return entry;
+    }
+
+    public void invalidate(String schemaRegistryPath) {
+        synchronized (entries) {
+            entries.remove(schemaRegistryPath);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private boolean isValid(Entry entry) {
+        if (entry.resourcePath == null) {
+            // put in the cache, not read from the registry
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (now - entry.validatedAt < ttlMillis) {
+            return true;
+        }
+        if (entry.lastModified > 0
+                && getLastModified(new MicroIntegratorRegistry(), entry.resourcePath) == entry.lastModified) {
+            entry.validatedAt = now;
+            return true;
+        }
+        return false;
+    }
+
+    private Entry load(String schemaRegistryPath) throws AIConnectorException {
+        if (schemaRegistryPath == null || schemaRegistryPath.isEmpty()) {
+            throw new AIConnectorException("Could not find or open schema at path: " + schemaRegistryPath);
+        }
+        MicroIntegratorRegistry registry = new MicroIntegratorRegistry();
+        String resourcePath = AIUtils.resolveSchemaResourcePath(registry, schemaRegistryPath);
+        long lastModified = getLastModified(registry, resourcePath);
+        try (InputStream schemaStream = registry.getResource(resourcePath).getContentStream()) {
+            return new Entry(resourcePath, AIUtils.parseSchema(schemaStream, schemaRegistryPath), lastModified);
+        } catch (IOException e) {
+            throw new AIConnectorException("Error while reading schema from registry", e);
+        }
+    }
+
+    private static long getLastModified(MicroIntegratorRegistry registry, String resourcePath) {
+        RegistryEntry registryEntry = registry.getRegistryEntry(resourcePath);
+        return registryEntry != null ? registryEntry.getLastModified() : 0L;
+    }
+}
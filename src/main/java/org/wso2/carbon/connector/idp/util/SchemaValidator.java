@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Validates extraction results against the JSON schema they were requested with. LLMs that do not enforce a strict
+ * json_schema response format, such as most models served by Ollama, may return values of the wrong type, values
+ * outside an enum, or leave out required fields.
+ * <p>
+ * The schema is compiled once into a tree of nodes, and a validator is shared by all the scans of the schema. The
+ * keywords type, enum, const, properties, required, additionalProperties and items are checked; any other keyword is
+ * accepted as is. A null value is valid for every field, since the LLM is asked to return null for the fields it
+ * cannot infer from the document.
+ * <p>
+ * Validation also fixes, in place, what does not need the LLM: properties the schema does not allow are removed, and
+ * a number, integer or boolean given as a string, or a number or boolean given where a string is expected, is
+ * converted.
+ */
+public class SchemaValidator {
+
+    private static final Node ANY = new Node();
+
+    private final JsonObject schema;
+    private final Node root;
+
+    /**
+     * A value that does not match the schema.
+     */
+    public static class Violation {
+        private final String field;
+        private final String path;
+        private final String message;
+
+        Violation(String field, String path, String message) {
+            this.field = field;
+            this.path = path;
+            this.message = message;
+        }
+
+        /**
+         * @return The top level property the value belongs to, or null if the result itself is not valid.
+         */
+        public String getField() {
+            return field;
+        }
+
+        /**
+         * @return Location of the value, such as lineItems[2].quantity.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return path.isEmpty() ? message : path + ": " + message;
+        }
+    }
+
+    private static final class Node {
+        private Set<String> types;
+        private List<JsonElement> allowedValues;
+        private Map<String, Node> properties;
+        private Set<String> required = Collections.emptySet();
+        private boolean closed;
+        private Node additionalProperties;
+        private Node items;
+    }
+
+    public SchemaValidator(JsonObject schema) {
+        this.schema = schema;
+        this.root = compile(schema);
+    }
+
+    /**
+     * Validates a result, fixing it in place where the LLM is not needed, as described in the class documentation.
+     *
+     * @param result Result to validate.
+     * @return The values that do not match the schema, in document order; empty if the result is valid.
+     */
+    public List<Violation> validate(JsonObject result) {
+        List<Violation> violations = new ArrayList<>();
+        validate(result, root, null, "", violations);
+        return violations;
+    }
+
+    /**
+     * Returns the top level properties of the given violations.
+     *
+     * @param violations Violations returned by {@link #validate(JsonObject)}.
+     * @return Names of the properties in document order, or null if a violation concerns the result itself.
+     */
+    public static Set<String> getFields(List<Violation> violations) {
+        Set<String> fields = new LinkedHashSet<>();
+        for (Violation violation : violations) {
+            if (violation.getField() == null) {
+                return null;
+            }
+            fields.add(violation.getField());
+        }
+        return fields;
+    }
+
+    /**
+     * Creates a schema for an object with only the given top level properties of the schema, all of them required.
+     *
+     * @param fields Names of top level properties of the schema.
+     * @return The schema, or null if the schema does not declare its properties.
+     */
+    public JsonObject getSubSchema(Collection<String> fields) {
+        JsonElement declared = schema.get("properties");
+        if (declared == null || !declared.isJsonObject()) {
+            return null;
+        }
+        JsonObject properties = new JsonObject();
+        JsonArray required = new JsonArray();
+        for (String field : fields) {
+            JsonElement property = declared.getAsJsonObject().get(field);
+            if (property == null) {
+                return null;
+            }
+            properties.add(field, property);
+            required.add(field);
+        }
+        JsonObject subSchema = new JsonObject();
+        subSchema.addProperty("type", "object");
+        subSchema.add("properties", properties);
+        subSchema.add("required", required);
+        subSchema.addProperty("additionalProperties", false);
+        return subSchema;
+    }
+
+    private static Node compile(JsonElement element) {
+        if (element == null || !element.isJsonObject()) {
+            return ANY;
+        }
+        JsonObject schema = element.getAsJsonObject();
+        Node node = new Node();
+        JsonElement type = schema.get("type");
+        if (type != null && type.isJsonPrimitive()) {
+            node.types = Collections.singleton(type.getAsString());
+        } else if (type != null && type.isJsonArray()) {
+            node.types = new LinkedHashSet<>();
+            for (JsonElement value : type.getAsJsonArray()) {
+                node.types.add(value.getAsString());
+            }
+        }
+        JsonElement allowedValues = schema.get("enum");
+        if (allowedValues != null && allowedValues.isJsonArray()) {
+            node.allowedValues = new ArrayList<>();
+            allowedValues.getAsJsonArray().forEach(node.allowedValues::add);
+        } else if (schema.has("const")) {
+            node.allowedValues = Collections.singletonList(schema.get("const"));
+        }
+        JsonElement properties = schema.get("properties");
+        if (properties != null && properties.isJsonObject()) {
+            node.properties = new LinkedHashMap<>();
+            for (Map.Entry<String, JsonElement> property : properties.getAsJsonObject().entrySet()) {
+                node.properties.put(property.getKey(), compile(property.getValue()));
+            }
+        }
+        JsonElement required = schema.get("required");
+        if (required != null && required.isJsonArray()) {
+            node.required = new LinkedHashSet<>();
+            for (JsonElement name : required.getAsJsonArray()) {
+                node.required.add(name.getAsString());
+            }
+        }
+        JsonElement additionalProperties = schema.get("additionalProperties");
+        if (additionalProperties != null && additionalProperties.isJsonPrimitive()) {
+            node.closed = !additionalProperties.getAsBoolean();
+        } else if (additionalProperties != null && additionalProperties.isJsonObject()) {
+            node.additionalProperties = compile(additionalProperties);
+        }
+        node.items = compile(schema.get("items"));
+        return node;
+    }
+
+    /**
+     * Validates a value, returning it, or the value it was converted to if it needed a conversion.
+     */
+    private static JsonElement validate(JsonElement value, Node node, String field, String path,
+                                        List<Violation> violations) {
+        if (node == ANY || value == null || value.isJsonNull()) {
+            return value;
+        }
+        if (node.types != null && !node.types.contains(getType(value))) {
+            JsonElement converted = convert(value, node.types);
+            if (converted == null) {
+                violations.add(new Violation(field, path, "expected " + String.join(" or ", node.types)
+                        + " but was " + getType(value)));
+                return value;
+            }
+            value = converted;
+        }
+        if (node.allowedValues != null && !node.allowedValues.contains(value)) {
+            violations.add(new Violation(field, path, "must be one of " + node.allowedValues));
+        }
+        if (value.isJsonObject()) {
+            validateObject(value.getAsJsonObject(), node, field, path, violations);
+        } else if (value.isJsonArray() && node.items != ANY) {
+            JsonArray array = value.getAsJsonArray();
+            for (int i = 0; i < array.size(); i++) {
+                JsonElement item = array.get(i);
+                JsonElement validated = validate(item, node.items, field, path + "[" + i + "]", violations);
+                if (validated != item) {
+                    array.set(i, validated);
+                }
+            }
+        }
+        return value;
+    }
+
+    private static void validateObject(JsonObject object, Node node, String field, String path,
+                                       List<Violation> violations) {
+        for (String name : node.required) {
+            if (!object.has(name)) {
+                violations.add(new Violation(field != null ? field : name, childPath(path, name), "is required"));
+            }
+        }
+        List<String> undeclared = null;
+        for (Map.Entry<String, JsonElement> member : object.entrySet()) {
+            String name = member.getKey();
+            Node child = node.properties != null ? node.properties.get(name) : null;
+            if (child == null) {
+                if (node.closed && node.properties != null) {
+                    if (undeclared == null) {
+                        undeclared = new ArrayList<>();
+                    }
+                    undeclared.add(name);
+                    continue;
+                }
+                child = node.additionalProperties != null ? node.additionalProperties : ANY;
+            }
+            JsonElement validated = validate(member.getValue(), child, field != null ? field : name,
+                    childPath(path, name), violations);
+            if (validated != member.getValue()) {
+                member.setValue(validated);
+            }
+        }
+        if (undeclared != null) {
+            undeclared.forEach(object::remove);
+        }
+    }
+
+    private static String childPath(String path, String name) {
+        return path.isEmpty() ? name : path + "." + name;
+    }
+
+    private static String getType(JsonElement value) {
+        if (value.isJsonObject()) {
+            return "object";
+        } else if (value.isJsonArray()) {
+            return "array";
+        } else if (value.isJsonNull()) {
+            return "null";
+        }
+        JsonPrimitive primitive = value.getAsJsonPrimitive();
+        if (primitive.isBoolean()) {
+            return "boolean";
+        } else if (primitive.isString()) {
+            return "string";
+        }
+        return isIntegral(primitive.getAsBigDecimal()) ? "integer" : "number";
+    }
+
+    /**
+     * Converts a value that only differs from one of the expected types in its representation.
+     *
+     * @return The converted value, or null if it cannot be converted.
+     */
+    private static JsonElement convert(JsonElement value, Set<String> types) {
+        if (!value.isJsonPrimitive()) {
+            return null;
+        }
+        JsonPrimitive primitive = value.getAsJsonPrimitive();
+        if (primitive.isNumber()) {
+            // an integral number is an integer, and every integer is also a number
+            return types.contains("number") ? value : types.contains("string") ? new JsonPrimitive(value.getAsString())
+                    : null;
+        }
+        if (primitive.isBoolean()) {
+            return types.contains("string") ? new JsonPrimitive(value.getAsString()) : null;
+        }
+        String text = primitive.getAsString().trim();
+        if (types.contains("boolean") && ("true".equalsIgnoreCase(text) || "false".equalsIgnoreCase(text))) {
+            return new JsonPrimitive(Boolean.parseBoolean(text));
+        }
+        if (types.contains("number") || types.contains("integer")) {
+            try {
+                BigDecimal number = new BigDecimal(text);
+                if (types.contains("number") || isIntegral(number)) {
+                    return new JsonPrimitive(number);
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isIntegral(BigDecimal number) {
+        return number.signum() == 0 || number.scale() <= 0 || number.stripTrailingZeros().scale() <= 0;
+    }
+}
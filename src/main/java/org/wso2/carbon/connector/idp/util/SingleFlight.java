@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent calls with the same key into a single execution. The first caller of a key runs the call;
+ * callers arriving while it is in flight wait for it and receive the same result, or the same failure.
+ *
+ * @param <T> Type of the call result.
+ */
+public class SingleFlight<T> {
+
+    private final ConcurrentMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * A call to coalesce.
+     *
+     * @param <T> Type of the call result.
+     */
+    public interface Call<T> {
+        T call() throws Exception;
+    }
+
+    /**
+     * The result of a coalesced call.
+     *
+     * @param <T> Type of the call result.
+     */
+    public static class Outcome<T> {
+        private final T value;
+        private final boolean shared;
+
+        private Outcome(T value, boolean shared) {
+            this.value = value;
+            this.shared = shared;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * @return true if the value was produced by a call made by another caller.
+         */
+        public boolean isShared() {
+            return shared;
+        }
+    }
+
+    /**
+     * Runs the call, unless a call with the same key is already in flight, in which case its result is awaited.
+     *
+     * @param key  Key identifying equivalent calls.
+     * @param call Call to run.
+     * @return Outcome of the call.
+     * @throws Exception the exception thrown by the call, to every caller waiting on it.
+     */
+    public Outcome<T> execute(String key, Call<T> call) throws Exception {
+        CompletableFuture<T> ownCall = new CompletableFuture<>();
+        CompletableFuture<T> inFlightCall = inFlight.putIfAbsent(key, ownCall);
+        if (inFlightCall != null) {
+            try {
+                return new Outcome<>(inFlightCall.get(), true);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            T value = call.call();
+            ownCall.complete(value);
+            return new Outcome<>(value, false);
+        } catch (Exception | Error e) {
+            ownCall.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, ownCall);
+        }
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.wso2.carbon.connector.idp.constants.AIConstants;
+import org.wso2.carbon.connector.idp.model.scan.ChatMessage;
+import org.wso2.carbon.connector.idp.model.scan.ChatRequest;
+import org.wso2.carbon.connector.idp.model.scan.ContentPart;
+import org.wso2.carbon.connector.idp.model.scan.PageImage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Estimates the tokens of a chat request before it is sent.
+ * <p>
+ * Images follow the tiling rules of high detail vision input: the image is scaled to fit within 2048x2048, then so
+ * that its shortest side is at most 768 pixels, and costs a base amount plus a fixed amount per 512x512 tile. Text is
+ * counted at about four characters per token. The output is estimated from the shape of the schema, so that
+ * max_tokens can follow the size of the expected JSON object.
+ */
+public final class TokenEstimator {
+
+    private static final int MAX_IMAGE_SIDE = 2048;
+    private static final int MAX_SHORT_SIDE = 768;
+    private static final int TILE_SIZE = 512;
+    private static final int IMAGE_BASE_TOKENS = 85;
+    private static final int IMAGE_TILE_TOKENS = 170;
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+    private static final int ARRAY_ITEMS_ESTIMATE = 10;
+    private static final int STRING_TOKENS_ESTIMATE = 12;
+    private static final int MAX_SCHEMA_DEPTH = 16;
+    // enough of a Base64 image to hold the header with its dimensions
+    private static final int IMAGE_HEADER_BASE64_CHARS = 65536;
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * @return Estimated prompt tokens of the request, without the completion.
+     */
+    public static long estimateInputTokens(ChatRequest request) {
+        boolean lowDetail = AIConstants.IMAGE_DETAIL_LOW.equals(request.getImageDetail());
+        long tokens = estimateTextTokens(request.getResponseFormatJson());
+        for (ChatMessage message : request.getMessages()) {
+            tokens += MESSAGE_OVERHEAD_TOKENS;
+            for (ContentPart part : message.getContent()) {
+                if (part.isText()) {
+                    tokens += estimateTextTokens(part.getText());
+                } else if (lowDetail) {
+                    // low detail images are looked at as a single downscaled tile
+                    tokens += IMAGE_BASE_TOKENS;
+                } else if (part.getPageImage() != null) {
+                    tokens += estimateImageTokens(part.getPageImage());
+                } else {
+                    tokens += estimateImageTokens(part.getImageUrl());
+                }
+            }
+        }
+        return tokens;
+    }
+
+    public static long estimateTextTokens(String text) {
+        return text == null ? 0
+                : (text.length() + AIConstants.TEXT_CHARS_PER_TOKEN - 1) / AIConstants.TEXT_CHARS_PER_TOKEN;
+    }
+
+    /**
+     * @param width  Width of the image in pixels.
+     * @param height Height of the image in pixels.
+     * @return Estimated tokens of the image.
+     */
+    public static long estimateImageTokens(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return AIConstants.IMAGE_TOKENS_ESTIMATE;
+        }
+        double scale = Math.min(1.0, (double) MAX_IMAGE_SIDE / Math.max(width, height));
+        double scaledWidth = width * scale;
+        double scaledHeight = height * scale;
+        scale = Math.min(1.0, MAX_SHORT_SIDE / Math.min(scaledWidth, scaledHeight));
+        long tiles = (long) Math.ceil(scaledWidth * scale / TILE_SIZE)
+                * (long) Math.ceil(scaledHeight * scale / TILE_SIZE);
+        return IMAGE_BASE_TOKENS + IMAGE_TILE_TOKENS * tiles;
+    }
+
+    private static long estimateImageTokens(PageImage pageImage) {
+        return estimateImageTokens(pageImage.getWidth(), pageImage.getHeight());
+    }
+
+    /**
+     * Estimates the tokens of an image given as a data URI, reading only the dimensions from its header.
+     */
+    private static long estimateImageTokens(String dataUri) {
+        if (dataUri == null || dataUri.indexOf(',') < 0) {
+            return AIConstants.IMAGE_TOKENS_ESTIMATE;
+        }
+        int start = dataUri.indexOf(',') + 1;
+        int end = Math.min(dataUri.length(), start + IMAGE_HEADER_BASE64_CHARS);
+        try {
+            byte[] header = Base64.getDecoder().decode(dataUri.substring(start, end - (end - start) % 4));
+            try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(header))) {
+                Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+                if (input != null && readers.hasNext()) {
+                    ImageReader reader = readers.next();
+                    try {
+                        reader.setInput(input);
+                        return estimateImageTokens(reader.getWidth(0), reader.getHeight(0));
+                    } finally {
+                        reader.dispose();
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // the image is checked by the AI service, the estimate falls back to a typical page
+        }
+        return AIConstants.IMAGE_TOKENS_ESTIMATE;
+    }
+
+    /**
+     * Estimates the tokens of a JSON object conforming to the schema. Strings count as a short phrase unless their
+     * length or values are bounded, and arrays as a handful of items.
+     *
+     * @param schema JSON schema.
+     * @return Estimated output tokens.
+     */
+    public static long estimateOutputTokens(JsonObject schema) {
+        return estimateValueTokens(schema, 0);
+    }
+
+    private static long estimateValueTokens(JsonElement element, int depth) {
+        if (element == null || !element.isJsonObject() || depth > MAX_SCHEMA_DEPTH) {
+            return STRING_TOKENS_ESTIMATE;
+        }
+        JsonObject schema = element.getAsJsonObject();
+        for (String combinator : new String[]{"anyOf", "oneOf"}) {
+            if (schema.has(combinator) && schema.get(combinator).isJsonArray()) {
+                long tokens = 0;
+                for (JsonElement option : schema.getAsJsonArray(combinator)) {
+                    tokens = Math.max(tokens, estimateValueTokens(option, depth + 1));
+                }
+                return tokens;
+            }
+        }
+        if (schema.has("enum") && schema.get("enum").isJsonArray()) {
+            long tokens = 1;
+            for (JsonElement value : schema.getAsJsonArray("enum")) {
+                tokens = Math.max(tokens, estimateTextTokens(value.toString()));
+            }
+            return tokens;
+        }
+        switch (getType(schema)) {
+            case "object":
+                long objectTokens = 2;
+                if (schema.has("properties") && schema.get("properties").isJsonObject()) {
+                    for (Map.Entry<String, JsonElement> property : schema.getAsJsonObject("properties").entrySet()) {
+                        // quoted key, colon and separator
+                        objectTokens += estimateTextTokens(property.getKey()) + 3
+                                + estimateValueTokens(property.getValue(), depth + 1);
+                    }
+                }
+                return objectTokens;
+            case "array":
+                int items = ARRAY_ITEMS_ESTIMATE;
+                if (schema.has("maxItems") && schema.get("maxItems").isJsonPrimitive()) {
+                    items = Math.min(items, schema.get("maxItems").getAsInt());
+                }
+                return 2 + items * (estimateValueTokens(schema.get("items"), depth + 1) + 1);
+            case "number":
+            case "integer":
+                return 4;
+            case "boolean":
+            case "null":
+                return 1;
+            default:
+                if (schema.has("maxLength") && schema.get("maxLength").isJsonPrimitive()) {
+                    return Math.min(STRING_TOKENS_ESTIMATE * 4,
+                            2 + estimateTextTokens(" ".repeat(schema.get("maxLength").getAsInt())));
+                }
+                return schema.has("format") ? 8 : STRING_TOKENS_ESTIMATE;
+        }
+    }
+
+    private static String getType(JsonObject schema) {
+        JsonElement type = schema.get("type");
+        if (type != null && type.isJsonArray()) {
+            // nullable fields are declared as ["string", "null"]
+            for (JsonElement option : (JsonArray) type) {
+                if (!"null".equals(option.getAsString())) {
+                    return option.getAsString();
+                }
+            }
+            return "null";
+        }
+        if (type != null && type.isJsonPrimitive()) {
+            return type.getAsString();
+        }
+        return schema.has("properties") ? "object" : "string";
+    }
+
+    /**
+     * Chooses max_tokens for a schema: the estimated output with some headroom, within the given limit.
+     *
+     * @param outputTokens Estimated output tokens of the schema.
+     * @param limit        Largest value allowed.
+     * @return max_tokens.
+     */
+    public static int suggestMaxTokens(long outputTokens, int limit) {
+        long suggested = Math.max(AIConstants.AUTO_MAX_TOKENS_MIN, outputTokens * 3 / 2 + 64);
+        return (int) Math.min(limit, suggested);
+    }
+}
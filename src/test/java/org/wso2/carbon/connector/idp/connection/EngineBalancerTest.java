@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.connection;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.connector.idp.model.AIEngineModel;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+public class EngineBalancerTest {
+
+    private static EngineBalancer createBalancer(long ejectionMillis) {
+        return new EngineBalancer(Arrays.asList(new AIEngineModel("key", "model-a", "http://a.example/v1"),
+                new AIEngineModel("key", "model-b", "http://b.example/v1")), 0, 0, 2, ejectionMillis);
+    }
+
+    @Test
+    public void testFailuresInARowEjectEngine() {
+        EngineBalancer balancer = createBalancer(60000);
+        EngineBalancer.Endpoint first = balancer.getEndpoints().get(0);
+        EngineBalancer.Endpoint second = balancer.getEndpoints().get(1);
+        Assert.assertSame(balancer.select(Collections.emptyList()), first);
+
+        Assert.assertFalse(balancer.recordFailure(first));
+        Assert.assertSame(balancer.select(Collections.emptyList()), first);
+        Assert.assertTrue(balancer.recordFailure(first));
+        Assert.assertSame(balancer.select(Collections.emptyList()), second);
+        Assert.assertSame(balancer.select(Collections.emptyList()), second);
+    }
+
+    @Test
+    public void testSuccessResetsFailures() {
+        EngineBalancer balancer = createBalancer(60000);
+        EngineBalancer.Endpoint first = balancer.getEndpoints().get(0);
+        Assert.assertFalse(balancer.recordFailure(first));
+        balancer.recordSuccess(first, 0);
+        Assert.assertFalse(balancer.recordFailure(first));
+        Assert.assertSame(balancer.select(Collections.emptyList()), first);
+    }
+
+    @Test
+    public void testRetryDoesNotGoToEjectedOrTriedEngine() {
+        EngineBalancer balancer = createBalancer(60000);
+        EngineBalancer.Endpoint first = balancer.getEndpoints().get(0);
+        EngineBalancer.Endpoint second = balancer.getEndpoints().get(1);
+        balancer.recordFailure(second);
+        balancer.recordFailure(second);
+        Assert.assertNull(balancer.select(Collections.singletonList(first)));
+    }
+
+    @Test
+    public void testFirstAttemptGoesToEngineThatComesBackFirst() throws InterruptedException {
+        EngineBalancer balancer = createBalancer(60000);
+        EngineBalancer.Endpoint first = balancer.getEndpoints().get(0);
+        EngineBalancer.Endpoint second = balancer.getEndpoints().get(1);
+        balancer.recordFailure(second);
+        balancer.recordFailure(second);
+        TimeUnit.MILLISECONDS.sleep(5);
+        balancer.recordFailure(first);
+        balancer.recordFailure(first);
+        Assert.assertSame(balancer.select(Collections.emptyList()), second);
+    }
+
+    @Test
+    public void testEjectedEngineComesBack() throws InterruptedException {
+        EngineBalancer balancer = createBalancer(50);
+        EngineBalancer.Endpoint first = balancer.getEndpoints().get(0);
+        balancer.recordFailure(first);
+        balancer.recordFailure(first);
+        Assert.assertNotSame(balancer.select(Collections.emptyList()), first);
+        TimeUnit.MILLISECONDS.sleep(100);
+        Assert.assertSame(balancer.select(Collections.emptyList()), first);
+        // one more failure ejects it again
+        Assert.assertTrue(balancer.recordFailure(first));
+        Assert.assertNotSame(balancer.select(Collections.emptyList()), first);
+    }
+
+    @Test
+    public void testSuccessBringsEjectedEngineBack() {
+        EngineBalancer balancer = createBalancer(60000);
+        EngineBalancer.Endpoint first = balancer.getEndpoints().get(0);
+        balancer.recordFailure(first);
+        balancer.recordFailure(first);
+        balancer.recordSuccess(first, 0);
+        Assert.assertSame(balancer.select(Collections.emptyList()), first);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.model.scan;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+
+public class PageSelectionTest {
+
+    @Test
+    public void testAll() throws AIConnectorException {
+        Assert.assertTrue(PageSelection.parse(null).isAll());
+        Assert.assertTrue(PageSelection.parse(" ").isAll());
+        Assert.assertEquals(PageSelection.all().resolve(3), new int[]{0, 1, 2});
+        Assert.assertEquals(PageSelection.all().resolve(0), new int[0]);
+    }
+
+    @Test
+    public void testPagesAndRanges() throws AIConnectorException {
+        PageSelection selection = PageSelection.parse("5, 1-3,2");
+        Assert.assertFalse(selection.isAll());
+        Assert.assertEquals(selection.toString(), "5,1-3,2");
+        Assert.assertEquals(selection.resolve(10), new int[]{0, 1, 2, 4});
+    }
+
+    @Test
+    public void testLast() throws AIConnectorException {
+        Assert.assertEquals(PageSelection.parse("last").resolve(4), new int[]{3});
+        Assert.assertEquals(PageSelection.parse("2-LAST").resolve(4), new int[]{1, 2, 3});
+        Assert.assertEquals(PageSelection.parse("last-2").resolve(4), new int[]{1, 2, 3});
+        Assert.assertEquals(PageSelection.parse("1,last").resolve(1), new int[]{0});
+    }
+
+    @Test
+    public void testLastOfEmptyDocument() throws AIConnectorException {
+        Assert.assertEquals(PageSelection.parse("last").resolve(0), new int[0]);
+        Assert.assertEquals(PageSelection.parse("1-last").resolve(0), new int[0]);
+    }
+
+    @Test
+    public void testPagesBeyondEndAreIgnored() throws AIConnectorException {
+        Assert.assertEquals(PageSelection.parse("2-6,9").resolve(3), new int[]{1, 2});
+        Assert.assertEquals(PageSelection.parse("7").resolve(3), new int[0]);
+    }
+
+    @DataProvider
+    public Object[][] invalidExpressions() {
+        return new Object[][]{
+                {"0"},
+                {"-1"},
+                {"1-2-3"},
+                {"1,,2"},
+                {"first"},
+                {"2-"},
+        };
+    }
+
+    @Test(dataProvider = "invalidExpressions", expectedExceptions = AIConnectorException.class)
+    public void testInvalidExpressions(String expression) throws AIConnectorException {
+        PageSelection.parse(expression);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+import org.wso2.carbon.connector.idp.model.scan.DocumentContent;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+public class AIUtilsTest {
+
+    private Path root;
+    private Path baseDirectory;
+
+    @BeforeClass
+    public void createFiles() throws IOException {
+        root = Files.createTempDirectory("idp-test").toRealPath();
+        baseDirectory = Files.createDirectory(root.resolve("documents"));
+        Files.createDirectory(baseDirectory.resolve("invoices"));
+        Files.write(baseDirectory.resolve("invoices").resolve("invoice.pdf"), "%PDF".getBytes(StandardCharsets.UTF_8));
+        Files.write(baseDirectory.resolve("notes.unknown"), "notes".getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve("secret.png"), "secret".getBytes(StandardCharsets.UTF_8));
+        Files.createDirectory(root.resolve("documents-other"));
+        Files.write(root.resolve("documents-other").resolve("other.pdf"), "%PDF".getBytes(StandardCharsets.UTF_8));
+        Files.createSymbolicLink(baseDirectory.resolve("link.png"), root.resolve("secret.png"));
+        Files.createSymbolicLink(baseDirectory.resolve("outside"), root);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void deleteFiles() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testRelativePath() throws AIConnectorException, IOException {
+        try (DocumentContent document = AIUtils.getFileDocument("invoices/invoice.pdf", null,
+                baseDirectory.toString())) {
+            Assert.assertEquals(document.getMimeType(), "application/pdf");
+            Assert.assertEquals(document.getSize(), 4);
+        }
+    }
+
+    @Test
+    public void testAbsolutePathInsideBaseDirectory() throws AIConnectorException, IOException {
+        String path = baseDirectory.resolve("notes.unknown").toString();
+        try (DocumentContent document = AIUtils.getFileDocument(path, "text/plain", baseDirectory.toString())) {
+            Assert.assertEquals(document.getMimeType(), "text/plain");
+        }
+    }
+
+    @Test
+    public void testPathThroughParentInsideBaseDirectory() throws AIConnectorException, IOException {
+        try (DocumentContent document = AIUtils.getFileDocument("invoices/../invoices/invoice.pdf", null,
+                baseDirectory.toString())) {
+            Assert.assertEquals(document.getMimeType(), "application/pdf");
+        }
+    }
+
+    @DataProvider
+    public Object[][] pathsOutsideBaseDirectory() {
+        return new Object[][]{
+                {"../secret.png"},
+                {"invoices/../../secret.png"},
+                {"../documents-other/other.pdf"},
+                {"link.png"},
+                {"outside/secret.png"},
+        };
+    }
+
+    @Test(dataProvider = "pathsOutsideBaseDirectory")
+    public void testPathOutsideBaseDirectoryIsRejected(String path) {
+        assertRejected(path, baseDirectory.toString());
+    }
+
+    @Test
+    public void testAbsolutePathOutsideBaseDirectoryIsRejected() {
+        assertRejected(root.resolve("secret.png").toString(), baseDirectory.toString());
+        assertRejected(root.resolve("documents-other").resolve("other.pdf").toString(), baseDirectory.toString());
+    }
+
+    @Test
+    public void testBaseDirectoryIsRequired() {
+        assertRejected("invoices/invoice.pdf", null);
+        assertRejected("invoices/invoice.pdf", " ");
+        assertRejected(baseDirectory.resolve("invoices").resolve("invoice.pdf").toString(), "");
+    }
+
+    @Test
+    public void testMissingFileOrUnknownTypeIsRejected() {
+        assertRejected("missing.pdf", baseDirectory.toString());
+        assertRejected("invoices", baseDirectory.toString());
+        assertRejected("notes.unknown", baseDirectory.toString());
+        assertRejected("invoices/invoice.pdf", root.resolve("missing").toString());
+    }
+
+    private static void assertRejected(String path, String baseDirectory) {
+        try {
+            AIUtils.getFileDocument(path, null, baseDirectory).close();
+            Assert.fail("The document " + path + " was not rejected.");
+        } catch (AIConnectorException e) {
+            // expected
+        } catch (IOException e) {
+            Assert.fail("Failed to close the document " + path, e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import com.google.gson.JsonObject;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+
+public class ChatResponseReaderTest {
+
+    @Test
+    public void testPlainObject() throws AIConnectorException {
+        JsonObject result = ChatResponseReader.extractJson("{\"total\": 12.5, \"items\": [1, 2]}");
+        Assert.assertEquals(result.get("total").getAsDouble(), 12.5);
+        Assert.assertEquals(result.getAsJsonArray("items").size(), 2);
+    }
+
+    @Test
+    public void testFencedObjectWithTrailingText() throws AIConnectorException {
+        JsonObject result = ChatResponseReader.extractJson("Here is the result:\n```json\n{\"vendor\": "
+                + "{\"name\": \"ACME } Inc\"}}\n```\nLet me know if you need anything else.");
+        Assert.assertEquals(result.getAsJsonObject("vendor").get("name").getAsString(), "ACME } Inc");
+    }
+
+    @DataProvider
+    public Object[][] invalidContent() {
+        return new Object[][]{
+                {null},
+                {"  "},
+                {"No JSON here"},
+                {"{total: 12}"},
+                {"{'total': 12}"},
+                {"{/* total */ \"total\": 12}"},
+                {"{\"total\": 12,}"},
+                {"{\"total\": 12, \"items\": [1, 2"},
+        };
+    }
+
+    @Test(dataProvider = "invalidContent", expectedExceptions = AIConnectorException.class)
+    public void testInvalidContentIsRejected(String content) throws AIConnectorException {
+        ChatResponseReader.extractJson(content);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class JsonMergerTest {
+
+    @Test
+    public void testScalarsKeepFirstValue() {
+        JsonObject target = parse("{\"invoiceNumber\": \"INV-1\", \"total\": null}");
+        JsonMerger.merge(target, parse("{\"invoiceNumber\": \"INV-2\", \"total\": 42, \"dueDate\": \"2026-01-31\"}"));
+        Assert.assertEquals(target, parse("{\"invoiceNumber\": \"INV-1\", \"total\": 42, "
+                + "\"dueDate\": \"2026-01-31\"}"));
+    }
+
+    @Test
+    public void testObjectsAreMerged() {
+        JsonObject target = parse("{\"vendor\": {\"name\": \"ACME\", \"address\": null}}");
+        JsonMerger.merge(target, parse("{\"vendor\": {\"name\": \"Other\", \"address\": \"Main St\"}}"));
+        Assert.assertEquals(target, parse("{\"vendor\": {\"name\": \"ACME\", \"address\": \"Main St\"}}"));
+    }
+
+    @Test
+    public void testArraysAreConcatenated() {
+        JsonObject target = parse("{\"lineItems\": [{\"sku\": \"A\"}]}");
+        JsonMerger.merge(target, parse("{\"lineItems\": [{\"sku\": \"B\"}, {\"sku\": \"C\"}]}"));
+        Assert.assertEquals(target, parse("{\"lineItems\": [{\"sku\": \"A\"}, {\"sku\": \"B\"}, {\"sku\": \"C\"}]}"));
+    }
+
+    @Test
+    public void testMismatchedTypesKeepTarget() {
+        JsonObject target = parse("{\"lineItems\": [1], \"vendor\": \"ACME\"}");
+        JsonMerger.merge(target, parse("{\"lineItems\": {\"sku\": \"B\"}, \"vendor\": {\"name\": \"Other\"}}"));
+        Assert.assertEquals(target, parse("{\"lineItems\": [1], \"vendor\": \"ACME\"}"));
+    }
+
+    @Test
+    public void testPartIsNotShared() {
+        JsonObject target = new JsonObject();
+        JsonObject part = parse("{\"lineItems\": [1], \"vendor\": {\"name\": \"ACME\"}}");
+        JsonMerger.merge(target, part);
+        JsonMerger.merge(target, parse("{\"lineItems\": [2], \"vendor\": {\"address\": \"Main St\"}}"));
+        Assert.assertEquals(part, parse("{\"lineItems\": [1], \"vendor\": {\"name\": \"ACME\"}}"));
+    }
+
+    private static JsonObject parse(String json) {
+        return JsonParser.parseString(json).getAsJsonObject();
+    }
+}
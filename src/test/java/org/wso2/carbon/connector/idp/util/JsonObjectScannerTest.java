@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class JsonObjectScannerTest {
+
+    @Test
+    public void testObjectInPieces() {
+        JsonObjectScanner scanner = new JsonObjectScanner();
+        Assert.assertFalse(scanner.append("```json\n{\"total\": "));
+        Assert.assertFalse(scanner.isComplete());
+        Assert.assertEquals(scanner.getJson(), "{\"total\": ");
+        Assert.assertFalse(scanner.append("12, \"vendor\": {\"name\""));
+        Assert.assertTrue(scanner.append(": \"ACME\"}}\n```"));
+        Assert.assertTrue(scanner.isComplete());
+        Assert.assertEquals(scanner.getJson(), "{\"total\": 12, \"vendor\": {\"name\": \"ACME\"}}");
+        Assert.assertEquals(scanner.getText(), "```json\n{\"total\": 12, \"vendor\": {\"name\": \"ACME\"}}");
+    }
+
+    @Test
+    public void testBracesInStrings() {
+        JsonObjectScanner scanner = new JsonObjectScanner();
+        Assert.assertFalse(scanner.append("{\"note\": \"a } and a \\\" and a {\""));
+        Assert.assertTrue(scanner.append("}"));
+        Assert.assertEquals(scanner.getJson(), "{\"note\": \"a } and a \\\" and a {\"}");
+    }
+
+    @Test
+    public void testEscapeSplitAcrossPieces() {
+        JsonObjectScanner scanner = new JsonObjectScanner();
+        Assert.assertFalse(scanner.append("{\"a\": \"x\\"));
+        Assert.assertFalse(scanner.append("\"}"));
+        Assert.assertTrue(scanner.append("\"}"));
+        Assert.assertEquals(scanner.getJson(), "{\"a\": \"x\\\"}\"}");
+    }
+
+    @Test
+    public void testTextAfterObjectIsIgnored() {
+        JsonObjectScanner scanner = new JsonObjectScanner();
+        Assert.assertTrue(scanner.append("{} and {\"b\": 1}"));
+        Assert.assertTrue(scanner.append("more text"));
+        Assert.assertEquals(scanner.getJson(), "{}");
+        Assert.assertEquals(scanner.getText(), "{}");
+    }
+
+    @Test
+    public void testNoObject() {
+        JsonObjectScanner scanner = new JsonObjectScanner();
+        Assert.assertFalse(scanner.append("Sorry, I cannot read this document."));
+        Assert.assertFalse(scanner.isComplete());
+        Assert.assertEquals(scanner.getJson(), "");
+        Assert.assertEquals(scanner.getText(), "Sorry, I cannot read this document.");
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+public class RateLimiterTest {
+
+    @Test
+    public void testParseDuration() {
+        Assert.assertEquals(RateLimiter.parseDuration(Optional.of("20ms")),
+                OptionalLong.of(TimeUnit.MILLISECONDS.toNanos(20)));
+        Assert.assertEquals(RateLimiter.parseDuration(Optional.of("1s")), OptionalLong.of(TimeUnit.SECONDS.toNanos(1)));
+        Assert.assertEquals(RateLimiter.parseDuration(Optional.of("1.5s")),
+                OptionalLong.of(TimeUnit.MILLISECONDS.toNanos(1500)));
+        Assert.assertEquals(RateLimiter.parseDuration(Optional.of("6m0s")),
+                OptionalLong.of(TimeUnit.MINUTES.toNanos(6)));
+        Assert.assertEquals(RateLimiter.parseDuration(Optional.of(" 1h2m3s ")),
+                OptionalLong.of(TimeUnit.HOURS.toNanos(1) + TimeUnit.MINUTES.toNanos(2)
+                        + TimeUnit.SECONDS.toNanos(3)));
+    }
+
+    @Test
+    public void testParseDurationWithoutValue() {
+        Assert.assertEquals(RateLimiter.parseDuration(Optional.empty()), OptionalLong.empty());
+        Assert.assertEquals(RateLimiter.parseDuration(Optional.of("")), OptionalLong.empty());
+        Assert.assertEquals(RateLimiter.parseDuration(Optional.of("soon")), OptionalLong.empty());
+    }
+
+    @Test
+    public void testParseRetryAfterSeconds() {
+        Assert.assertEquals(RateLimiter.parseRetryAfter(Optional.of("2")),
+                OptionalLong.of(TimeUnit.SECONDS.toNanos(2)));
+        Assert.assertEquals(RateLimiter.parseRetryAfter(Optional.of(" 0.5 ")),
+                OptionalLong.of(TimeUnit.MILLISECONDS.toNanos(500)));
+    }
+
+    @Test
+    public void testParseRetryAfterDate() {
+        String future = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now().plusMinutes(1));
+        long nanos = RateLimiter.parseRetryAfter(Optional.of(future)).getAsLong();
+        Assert.assertTrue(nanos > TimeUnit.SECONDS.toNanos(50) && nanos <= TimeUnit.MINUTES.toNanos(1),
+                "Unexpected wait: " + nanos);
+
+        String past = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now().minusMinutes(1));
+        Assert.assertEquals(RateLimiter.parseRetryAfter(Optional.of(past)), OptionalLong.of(0));
+    }
+
+    @Test
+    public void testParseRetryAfterWithoutValue() {
+        Assert.assertEquals(RateLimiter.parseRetryAfter(Optional.empty()), OptionalLong.empty());
+        Assert.assertEquals(RateLimiter.parseRetryAfter(Optional.of("later")), OptionalLong.empty());
+    }
+}
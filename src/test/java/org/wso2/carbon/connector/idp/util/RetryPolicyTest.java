@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.connector.idp.constants.AIConstants;
+import org.wso2.carbon.connector.idp.exception.AIConnectorException;
+import org.wso2.carbon.connector.idp.exception.AIServiceException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class RetryPolicyTest {
+
+    private final RetryPolicy policy = new RetryPolicy(3, 100, 0, new HashSet<>(Arrays.asList(429, 503)));
+
+    @Test
+    public void testRetriesRetryableStatusCodes() {
+        Assert.assertTrue(policy.shouldRetry(1, new AIServiceException("Too many requests", 429)));
+        Assert.assertTrue(policy.shouldRetry(2, new AIServiceException("Unavailable", 503)));
+        Assert.assertFalse(policy.shouldRetry(1, new AIServiceException("Bad request", 400)));
+        Assert.assertFalse(policy.shouldRetry(1, new AIServiceException("Internal error", 500)));
+    }
+
+    @Test
+    public void testRetriesIOExceptions() {
+        Assert.assertTrue(policy.shouldRetry(1, new IOException("Connection reset")));
+        Assert.assertFalse(policy.shouldRetry(1, new AIConnectorException("Invalid schema")));
+    }
+
+    @Test
+    public void testStopsAfterMaxAttempts() {
+        Assert.assertFalse(policy.shouldRetry(3, new AIServiceException("Too many requests", 429)));
+        Assert.assertFalse(policy.shouldRetry(3, new IOException("Connection reset")));
+        Assert.assertFalse(new RetryPolicy(1, 100, 0, new HashSet<>(Arrays.asList(429)))
+                .shouldRetry(1, new IOException("Connection reset")));
+    }
+
+    @Test
+    public void testDelayDoubles() {
+        Assert.assertEquals(policy.getDelayMillis(1), 100);
+        Assert.assertEquals(policy.getDelayMillis(2), 200);
+        Assert.assertEquals(policy.getDelayMillis(3), 400);
+    }
+
+    @Test
+    public void testDelayIsCapped() {
+        Assert.assertEquals(policy.getDelayMillis(20), AIConstants.RETRY_MAX_DELAY.longValue());
+        Assert.assertEquals(policy.getDelayMillis(Integer.MAX_VALUE), AIConstants.RETRY_MAX_DELAY.longValue());
+    }
+
+    @Test
+    public void testJitterShortensDelay() {
+        RetryPolicy jittered = new RetryPolicy(3, 1000, 0.5, new HashSet<>(Arrays.asList(429)));
+        for (int i = 0; i < 100; i++) {
+            long delay = jittered.getDelayMillis(1);
+            Assert.assertTrue(delay >= 500 && delay <= 1000, "Unexpected delay: " + delay);
+        }
+    }
+
+    @Test
+    public void testEquality() {
+        RetryPolicy same = new RetryPolicy(3, 100, 0, new HashSet<>(Arrays.asList(503, 429)));
+        Assert.assertEquals(same, policy);
+        Assert.assertEquals(same.hashCode(), policy.hashCode());
+        Assert.assertNotEquals(new RetryPolicy(4, 100, 0, new HashSet<>(Arrays.asList(429, 503))), policy);
+    }
+}
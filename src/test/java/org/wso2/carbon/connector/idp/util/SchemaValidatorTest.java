@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2026, WSO2 LLC. (https://www.wso2.com). All Rights Reserved.
+ *
+ * WSO2 LLC. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.connector.idp.util;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+public class SchemaValidatorTest {
+
+    private static final String SCHEMA = "{\"type\": \"object\", \"additionalProperties\": false,"
+            + " \"required\": [\"invoiceNumber\", \"total\"],"
+            + " \"properties\": {"
+            + "  \"invoiceNumber\": {\"type\": \"string\"},"
+            + "  \"total\": {\"type\": \"number\"},"
+            + "  \"paid\": {\"type\": \"boolean\"},"
+            + "  \"currency\": {\"type\": \"string\", \"enum\": [\"USD\", \"EUR\"]},"
+            + "  \"lineItems\": {\"type\": \"array\", \"items\": {\"type\": \"object\","
+            + "   \"properties\": {\"quantity\": {\"type\": \"integer\"}}}}}}";
+
+    private final SchemaValidator validator = new SchemaValidator(parse(SCHEMA));
+
+    @Test
+    public void testValidResult() {
+        JsonObject result = parse("{\"invoiceNumber\": \"INV-1\", \"total\": 10.5, \"paid\": true, "
+                + "\"currency\": \"USD\", \"lineItems\": [{\"quantity\": 2}]}");
+        Assert.assertTrue(validator.validate(result).isEmpty());
+    }
+
+    @Test
+    public void testNullIsValidForEveryField() {
+        JsonObject result = parse("{\"invoiceNumber\": null, \"total\": null, \"currency\": null}");
+        Assert.assertTrue(validator.validate(result).isEmpty());
+    }
+
+    @Test
+    public void testValuesAreConverted() {
+        JsonObject result = parse("{\"invoiceNumber\": 1001, \"total\": \"10.50\", \"paid\": \"TRUE\", "
+                + "\"lineItems\": [{\"quantity\": \"3\"}]}");
+        Assert.assertTrue(validator.validate(result).isEmpty());
+        Assert.assertEquals(result, parse("{\"invoiceNumber\": \"1001\", \"total\": 10.50, \"paid\": true, "
+                + "\"lineItems\": [{\"quantity\": 3}]}"));
+    }
+
+    @Test
+    public void testUndeclaredPropertiesAreRemoved() {
+        JsonObject result = parse("{\"invoiceNumber\": \"INV-1\", \"total\": 1, \"notes\": \"extra\"}");
+        Assert.assertTrue(validator.validate(result).isEmpty());
+        Assert.assertFalse(result.has("notes"));
+    }
+
+    @Test
+    public void testViolations() {
+        JsonObject result = parse("{\"total\": \"ten\", \"currency\": \"GBP\", "
+                + "\"lineItems\": [{\"quantity\": 1}, {\"quantity\": 1.5}]}");
+        List<SchemaValidator.Violation> violations = validator.validate(result);
+        Assert.assertEquals(violations.size(), 4);
+        Assert.assertEquals(violations.get(0).toString(), "invoiceNumber: is required");
+        Assert.assertEquals(violations.get(1).toString(), "total: expected number but was string");
+        Assert.assertEquals(violations.get(2).toString(), "currency: must be one of [\"USD\", \"EUR\"]");
+        Assert.assertEquals(violations.get(3).getPath(), "lineItems[1].quantity");
+        Assert.assertEquals(violations.get(3).getField(), "lineItems");
+        Assert.assertEquals(SchemaValidator.getFields(violations),
+                new LinkedHashSet<>(Arrays.asList("invoiceNumber", "total", "currency", "lineItems")));
+    }
+
+    @Test
+    public void testResultOfWrongType() {
+        SchemaValidator arrayValidator = new SchemaValidator(parse("{\"type\": \"array\"}"));
+        List<SchemaValidator.Violation> violations = arrayValidator.validate(new JsonObject());
+        Assert.assertEquals(violations.size(), 1);
+        Assert.assertNull(violations.get(0).getField());
+        Assert.assertNull(SchemaValidator.getFields(violations));
+    }
+
+    @Test
+    public void testSubSchema() {
+        Set<String> fields = new LinkedHashSet<>(Arrays.asList("total", "currency"));
+        Assert.assertEquals(validator.getSubSchema(fields), parse("{\"type\": \"object\", \"properties\": {"
+                + "\"total\": {\"type\": \"number\"},"
+                + " \"currency\": {\"type\": \"string\", \"enum\": [\"USD\", \"EUR\"]}},"
+                + " \"required\": [\"total\", \"currency\"], \"additionalProperties\": false}"));
+    }
+
+    @Test
+    public void testSubSchemaOfUnknownField() {
+        Assert.assertNull(validator.getSubSchema(Collections.singleton("dueDate")));
+        Assert.assertNull(new SchemaValidator(parse("{\"type\": \"object\"}"))
+                .getSubSchema(Collections.singleton("total")));
+    }
+
+    private static JsonObject parse(String json) {
+        return JsonParser.parseString(json).getAsJsonObject();
+    }
+}